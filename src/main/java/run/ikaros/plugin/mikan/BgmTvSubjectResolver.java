@@ -0,0 +1,131 @@
+package run.ikaros.plugin.mikan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import run.ikaros.plugin.mikan.store.BgmTvSubjectIdStore;
+import run.ikaros.plugin.mikan.utils.SingleFlight;
+import run.ikaros.plugin.mikan.utils.XmlUtils;
+
+import java.util.function.Supplier;
+
+/**
+ * 根据 RSS 条目查找 bgm.tv 条目 id.
+ * <br/>
+ * 蜜柑番剧 id -> bgm.tv 条目 id 永久保存在磁盘上.
+ * 条目带有蜜柑番剧 id 时(番剧订阅)，同一部番剧解析过一次之后，后续剧集不再需要请求蜜柑；
+ * 没有蜜柑番剧 id 时(我的订阅)，每个新剧集仍然需要请求一次剧集页面得到番剧 id，
+ * 番剧页面只在第一次遇到这部番剧时请求.
+ * <br/>
+ * 同一页面的并发请求会合并为一个，同一番剧的多个剧集同时更新时只请求一次蜜柑.
+ * 页面请求是非阻塞的，等待蜜柑响应期间不占用线程.
+ */
+@Slf4j
+public class BgmTvSubjectResolver {
+    private final ReactiveMikanClient mikanClient;
+    private final BgmTvSubjectIdStore bgmTvSubjectIdStore;
+    private final SingleFlight<String, String> pageRequests = new SingleFlight<>();
+
+    public BgmTvSubjectResolver(ReactiveMikanClient mikanClient,
+                                BgmTvSubjectIdStore bgmTvSubjectIdStore) {
+        Assert.notNull(mikanClient, "'mikanClient' must not null.");
+        Assert.notNull(bgmTvSubjectIdStore, "'bgmTvSubjectIdStore' must not null.");
+        this.mikanClient = mikanClient;
+        this.bgmTvSubjectIdStore = bgmTvSubjectIdStore;
+    }
+
+    /**
+     * 查找条目对应的 bgm.tv 条目 id.
+     *
+     * @return bgm.tv 条目 id，蜜柑的番剧页面没有 bgm.tv 链接时为空
+     */
+    public Mono<String> resolveBgmTvSubjectId(MikanRssItem mikanRssItem) {
+        Assert.notNull(mikanRssItem, "'mikanRssItem' must not null.");
+        return Mono.defer(() -> {
+            String episodePageUrl = mikanRssItem.getEpisodePageUrl();
+            String bangumiId = mikanRssItem.getBangumiId();
+            if (bangumiId != null) {
+                return resolveByBangumiId(bangumiId, null);
+            }
+            Assert.hasText(episodePageUrl, "'episodePageUrl' must has text.");
+            return requestPage(episodePageUrl,
+                () -> mikanClient.getAnimePageUrlByEpisodePageUrl(episodePageUrl))
+                .flatMap(animePageUrl -> {
+                    String parsedBangumiId = XmlUtils.parseBangumiId(animePageUrl);
+                    if (parsedBangumiId == null) {
+                        return resolveByAnimePageUrl(null, animePageUrl);
+                    }
+                    return resolveByBangumiId(parsedBangumiId, animePageUrl);
+                });
+        });
+    }
+
+    /**
+     * @return 蜜柑番剧是否已经有 bgm.tv 条目 id 的记录，或者最近确认过番剧页面没有 bgm.tv 链接
+     */
+    public boolean isResolved(String bangumiId) {
+        return bgmTvSubjectIdStore.get(bangumiId) != null
+            || bgmTvSubjectIdStore.isMissing(bangumiId);
+    }
+
+    /**
+     * 查找蜜柑番剧对应的 bgm.tv 条目 id，没有记录时请求番剧页面并保存.
+     *
+     * @param bangumiId 蜜柑番剧 id
+     * @return bgm.tv 条目 id，蜜柑的番剧页面没有 bgm.tv 链接时为空
+     */
+    public Mono<String> resolveBgmTvSubjectIdByBangumiId(String bangumiId) {
+        Assert.hasText(bangumiId, "'bangumiId' must has text.");
+        return Mono.defer(() -> resolveByBangumiId(bangumiId, null));
+    }
+
+    private Mono<String> resolveByBangumiId(String bangumiId, @Nullable String animePageUrl) {
+        String bgmTvSubjectId = bgmTvSubjectIdStore.get(bangumiId);
+        if (bgmTvSubjectId != null) {
+            log.debug("hit bgm tv subject id cache for bangumi id: {}", bangumiId);
+            return Mono.just(bgmTvSubjectId);
+        }
+        if (bgmTvSubjectIdStore.isMissing(bangumiId)) {
+            log.debug("hit missing bgm tv subject cache for bangumi id: {}", bangumiId);
+            return Mono.empty();
+        }
+        return resolveByAnimePageUrl(bangumiId, animePageUrl == null
+            ? mikanClient.getAnimePageUrlByBangumiId(bangumiId) : animePageUrl);
+    }
+
+    private Mono<String> resolveByAnimePageUrl(@Nullable String bangumiId, String animePageUrl) {
+        return requestPage(animePageUrl,
+            () -> mikanClient.getBgmTvSubjectPageUrlByAnimePageUrl(animePageUrl))
+            .filter(StringUtils::hasText)
+            // 保存映射需要写磁盘，不在事件循环线程中执行
+            .publishOn(Schedulers.boundedElastic())
+            .mapNotNull(bgmTvSubjectPageUrl -> {
+                int index = bgmTvSubjectPageUrl.lastIndexOf("/");
+                String bgmTvSubjectId = bgmTvSubjectPageUrl.substring(index + 1);
+                if (!StringUtils.hasText(bgmTvSubjectId)) {
+                    return null;
+                }
+                if (bangumiId != null) {
+                    bgmTvSubjectIdStore.put(bangumiId, bgmTvSubjectId);
+                }
+                return bgmTvSubjectId;
+            })
+            // 页面正常返回但是没有 bgm.tv 链接，记录下来，一段时间内不再请求
+            .switchIfEmpty(Mono.<String>fromRunnable(() -> {
+                if (bangumiId != null) {
+                    log.debug("not found bgm tv subject for bangumi id: {}", bangumiId);
+                    bgmTvSubjectIdStore.putMissing(bangumiId);
+                }
+            }));
+    }
+
+    /**
+     * 请求蜜柑页面，同一页面进行中的请求共享结果.
+     */
+    private Mono<String> requestPage(String pageUrl, Supplier<Mono<String>> request) {
+        return pageRequests.execute(pageUrl, request);
+    }
+}
@@ -12,4 +12,9 @@ public interface DefaultConst {
 
     String MIKAN_URL = "https://mikanime.tv";
 
+    /**
+     * 插件数据目录，相对于 ikaros 的工作目录.
+     */
+    String PLUGIN_DATA_DIR = "plugin/" + MikanPlugin.NAME + "/data";
+
 }
@@ -5,38 +5,46 @@ import org.apache.commons.lang3.StringUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.nodes.TextNode;
 import org.jsoup.select.Elements;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.lang.Nullable;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
-import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import run.ikaros.api.core.setting.ConfigMap;
 import run.ikaros.api.custom.ReactiveCustomClient;
 import run.ikaros.api.infra.exception.NotFoundException;
-import run.ikaros.api.infra.utils.SystemVarUtils;
 import run.ikaros.api.plugin.event.PluginConfigMapUpdateEvent;
+import run.ikaros.plugin.mikan.http.HostRateLimiter;
+import run.ikaros.plugin.mikan.http.HttpTransport;
+import run.ikaros.plugin.mikan.http.MikanMirrorSelector;
 import run.ikaros.plugin.mikan.exception.MikanRequestException;
 import run.ikaros.plugin.mikan.exception.RssOperateException;
 import run.ikaros.plugin.mikan.qbittorrent.model.QbConfig;
+import run.ikaros.plugin.mikan.store.RssFeedValidatorStore;
+import run.ikaros.plugin.mikan.store.RssSnapshotArchive;
+import run.ikaros.plugin.mikan.store.RssSnapshotStore;
+import run.ikaros.plugin.mikan.utils.TtlCache;
 import run.ikaros.plugin.mikan.utils.XmlUtils;
 
 import java.io.*;
 import java.net.Proxy;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -45,21 +53,88 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @Component
 public class MikanClient {
-    private RestTemplate restTemplate = new RestTemplate();
-    private static final String BASE_URL = "https://mikanime.tv";
+    /**
+     * 蜜柑链接的规范域名，发起请求时由 {@link MikanMirrorSelector} 替换为选中的镜像
+     */
+    static final String BASE_URL = DefaultConst.MIKAN_URL;
+    private static final Pattern SEARCH_PUNCTUATION_PATTERN =
+        Pattern.compile("[\\p{P}\\p{S}]+");
+    private static final Pattern SEARCH_WHITESPACE_PATTERN = Pattern.compile("\\s+");
+    /**
+     * 规范化的搜索关键词 -> 番剧页面链接，没有结果的搜索缓存较短的时间，请求或者解析失败不缓存
+     */
+    private final TtlCache<String, String> searchCache =
+        new TtlCache<>(Duration.ofHours(24), Duration.ofHours(1), 1024);
     private QbConfig config = new QbConfig();
     private final ReactiveCustomClient customClient;
     private Proxy proxy = null;
+    private RssFeedValidatorStore rssFeedValidatorStore;
+    private RssSnapshotStore rssSnapshotStore;
+    private RssSnapshotArchive rssSnapshotArchive;
     private final AtomicReference<Boolean> init = new AtomicReference<>(false);
+    /**
+     * 所有请求蜜柑的方法共享的限流
+     */
+    private final HostRateLimiter hostRateLimiter = newHostRateLimiter(config);
+    private final HttpTransport httpTransport;
+    private final MikanMirrorSelector mirrorSelector =
+        new MikanMirrorSelector(MikanMirrorSelector.parseMirrors(config.getMikanMirrors()));
+    private volatile ReactiveMikanClient reactiveMikanClient;
 
-    public MikanClient(ReactiveCustomClient customClient) {
+    public MikanClient(ReactiveCustomClient customClient, HttpTransport httpTransport) {
+        Assert.notNull(httpTransport, "'httpTransport' must not null.");
         this.customClient = customClient;
+        this.httpTransport = httpTransport;
+    }
+
+    private static HostRateLimiter newHostRateLimiter(QbConfig config) {
+        return new HostRateLimiter(config.getMikanRequestsPerSecond(),
+            config.getMikanRequestBurst(), config.getMikanMaxInFlight());
+    }
+
+    private void updateHostRateLimiter() {
+        try {
+            hostRateLimiter.update(config.getMikanRequestsPerSecond(),
+                config.getMikanRequestBurst(), config.getMikanMaxInFlight());
+        } catch (IllegalArgumentException e) {
+            log.warn("invalid mikan rate limit config, keep the previous one.", e);
+        }
+    }
+
+    private void updateMirrorSelector() {
+        List<String> mirrors = MikanMirrorSelector.parseMirrors(config.getMikanMirrors());
+        if (mirrors.isEmpty()) {
+            log.warn("invalid mikan mirrors, keep the previous one: {}",
+                config.getMikanMirrors());
+            return;
+        }
+        mirrorSelector.setMirrors(mirrors);
+    }
+
+    private void updateHttpTransport() {
+        try {
+            httpTransport.update(config);
+        } catch (IllegalArgumentException e) {
+            log.warn("invalid http transport config, keep the previous one.", e);
+        }
     }
 
     public void setProxy(@Nullable Proxy proxy) {
         this.proxy = proxy;
     }
 
+    public void setRssFeedValidatorStore(@Nullable RssFeedValidatorStore rssFeedValidatorStore) {
+        this.rssFeedValidatorStore = rssFeedValidatorStore;
+    }
+
+    public void setRssSnapshotStore(@Nullable RssSnapshotStore rssSnapshotStore) {
+        this.rssSnapshotStore = rssSnapshotStore;
+    }
+
+    public void setRssSnapshotArchive(@Nullable RssSnapshotArchive rssSnapshotArchive) {
+        this.rssSnapshotArchive = rssSnapshotArchive;
+    }
+
     @EventListener(PluginConfigMapUpdateEvent.class)
     public void updateConfig(PluginConfigMapUpdateEvent event) {
         if(Objects.isNull(event) || Objects.isNull(event.getConfigMap())
@@ -76,6 +151,34 @@ public class MikanClient {
             config.setMikanRss(mikanRss);
             log.debug("update mikan rss: {}", mikanRss);
         }
+        updateIntConfig(map, "mikanRssConcurrency", config::setMikanRssConcurrency);
+        updateIntConfig(map, "mikanRssPollMinMinutes", config::setMikanRssPollMinMinutes);
+        updateIntConfig(map, "mikanRssPollMaxMinutes", config::setMikanRssPollMaxMinutes);
+        updateBooleanConfig(map, "mikanRssKeepSnapshot", config::setMikanRssKeepSnapshot);
+        updateBooleanConfig(map, "mikanRssArchive", config::setMikanRssArchive);
+        updateIntConfig(map, "mikanRssArchiveMaxMb", config::setMikanRssArchiveMaxMb);
+        updateBooleanConfig(map, "mikanRssReplay", config::setMikanRssReplay);
+        updateIntConfig(map, "mikanRequestsPerSecond", config::setMikanRequestsPerSecond);
+        updateIntConfig(map, "mikanRequestBurst", config::setMikanRequestBurst);
+        updateIntConfig(map, "mikanMaxInFlight", config::setMikanMaxInFlight);
+        updateBooleanConfig(map, "mikanSeasonPrefetch", config::setMikanSeasonPrefetch);
+        updateHostRateLimiter();
+        updateIntConfig(map, "httpConnectTimeoutSeconds", config::setHttpConnectTimeoutSeconds);
+        updateIntConfig(map, "httpReadTimeoutSeconds", config::setHttpReadTimeoutSeconds);
+        updateIntConfig(map, "httpMaxConnectionsPerHost", config::setHttpMaxConnectionsPerHost);
+        updateHttpTransport();
+        String httpProxyRules = map.get("httpProxyRules");
+        if (httpProxyRules != null && !httpProxyRules.equals(config.getHttpProxyRules())) {
+            config.setHttpProxyRules(httpProxyRules);
+            httpTransport.updateProxyRules(httpProxyRules);
+            log.debug("update http proxy rules: {}", httpProxyRules);
+        }
+        String mikanMirrors = map.get("mikanMirrors");
+        if (StringUtils.isNotBlank(mikanMirrors)) {
+            config.setMikanMirrors(mikanMirrors);
+            updateMirrorSelector();
+            log.debug("update mikan mirrors: {}", mikanMirrors);
+        }
         String qbUrlPrefix = map.get("qbUrlPrefix");
         if (StringUtils.isNotBlank(qbUrlPrefix)) {
             config.setQbUrlPrefix(qbUrlPrefix);
@@ -93,6 +196,67 @@ public class MikanClient {
         }
     }
 
+    private void updateIntConfig(Map<String, String> map, String key, Consumer<Integer> setter) {
+        String value = map.get(key);
+        if (StringUtils.isBlank(value)) {
+            return;
+        }
+        try {
+            setter.accept(Integer.parseInt(value.trim()));
+            log.debug("update {}: {}", key, value);
+        } catch (NumberFormatException e) {
+            log.warn("invalid {}: {}", key, value);
+        }
+    }
+
+    private void updateBooleanConfig(Map<String, String> map, String key,
+                                     Consumer<Boolean> setter) {
+        String value = map.get(key);
+        if (StringUtils.isNotBlank(value)) {
+            setter.accept(Boolean.parseBoolean(value.trim()));
+            log.debug("update {}: {}", key, value);
+        }
+    }
+
+    public QbConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return 手动设置的代理优先，否则按代理规则选择
+     */
+    Proxy getProxy(String host) {
+        return proxy != null ? proxy : httpTransport.getProxyRules().select(host);
+    }
+
+    HttpTransport getHttpTransport() {
+        return httpTransport;
+    }
+
+    MikanMirrorSelector getMirrorSelector() {
+        return mirrorSelector;
+    }
+
+    HostRateLimiter getHostRateLimiter() {
+        return hostRateLimiter;
+    }
+
+    TtlCache<String, String> getSearchCache() {
+        return searchCache;
+    }
+
+    RssFeedValidatorStore getRssFeedValidatorStore() {
+        return rssFeedValidatorStore;
+    }
+
+    RssSnapshotStore getRssSnapshotStore() {
+        return rssSnapshotStore;
+    }
+
+    RssSnapshotArchive getRssSnapshotArchive() {
+        return rssSnapshotArchive;
+    }
+
     @EventListener(ApplicationReadyEvent.class)
     public void init() throws Exception {
         if(init.get()) {
@@ -112,171 +276,138 @@ public class MikanClient {
             });
     }
 
-    public void setRestTemplate(RestTemplate restTemplate) {
-        Assert.notNull(restTemplate, "'restTemplate' must not null.");
-        this.restTemplate = restTemplate;
+    /**
+     * @return 和当前客户端共享配置、限流、缓存和存储的非阻塞客户端，蜜柑的所有请求都由它发起
+     */
+    public ReactiveMikanClient getReactiveMikanClient() {
+        ReactiveMikanClient client = reactiveMikanClient;
+        if (client == null) {
+            synchronized (this) {
+                if (reactiveMikanClient == null) {
+                    reactiveMikanClient = new ReactiveMikanClient(this);
+                }
+                client = reactiveMikanClient;
+            }
+        }
+        return client;
     }
 
-    @Retryable
-    public String getAnimePageUrlByEpisodePageUrl(String episodePageUrl) {
-        Assert.hasText(episodePageUrl, "'episodePageUrl' must has text.");
-        log.debug("starting get anime page url by episode page url");
-        byte[] bytes = restTemplate.getForObject(episodePageUrl, byte[].class);
-        if (bytes == null) {
-            throw new MikanRequestException("not found episode page url response data, "
-                + "for episode page url: " + episodePageUrl);
-        }
-        String content = new String(bytes, StandardCharsets.UTF_8);
+    static URI getSeasonBangumiIndexUri(int year, String seasonStr) {
+        return URI.create(BASE_URL + "/Home/BangumiCoverFlowByDayOfWeek?year=" + year
+            + "&seasonStr=" + URLEncoder.encode(seasonStr, StandardCharsets.UTF_8));
+    }
+
+    static List<String> parseSeasonBangumiIds(String html) {
+        Document document = Jsoup.parse(html);
+        return document.select("[data-bangumiid]").stream()
+            .map(element -> element.attr("data-bangumiid").trim())
+            .filter(StringUtils::isNumeric)
+            .distinct()
+            .toList();
+    }
+
+    /**
+     * @param bangumiId 蜜柑番剧 id
+     * @return 蜜柑番剧页面链接
+     */
+    public String getAnimePageUrlByBangumiId(String bangumiId) {
+        Assert.hasText(bangumiId, "'bangumiId' must has text.");
+        return BASE_URL + "/Home/Bangumi/" + bangumiId;
+    }
+
+    /**
+     * 规范化搜索关键词：全角转半角(NFKC)、转小写、标点符号转为空格、合并连续空白.
+     */
+    static String normalizeSearchKeyword(String keyword) {
+        String normalized = Normalizer.normalize(keyword, Normalizer.Form.NFKC)
+            .toLowerCase(Locale.ROOT);
+        normalized = SEARCH_PUNCTUATION_PATTERN.matcher(normalized).replaceAll(" ");
+        return SEARCH_WHITESPACE_PATTERN.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    static URI getSearchUri(String query) {
+        return URI.create(DefaultConst.MIKAN_URL + "/Home/Search?searchstr="
+            + URLEncoder.encode(query, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析搜索结果中第一个番剧的页面链接.
+     *
+     * @return 番剧页面链接，没有搜索结果时为 null
+     * @throws MikanRequestException 页面结构不是搜索结果页面时，不应该当作没有结果缓存
+     */
+    @Nullable
+    static String parseSearchAnimePageUrl(String content, String query) {
         Document document = Jsoup.parse(content);
-        Element element = document.selectFirst("#sk-container .bangumi-title a");
-        if (element == null) {
-            throw new MikanRequestException(
-                "not found element, for episode page url: " + episodePageUrl);
+        Elements containers = document.select("#sk-container .central-container");
+        if (containers.isEmpty()) {
+            throw new MikanRequestException("parse search page fail, keyword: " + query);
         }
-        String href = element.attr("href");
-        log.debug("completed get anime page url by episode page url");
-        return BASE_URL + href;
-    }
-
-    @Retryable
-    public String getBgmTvSubjectPageUrlByAnimePageUrl(String animePageUrl) {
-        Assert.hasText(animePageUrl, "'animePageUrl' must has text.");
-        log.debug("starting get bgm tv subject page url by anime page url");
-        byte[] bytes = restTemplate.getForObject(animePageUrl, byte[].class);
-        if (bytes == null) {
-            throw new MikanRequestException("not found anime page url response data, "
-                + "for anime page url: " + animePageUrl);
+        Element bangumi = containers.select("ul li").first();
+        if (bangumi == null) {
+            log.debug("not found anime page url by search keyword:{}", query);
+            return null;
         }
-        String content = new String(bytes, StandardCharsets.UTF_8);
-        Document document = Jsoup.parse(content);
-        Elements elements = document.select("#sk-container .bangumi-info");
-        Element targetElement = null;
-        for (Element element : elements) {
-            List<TextNode> textNodes = element.textNodes();
-            if (textNodes.isEmpty()) {
-                continue;
-            }
-            TextNode textNode = textNodes.get(0);
-            String val = textNode.text();
-            if (val.contains("Bangumi")) {
-                targetElement = element.selectFirst("a");
-            }
-        }
-
-        if (targetElement == null) {
+        String bangumiUrl = bangumi.select("a").attr("href");
+        if (StringUtils.isBlank(bangumiUrl)) {
             throw new MikanRequestException(
-                "not found element, for anime page url: " + animePageUrl);
+                "parse search page anime url fail, keyword: " + query);
         }
-        log.debug("completed get bgm tv subject page url by anime page url");
-        return targetElement.attr("href");
-    }
-
-    @Retryable
-    public String getAnimePageUrlBySearch(String keyword) {
-        Assert.hasText(keyword, "'keyword' must has text.");
-        log.debug("starting get anime page url by search keyword:{}", keyword);
-        final String originalUrl = DefaultConst.MIKAN_URL + "/Home/Search?searchstr=";
-        final String url = originalUrl + keyword;
-
-        byte[] bytes =
-            restTemplate.getForObject(url,
-                byte[].class);
-        if (bytes == null) {
-            throw new MikanRequestException("search anime page url exception for keyword "
-                + keyword);
-        }
-        String content = new String(bytes, StandardCharsets.UTF_8);
-        Document document = Jsoup.parse(content);
-        String animePageUrl = null;
-        try {
-            String bangumiUrl = document
-                .select("#sk-container .central-container ul li").get(0)
-                .select("a").attr("href");
-            animePageUrl = DefaultConst.MIKAN_URL + bangumiUrl;
-        } catch (Exception exception) {
-            log.warn("get anime page url fail by search keyword:{}", keyword, exception);
-        }
-        log.debug("end find anime page url by keyword:{}  url:{}", keyword, animePageUrl);
-        return animePageUrl;
+        return DefaultConst.MIKAN_URL + bangumiUrl;
     }
 
-    @Retryable
-    public List<MikanRssItem> parseMikanMySubscribeRss() {
+    /**
+     * 订阅链接配置项按行或者英文逗号分隔，可以配置多个.
+     */
+    public List<String> getMikanRssUrls() {
         String mikanRss = config.getMikanRss();
-        Assert.isTrue(StringUtils.isNotBlank(mikanRss), "'mikanRss' must not null.");
-        // 1. 先下载RSS的XML文件到缓存目录
-        String rssXmlFilePath = downloadRssXmlFile(mikanRss);
-        // 2. 调用 DOM 库解析缓存文件
-        List<MikanRssItem> mikanRssItemList = XmlUtils.parseMikanRssXmlFile(rssXmlFilePath);
-        log.info("parse xml file get mikan rss item size: {}", mikanRssItemList.size());
-        // 3. 删除对应的缓存文件
-        if (StringUtils.isNotBlank(rssXmlFilePath)) {
-            File file = new File(rssXmlFilePath);
-            if (file.exists()) {
-                file.delete();
-                log.info("delete rss xml cache file for path: {}", rssXmlFilePath);
-            }
+        if (StringUtils.isBlank(mikanRss)) {
+            return List.of();
         }
-        return mikanRssItemList;
+        return Arrays.stream(mikanRss.split("[\\r\\n,]+"))
+            .map(String::trim)
+            .filter(StringUtils::isNotBlank)
+            .distinct()
+            .toList();
     }
 
-    @Retryable
-    public String downloadRssXmlFile(String url) {
-        Assert.hasText(url, "'url' must has text.");
-        String cacheFilePath = SystemVarUtils.getOsCacheDirPath(null) + File.separator
-            + UUID.randomUUID().toString().replace("-", "") + ".xml";
-
-        InputStream inputStream = null;
-        BufferedInputStream bufferedInputStream = null;
-        OutputStream outputStream = null;
-        BufferedOutputStream bufferedOutputStream = null;
-        try {
-            URLConnection urlConnection;
-            if (proxy == null) {
-                urlConnection = new URL(url).openConnection();
-            } else {
-                urlConnection = new URL(url).openConnection(proxy);
-            }
-            urlConnection.connect();
-            inputStream = urlConnection.getInputStream();
-            bufferedInputStream = new BufferedInputStream(inputStream);
-
-            File cacheFile = new File(cacheFilePath);
-            if (!cacheFile.exists()) {
-                cacheFile.createNewFile();
-            }
-            outputStream = Files.newOutputStream(cacheFile.toPath());
-            bufferedOutputStream = new BufferedOutputStream(outputStream);
+    long getRssArchiveMaxBytes() {
+        Integer maxMb = config.getMikanRssArchiveMaxMb();
+        return (maxMb == null || maxMb < 1 ? 1 : maxMb) * 1024L * 1024L;
+    }
 
-            byte[] buffer = new byte[128];
-            int len;
-            while ((len = bufferedInputStream.read(buffer)) != -1) {
-                bufferedOutputStream.write(buffer, 0, len);
-            }
-            log.info("download rss xml file to cache path: {}", cacheFilePath);
-        } catch (Exception e) {
-            String msg = "fail write rss url xml file bytes to cache path: " + cacheFilePath;
-            log.warn(msg, e);
-            throw new RssOperateException(msg, e);
-        } finally {
-            try {
-                if (bufferedOutputStream != null) {
-                    bufferedOutputStream.close();
-                }
-                if (outputStream != null) {
-                    outputStream.close();
+    /**
+     * 回放模式，从归档的订阅响应中解析条目，不访问网络.
+     * <br/>
+     * 归档以内存映射的方式读取，按归档时间从旧到新依次解析，条目去重的方式和
+     * {@link ReactiveMikanClient#streamMikanMySubscribeRss()} 一致，用于离线测量解析和处理流程的吞吐.
+     */
+    public Flux<MikanRssItem> replayArchivedMikanRss() {
+        Assert.notNull(rssSnapshotArchive, "'rssSnapshotArchive' must not null.");
+        return Flux.defer(() -> {
+                try {
+                    return Flux.fromIterable(rssSnapshotArchive.listSnapshots());
+                } catch (IOException e) {
+                    return Flux.error(new RssOperateException(
+                        "fail list rss snapshot archive: " + rssSnapshotArchive.getArchiveDir(),
+                        e));
                 }
-                if (bufferedInputStream != null) {
-                    bufferedInputStream.close();
-                }
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-            } catch (Exception e) {
-                throw new RssOperateException(e);
-            }
-        }
-        return cacheFilePath;
+            })
+            .concatMap(path -> Flux.using(() -> rssSnapshotArchive.openReplay(path),
+                    XmlUtils::parseMikanRssXmlStream,
+                    inputStream -> {
+                        try {
+                            inputStream.close();
+                        } catch (IOException e) {
+                            log.warn("close rss snapshot archive fail: {}", path, e);
+                        }
+                    })
+                .onErrorResume(e -> {
+                    log.warn("replay rss snapshot archive fail, skip it: {}", path, e);
+                    return Flux.empty();
+                }))
+            .filter(mikanRssItem -> Objects.nonNull(mikanRssItem.getIdentity()))
+            .distinct(MikanRssItem::getIdentity)
+            .subscribeOn(Schedulers.boundedElastic());
     }
-
 }
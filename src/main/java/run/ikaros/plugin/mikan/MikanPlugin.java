@@ -19,6 +19,8 @@ public class MikanPlugin extends BasePlugin {
 
     private Disposable parseMikanSubRssAndAddToQbittorrentDisposable;
     private Disposable importQbittorrentFilesAndAddSubjectDisposable;
+    private Disposable prefetchSeasonBangumiSubjectsDisposable;
+    private Disposable probeMikanMirrorsDisposable;
 
     public MikanPlugin(PluginWrapper wrapper, MikanSubHandler mikanSubHandler) {
         super(wrapper);
@@ -34,6 +36,9 @@ public class MikanPlugin extends BasePlugin {
             mikanSubHandler.startParseMikanSubRssAndAddToQbittorrent();
         importQbittorrentFilesAndAddSubjectDisposable =
             mikanSubHandler.startImportQbittorrentFilesAndAddSubject();
+        prefetchSeasonBangumiSubjectsDisposable =
+            mikanSubHandler.startPrefetchSeasonBangumiSubjects();
+        probeMikanMirrorsDisposable = mikanSubHandler.startProbeMikanMirrors();
         log.info("plugin [{}] start success", NAME);
     }
 
@@ -45,6 +50,12 @@ public class MikanPlugin extends BasePlugin {
         if (Objects.nonNull(importQbittorrentFilesAndAddSubjectDisposable)) {
             importQbittorrentFilesAndAddSubjectDisposable.dispose();
         }
+        if (Objects.nonNull(prefetchSeasonBangumiSubjectsDisposable)) {
+            prefetchSeasonBangumiSubjectsDisposable.dispose();
+        }
+        if (Objects.nonNull(probeMikanMirrorsDisposable)) {
+            probeMikanMirrorsDisposable.dispose();
+        }
         log.info("plugin [{}] stop success", NAME);
     }
 
@@ -1,5 +1,7 @@
 package run.ikaros.plugin.mikan;
 
+import java.time.LocalDateTime;
+
 /**
  * mikan project my subscribe rss item java model
  *
@@ -10,6 +12,27 @@ public class MikanRssItem {
     private String title;
     private String torrentUrl;
     private String episodePageUrl;
+    /**
+     * 种子的 info-hash(小写)，从蜜柑的种子链接中解析
+     */
+    private String infoHash;
+    /**
+     * 蜜柑的发布时间，来自 torrent/pubDate，为蜜柑所在时区(Asia/Shanghai)的本地时间
+     */
+    private LocalDateTime pubDate;
+    /**
+     * 种子内容的大小(bytes)，来自 enclosure@length 或 torrent/contentLength
+     */
+    private Long contentLength;
+    private String guid;
+    /**
+     * 蜜柑的番剧 id，只有单个番剧的订阅链接里才有
+     */
+    private String bangumiId;
+    /**
+     * 蜜柑的字幕组 id，只有单个番剧的订阅链接里才有
+     */
+    private String subgroupId;
 
     public String getTitle() {
         return title;
@@ -38,4 +61,81 @@ public class MikanRssItem {
         return this;
     }
 
+    public String getInfoHash() {
+        return infoHash;
+    }
+
+    public MikanRssItem setInfoHash(String infoHash) {
+        this.infoHash = infoHash;
+        return this;
+    }
+
+    public LocalDateTime getPubDate() {
+        return pubDate;
+    }
+
+    public MikanRssItem setPubDate(LocalDateTime pubDate) {
+        this.pubDate = pubDate;
+        return this;
+    }
+
+    public Long getContentLength() {
+        return contentLength;
+    }
+
+    public MikanRssItem setContentLength(Long contentLength) {
+        this.contentLength = contentLength;
+        return this;
+    }
+
+    public String getGuid() {
+        return guid;
+    }
+
+    public MikanRssItem setGuid(String guid) {
+        this.guid = guid;
+        return this;
+    }
+
+    public String getBangumiId() {
+        return bangumiId;
+    }
+
+    public MikanRssItem setBangumiId(String bangumiId) {
+        this.bangumiId = bangumiId;
+        return this;
+    }
+
+    public String getSubgroupId() {
+        return subgroupId;
+    }
+
+    public MikanRssItem setSubgroupId(String subgroupId) {
+        this.subgroupId = subgroupId;
+        return this;
+    }
+
+    /**
+     * 条目对应种子的唯一标识，有 info-hash 时取 info-hash，否则取种子链接.
+     *
+     * @return 唯一标识，没有种子链接时为 null
+     */
+    public String getIdentity() {
+        return infoHash != null ? infoHash : torrentUrl;
+    }
+
+    @Override
+    public String toString() {
+        return "MikanRssItem{" +
+            "title='" + title + '\'' +
+            ", torrentUrl='" + torrentUrl + '\'' +
+            ", episodePageUrl='" + episodePageUrl + '\'' +
+            ", infoHash='" + infoHash + '\'' +
+            ", pubDate=" + pubDate +
+            ", contentLength=" + contentLength +
+            ", guid='" + guid + '\'' +
+            ", bangumiId='" + bangumiId + '\'' +
+            ", subgroupId='" + subgroupId + '\'' +
+            '}';
+    }
 }
@@ -0,0 +1,231 @@
+package run.ikaros.plugin.mikan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import run.ikaros.plugin.mikan.store.BangumiReleaseTimeStore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 订阅链接的拉取调度.
+ * <br/>
+ * 根据条目的发布时间，记录每部番剧每周的更新时间(星期几+时刻)，
+ * 在预计的更新时间附近按最短间隔拉取，远离更新时间时逐渐放慢，间隔始终在上下限之间.
+ * 设置了 {@link BangumiReleaseTimeStore} 时记录的发布时间会持久化，插件重启后订阅返回 304 也能继续预测.
+ * 记录时只更新内存，每个周期结束时调用 {@link #flushReleaseTimes()} 一次写入变化的番剧.
+ */
+@Slf4j
+public class MikanRssPollScheduler {
+    static final ZoneId MIKAN_ZONE_ID = ZoneId.of("Asia/Shanghai");
+    /**
+     * 每部番剧保留最近几次的发布时间
+     */
+    private static final int MAX_RELEASES_PER_BANGUMI = 4;
+    /**
+     * 超过这个时间的发布时间不再参与预测，一般是已经完结的番剧
+     */
+    private static final Duration RELEASE_EXPIRE = Duration.ofDays(28);
+    private static final Duration RELEASE_WINDOW_BEFORE = Duration.ofMinutes(15);
+    private static final Duration RELEASE_WINDOW_AFTER = Duration.ofMinutes(90);
+    private static final Pattern DIGITS_PATTERN = Pattern.compile("\\d+");
+    private final Map<String, NavigableSet<LocalDateTime>> bangumiReleaseTimes =
+        new ConcurrentHashMap<>();
+    private volatile BangumiReleaseTimeStore releaseTimeStore;
+    /**
+     * 发布时间有变化但还没有写入 {@link #releaseTimeStore} 的番剧
+     */
+    private final Set<String> dirtyBangumiKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 加载之前持久化的发布时间，之后记录的发布时间也会保存.
+     */
+    public void setReleaseTimeStore(BangumiReleaseTimeStore releaseTimeStore) {
+        setReleaseTimeStore(releaseTimeStore, LocalDateTime.now(MIKAN_ZONE_ID));
+    }
+
+    void setReleaseTimeStore(BangumiReleaseTimeStore releaseTimeStore, LocalDateTime now) {
+        Assert.notNull(releaseTimeStore, "'releaseTimeStore' must not null.");
+        Assert.notNull(now, "'now' must not null.");
+        LocalDateTime expireTime = now.minus(RELEASE_EXPIRE);
+        List<String> expiredBangumiKeys = new ArrayList<>();
+        releaseTimeStore.getAll().forEach((bangumiKey, releaseTimes) -> {
+            if (releaseTimes.stream().noneMatch(time -> time.isAfter(expireTime))) {
+                expiredBangumiKeys.add(bangumiKey);
+                return;
+            }
+            NavigableSet<LocalDateTime> times =
+                bangumiReleaseTimes.computeIfAbsent(bangumiKey, key -> new TreeSet<>());
+            synchronized (times) {
+                times.addAll(releaseTimes);
+                while (times.size() > MAX_RELEASES_PER_BANGUMI) {
+                    times.pollFirst();
+                }
+            }
+        });
+        // 已经过期的番剧不再参与预测，从文件中删除
+        releaseTimeStore.removeAll(expiredBangumiKeys);
+        log.debug("load bangumi release times size: {}", bangumiReleaseTimes.size());
+        this.releaseTimeStore = releaseTimeStore;
+    }
+
+    /**
+     * 记录条目的发布时间，没有发布时间的条目忽略.
+     */
+    public void record(MikanRssItem mikanRssItem) {
+        if (mikanRssItem == null || mikanRssItem.getPubDate() == null) {
+            return;
+        }
+        String bangumiKey = getBangumiKey(mikanRssItem);
+        if (bangumiKey == null) {
+            return;
+        }
+        NavigableSet<LocalDateTime> releaseTimes =
+            bangumiReleaseTimes.computeIfAbsent(bangumiKey, key -> new TreeSet<>());
+        boolean changed;
+        synchronized (releaseTimes) {
+            changed = releaseTimes.add(mikanRssItem.getPubDate());
+            while (releaseTimes.size() > MAX_RELEASES_PER_BANGUMI) {
+                releaseTimes.pollFirst();
+            }
+            // 比保留的发布时间都早的条目不会改变记录
+            changed &= releaseTimes.contains(mikanRssItem.getPubDate());
+        }
+        if (changed && releaseTimeStore != null) {
+            dirtyBangumiKeys.add(bangumiKey);
+        }
+    }
+
+    /**
+     * 把上次写入之后有变化的番剧的发布时间一次写入 {@link BangumiReleaseTimeStore}，
+     * 每个拉取周期结束时调用.
+     */
+    public void flushReleaseTimes() {
+        BangumiReleaseTimeStore store = releaseTimeStore;
+        if (store == null || dirtyBangumiKeys.isEmpty()) {
+            return;
+        }
+        Map<String, List<LocalDateTime>> changedReleaseTimes = new HashMap<>();
+        for (String bangumiKey : List.copyOf(dirtyBangumiKeys)) {
+            dirtyBangumiKeys.remove(bangumiKey);
+            NavigableSet<LocalDateTime> releaseTimes = bangumiReleaseTimes.get(bangumiKey);
+            if (releaseTimes == null) {
+                continue;
+            }
+            synchronized (releaseTimes) {
+                changedReleaseTimes.put(bangumiKey, List.copyOf(releaseTimes));
+            }
+        }
+        store.putAll(changedReleaseTimes);
+        log.debug("flush bangumi release times size: {}", changedReleaseTimes.size());
+    }
+
+    /**
+     * 番剧的标识，优先使用蜜柑的番剧 id 和字幕组 id，没有字幕组 id 时只使用番剧 id，
+     * 都没有时使用标题，同一字幕组同一番剧的标题只有集数等数字不同.
+     */
+    static String getBangumiKey(MikanRssItem mikanRssItem) {
+        String bangumiId = mikanRssItem.getBangumiId();
+        if (bangumiId != null && !bangumiId.isBlank()) {
+            String subgroupId = mikanRssItem.getSubgroupId();
+            if (subgroupId == null || subgroupId.isBlank()) {
+                return bangumiId;
+            }
+            return bangumiId + "#" + subgroupId;
+        }
+        String title = mikanRssItem.getTitle();
+        if (title == null || title.isBlank()) {
+            return null;
+        }
+        return DIGITS_PATTERN.matcher(title.trim()).replaceAll("#");
+    }
+
+    /**
+     * 计算距离下一次拉取的间隔.
+     *
+     * @param minInterval     间隔下限，预计的更新时间附近使用
+     * @param maxInterval     间隔上限
+     * @param defaultInterval 还没有记录任何发布时间时使用
+     */
+    public Duration nextDelay(Duration minInterval, Duration maxInterval,
+                              Duration defaultInterval) {
+        return nextDelay(LocalDateTime.now(MIKAN_ZONE_ID), minInterval, maxInterval,
+            defaultInterval);
+    }
+
+    Duration nextDelay(LocalDateTime now, Duration minInterval, Duration maxInterval,
+                       Duration defaultInterval) {
+        Assert.notNull(now, "'now' must not null.");
+        Assert.notNull(minInterval, "'minInterval' must not null.");
+        Assert.notNull(maxInterval, "'maxInterval' must not null.");
+        Assert.notNull(defaultInterval, "'defaultInterval' must not null.");
+        if (maxInterval.compareTo(minInterval) < 0) {
+            maxInterval = minInterval;
+        }
+
+        List<LocalDateTime> releaseTimes = getRecentReleaseTimes(now);
+        if (releaseTimes.isEmpty()) {
+            return clamp(defaultInterval, minInterval, maxInterval);
+        }
+
+        Duration untilNextWindow = null;
+        for (LocalDateTime releaseTime : releaseTimes) {
+            // 本周的更新时间，以及前后一周，处理跨周的窗口
+            LocalDateTime thisWeek = now.toLocalDate()
+                .with(TemporalAdjusters.previousOrSame(releaseTime.getDayOfWeek()))
+                .atTime(releaseTime.toLocalTime());
+            for (int week = -1; week <= 1; week++) {
+                LocalDateTime expected = thisWeek.plusWeeks(week);
+                LocalDateTime windowStart = expected.minus(RELEASE_WINDOW_BEFORE);
+                LocalDateTime windowEnd = expected.plus(RELEASE_WINDOW_AFTER);
+                if (!now.isBefore(windowStart) && !now.isAfter(windowEnd)) {
+                    log.debug("in release window of {}, poll after {}.", expected,
+                        minInterval);
+                    return minInterval;
+                }
+                if (windowStart.isAfter(now)) {
+                    Duration duration = Duration.between(now, windowStart);
+                    if (untilNextWindow == null || duration.compareTo(untilNextWindow) < 0) {
+                        untilNextWindow = duration;
+                    }
+                }
+            }
+        }
+        Duration delay = clamp(untilNextWindow == null ? maxInterval : untilNextWindow,
+            minInterval, maxInterval);
+        log.debug("next release window after {}, poll after {}.", untilNextWindow, delay);
+        return delay;
+    }
+
+    private List<LocalDateTime> getRecentReleaseTimes(LocalDateTime now) {
+        LocalDateTime expireTime = now.minus(RELEASE_EXPIRE);
+        List<LocalDateTime> releaseTimes = new ArrayList<>();
+        for (NavigableSet<LocalDateTime> times : bangumiReleaseTimes.values()) {
+            synchronized (times) {
+                releaseTimes.addAll(times.tailSet(expireTime, false));
+            }
+        }
+        return releaseTimes;
+    }
+
+    private static Duration clamp(Duration duration, Duration min, Duration max) {
+        if (duration.compareTo(min) < 0) {
+            return min;
+        }
+        if (duration.compareTo(max) > 0) {
+            return max;
+        }
+        return duration;
+    }
+}
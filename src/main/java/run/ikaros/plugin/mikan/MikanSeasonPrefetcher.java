@@ -0,0 +1,116 @@
+package run.ikaros.plugin.mikan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import run.ikaros.plugin.mikan.store.PrefetchedSeasonStore;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按季度预先抓取蜜柑当季所有番剧对应的 bgm.tv 条目 id.
+ * <br/>
+ * 读取蜜柑按星期排列的季度番剧索引，逐个低速请求番剧页面，结果保存到
+ * {@link BgmTvSubjectResolver} 的磁盘映射中，解析订阅时只有未知的番剧才需要请求蜜柑.
+ * 已经有映射(包括确认过没有 bgm.tv 链接)的番剧不会重复请求.
+ * 同一季度所有番剧都请求成功后记录到 {@link PrefetchedSeasonStore}，插件重启后也不再抓取；
+ * 有番剧请求失败时不记录，下次检查时只重新请求还没有结果的番剧.
+ */
+@Slf4j
+public class MikanSeasonPrefetcher {
+    /**
+     * 两个番剧页面之间的间隔，在 {@link ReactiveMikanClient} 的限流之外额外降低后台任务的速度
+     */
+    private static final Duration BANGUMI_PAGE_INTERVAL = Duration.ofSeconds(3);
+    private final ReactiveMikanClient mikanClient;
+    private final BgmTvSubjectResolver bgmTvSubjectResolver;
+    private final PrefetchedSeasonStore prefetchedSeasonStore;
+    private final Duration bangumiPageInterval;
+
+    public MikanSeasonPrefetcher(ReactiveMikanClient mikanClient,
+                                 BgmTvSubjectResolver bgmTvSubjectResolver,
+                                 PrefetchedSeasonStore prefetchedSeasonStore) {
+        this(mikanClient, bgmTvSubjectResolver, prefetchedSeasonStore, BANGUMI_PAGE_INTERVAL);
+    }
+
+    MikanSeasonPrefetcher(ReactiveMikanClient mikanClient,
+                          BgmTvSubjectResolver bgmTvSubjectResolver,
+                          PrefetchedSeasonStore prefetchedSeasonStore,
+                          Duration bangumiPageInterval) {
+        Assert.notNull(mikanClient, "'mikanClient' must not null.");
+        Assert.notNull(bgmTvSubjectResolver, "'bgmTvSubjectResolver' must not null.");
+        Assert.notNull(prefetchedSeasonStore, "'prefetchedSeasonStore' must not null.");
+        Assert.notNull(bangumiPageInterval, "'bangumiPageInterval' must not null.");
+        this.mikanClient = mikanClient;
+        this.bgmTvSubjectResolver = bgmTvSubjectResolver;
+        this.prefetchedSeasonStore = prefetchedSeasonStore;
+        this.bangumiPageInterval = bangumiPageInterval;
+    }
+
+    /**
+     * 抓取当前季度，本季度已经完整抓取过时直接结束.
+     */
+    public Mono<Void> prefetchCurrentSeason() {
+        return Mono.defer(() -> {
+            LocalDate today = LocalDate.now(MikanRssPollScheduler.MIKAN_ZONE_ID);
+            int year = today.getYear();
+            String seasonStr = getSeasonStr(today);
+            String season = year + seasonStr;
+            if (prefetchedSeasonStore.isPrefetched(season)) {
+                return Mono.empty();
+            }
+            return prefetchSeason(year, seasonStr)
+                .filter(Boolean::booleanValue)
+                // 记录季度需要写磁盘，不在定时器线程中执行
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(completed -> prefetchedSeasonStore.markPrefetched(season))
+                .then();
+        });
+    }
+
+    /**
+     * 抓取指定季度，单个番剧失败时跳过，下次抓取时重试.
+     *
+     * @return 季度中的所有番剧是否都已经有结果，有番剧请求失败时为 false
+     */
+    public Mono<Boolean> prefetchSeason(int year, String seasonStr) {
+        final AtomicInteger resolvedCount = new AtomicInteger();
+        final AtomicInteger failedCount = new AtomicInteger();
+        return mikanClient.getSeasonBangumiIds(year, seasonStr)
+            .doOnNext(bangumiIds -> log.info(
+                "starting prefetch mikan season bangumi, year: {}, season: {}, size: {}",
+                year, seasonStr, bangumiIds.size()))
+            .flatMapMany(Flux::fromIterable)
+            .filter(bangumiId -> !bgmTvSubjectResolver.isResolved(bangumiId))
+            .concatMap(bangumiId -> bgmTvSubjectResolver.resolveBgmTvSubjectIdByBangumiId(bangumiId)
+                .doOnNext(bgmTvSubjectId -> resolvedCount.incrementAndGet())
+                .onErrorResume(e -> {
+                    failedCount.incrementAndGet();
+                    log.warn("prefetch bgm tv subject fail for bangumi id: {}", bangumiId, e);
+                    return Mono.empty();
+                })
+                .then(Mono.delay(bangumiPageInterval)))
+            .then(Mono.fromSupplier(() -> {
+                log.info("end prefetch mikan season bangumi, year: {}, season: {}, "
+                        + "resolved: {}, failed: {}",
+                    year, seasonStr, resolvedCount.get(), failedCount.get());
+                return failedCount.get() == 0;
+            }));
+    }
+
+    /**
+     * 蜜柑的季度：1-3 月为冬，4-6 月为春，7-9 月为夏，10-12 月为秋.
+     */
+    static String getSeasonStr(LocalDate date) {
+        return switch ((date.getMonthValue() - 1) / 3) {
+            case 0 -> "冬";
+            case 1 -> "春";
+            case 2 -> "夏";
+            default -> "秋";
+        };
+    }
+}
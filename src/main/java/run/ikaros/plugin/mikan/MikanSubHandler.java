@@ -24,18 +24,38 @@ import run.ikaros.api.infra.utils.FileUtils;
 import run.ikaros.api.store.enums.AttachmentType;
 import run.ikaros.api.store.enums.SubjectSyncPlatform;
 import run.ikaros.api.store.enums.TagType;
-import run.ikaros.plugin.mikan.qbittorrent.QbTorrentInfoFilter;
 import run.ikaros.plugin.mikan.qbittorrent.QbittorrentClient;
+import run.ikaros.plugin.mikan.qbittorrent.QbittorrentSyncClient;
+import run.ikaros.plugin.mikan.qbittorrent.TorrentTagBatch;
+import run.ikaros.plugin.mikan.qbittorrent.model.QbConfig;
 import run.ikaros.plugin.mikan.qbittorrent.model.QbTorrentInfo;
+import run.ikaros.plugin.mikan.store.BangumiReleaseTimeStore;
+import run.ikaros.plugin.mikan.store.BgmTvSubjectIdStore;
+import run.ikaros.plugin.mikan.store.PrefetchedSeasonStore;
+import run.ikaros.plugin.mikan.store.ProcessedRssItemIndex;
+import run.ikaros.plugin.mikan.store.RssFeedValidatorStore;
+import run.ikaros.plugin.mikan.store.RssSnapshotArchive;
+import run.ikaros.plugin.mikan.store.RssSnapshotStore;
+import run.ikaros.plugin.mikan.torrent.TorrentMetadata;
 import run.ikaros.plugin.mikan.utils.StringMatchingUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static run.ikaros.api.core.attachment.AttachmentConst.DOWNLOAD_DIRECTORY_ID;
 
@@ -43,6 +63,17 @@ import static run.ikaros.api.core.attachment.AttachmentConst.DOWNLOAD_DIRECTORY_
 @Component
 public class MikanSubHandler {
     private static final String QBITTORRENT_IMPORT_FOLDER_NAME = "downloads";
+    private static final int RSS_ITEM_CONCURRENCY = 4;
+    /**
+     * 添加后确认的轮询间隔，从 100 毫秒开始每次翻倍，最长 1.6 秒，总共等待约 5 秒
+     */
+    private static final Duration CONFIRM_MIN_BACKOFF = Duration.ofMillis(100);
+    private static final Duration CONFIRM_MAX_BACKOFF = Duration.ofMillis(1600);
+    private static final int CONFIRM_MAX_ATTEMPTS = 7;
+    /**
+     * 确认时每个 torrents/info 请求查询的 hash 数量，避免链接过长
+     */
+    private static final int CONFIRM_HASHES_PER_QUERY = 50;
     private final MikanClient mikanClient;
     private final QbittorrentClient qbittorrentClient;
     private final SubjectOperate subjectOperate;
@@ -52,6 +83,21 @@ public class MikanSubHandler {
     private final SubjectSyncOperate subjectSyncOperate;
     private final IkarosProperties ikarosProperties;
     private RuntimeMode pluginRuntimeMode;
+    private ReactiveMikanClient reactiveMikanClient;
+    private QbittorrentSyncClient qbittorrentSyncClient;
+    private ProcessedRssItemIndex processedRssItemIndex;
+    private BgmTvSubjectResolver bgmTvSubjectResolver;
+    private MikanSeasonPrefetcher mikanSeasonPrefetcher;
+    private final MikanRssPollScheduler mikanRssPollScheduler = new MikanRssPollScheduler();
+    /**
+     * 按番剧分组的种子标签，每个周期结束时一起添加，添加失败的留到下一个周期
+     */
+    private final TorrentTagBatch torrentTagBatch = new TorrentTagBatch();
+    /**
+     * 上次导入之后下载完成的种子，hash -> 种子，由 qbittorrent 同步的下载完成事件收集
+     */
+    private final Map<String, QbTorrentInfo> completedTorrents = new ConcurrentHashMap<>();
+    private final AtomicBoolean importedAllCompletedTorrents = new AtomicBoolean();
 
     public MikanSubHandler(MikanClient mikanClient, QbittorrentClient qbittorrentClient,
                            SubjectOperate subjectOperate, AttachmentOperate attachmentOperate,
@@ -77,6 +123,25 @@ public class MikanSubHandler {
             qbittorrentClient.init();
             qbittorrentClient.setBaseSavePath(ikarosProperties.getWorkDir()
                     .resolve(AppConst.CACHE_DIR_NAME).toString());
+            qbittorrentSyncClient = new QbittorrentSyncClient(qbittorrentClient);
+            qbittorrentSyncClient.events()
+                    .filter(event -> QbittorrentSyncClient.TorrentEvent.Type.COMPLETED
+                            .equals(event.type()))
+                    .map(QbittorrentSyncClient.TorrentEvent::torrent)
+                    .subscribe(torrent -> completedTorrents.put(torrent.getHash(), torrent));
+            Path pluginDataDir = ikarosProperties.getWorkDir()
+                    .resolve(DefaultConst.PLUGIN_DATA_DIR);
+            mikanClient.setRssFeedValidatorStore(new RssFeedValidatorStore(pluginDataDir));
+            mikanRssPollScheduler.setReleaseTimeStore(
+                    new BangumiReleaseTimeStore(pluginDataDir));
+            mikanClient.setRssSnapshotStore(new RssSnapshotStore(pluginDataDir));
+            mikanClient.setRssSnapshotArchive(new RssSnapshotArchive(pluginDataDir));
+            processedRssItemIndex = new ProcessedRssItemIndex(pluginDataDir);
+            reactiveMikanClient = mikanClient.getReactiveMikanClient();
+            bgmTvSubjectResolver = new BgmTvSubjectResolver(reactiveMikanClient,
+                    new BgmTvSubjectIdStore(pluginDataDir));
+            mikanSeasonPrefetcher = new MikanSeasonPrefetcher(reactiveMikanClient,
+                    bgmTvSubjectResolver, new PrefetchedSeasonStore(pluginDataDir));
             mikanClient.init();
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -84,14 +149,53 @@ public class MikanSubHandler {
     }
 
     public Disposable startParseMikanSubRssAndAddToQbittorrent() {
-        // 订阅链接30分钟解析一次，插件开发者模式下3分钟一次
-        return Flux.interval(Duration.ofMinutes(Objects.nonNull(pluginRuntimeMode) &&
-                        RuntimeMode.DEVELOPMENT.equals(pluginRuntimeMode) ? 3 : 30))
-                .flatMap(tick -> parseMikanSubRssAndAddToQbittorrent())
+        // 每次解析完成后再根据番剧的更新时间计算下一次的间隔
+        return Mono.defer(() -> Mono.delay(nextParseMikanSubRssDelay()))
+                .then(parseMikanSubRssAndAddToQbittorrent()
+                        .onErrorResume(throwable -> Mono.empty()))
+                .repeat()
 //                .subscribeOn(Schedulers.newSingle("ParseMikanSubRssAndAddToQbittorrent", true))
                 .subscribe();
     }
 
+    private Duration nextParseMikanSubRssDelay() {
+        // 还没有记录发布时间时30分钟解析一次，插件开发者模式下3分钟一次
+        boolean development = Objects.nonNull(pluginRuntimeMode) &&
+                RuntimeMode.DEVELOPMENT.equals(pluginRuntimeMode);
+        Duration defaultInterval = Duration.ofMinutes(development ? 3 : 30);
+        QbConfig config = mikanClient.getConfig();
+        Duration minInterval = Duration.ofMinutes(
+                Math.max(1, Objects.requireNonNullElse(config.getMikanRssPollMinMinutes(), 2)));
+        Duration maxInterval = development ? defaultInterval : Duration.ofMinutes(
+                Math.max(1, Objects.requireNonNullElse(config.getMikanRssPollMaxMinutes(), 180)));
+        Duration delay = mikanRssPollScheduler.nextDelay(minInterval, maxInterval,
+                defaultInterval);
+        log.debug("next parse mikan my subscribe rss after {}.", delay);
+        return delay;
+    }
+
+    public Disposable startPrefetchSeasonBangumiSubjects() {
+        // 插件启动10分钟后开始，之后每12小时检查一次是否进入了新的季度
+        return Flux.interval(Duration.ofMinutes(10), Duration.ofHours(12))
+                .filter(tick -> Boolean.TRUE.equals(
+                        mikanClient.getConfig().getMikanSeasonPrefetch()))
+                .concatMap(tick -> mikanSeasonPrefetcher.prefetchCurrentSeason()
+                        .onErrorResume(throwable -> {
+                            log.warn("prefetch mikan season bangumi fail.", throwable);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    public Disposable startProbeMikanMirrors() {
+        // 插件启动后立即探测一次，之后每10分钟一次，同时输出各个路由的请求统计
+        return Flux.interval(Duration.ZERO, Duration.ofMinutes(10))
+                .concatMap(tick -> reactiveMikanClient.probeMikanMirrors()
+                        .then(Mono.fromRunnable(() ->
+                                mikanClient.getHttpTransport().getRouteMetrics().logSnapshot())))
+                .subscribe();
+    }
+
     public Disposable startImportQbittorrentFilesAndAddSubject() {
         // Qbittorrent 每5分钟查询一次，插件开发者模式下1分钟一次
         return Flux.interval(Duration.ofMinutes(Objects.nonNull(pluginRuntimeMode) &&
@@ -102,75 +206,354 @@ public class MikanSubHandler {
     }
 
     public Mono<Void> parseMikanSubRssAndAddToQbittorrent() {
-        return Mono.just(mikanClient)
+        return Mono.defer(this::doParseMikanSubRssAndAddToQbittorrent);
+    }
+
+    private Mono<Void> doParseMikanSubRssAndAddToQbittorrent() {
+        if (Boolean.TRUE.equals(mikanClient.getConfig().getMikanRssReplay())) {
+            return replayArchivedMikanSubRss();
+        }
+        // 订阅链接未变化(304)或者没有新条目时，整个周期不再请求 qbittorrent
+        final AtomicLong itemCount = new AtomicLong();
+        return Mono.just(reactiveMikanClient)
                 .doOnNext(mc ->
                         log.info("starting parse mikan my subscribe rss url from mikan config map."))
-                .flatMapMany(mc -> Flux.fromStream(mc.parseMikanMySubscribeRss().stream()))
-                .doOnNext(mikanRssItem ->
-                        log.debug("start for each mikan rss item list for item title: {}",
-                                mikanRssItem.getTitle()))
-                .flatMap(mikanRssItem -> {
-                    String mikanRssItemTitle = mikanRssItem.getTitle();
-                    qbittorrentClient.addTorrentFromUrl(mikanRssItem.getTorrentUrl(),
-                            mikanRssItemTitle);
-                    log.debug("add to qbittorrent for torrent name: [{}] and torrent url: [{}].",
-                            mikanRssItemTitle, mikanRssItem.getTorrentUrl());
-
-                    boolean qbIsNull = true;
-                    QbTorrentInfo qbTorrentInfo = null;
-                    long start = System.currentTimeMillis();
-                    while (qbIsNull) {
-                        try {
-                            Thread.sleep(100);
-                        } catch (InterruptedException e) {
-                            log.error(e.getMessage(), e);
-                        }
-                        qbTorrentInfo =
-                                qbittorrentClient.getTorrentList(QbTorrentInfoFilter.ALL,
-                                                qbittorrentClient.getCategory(), null, null, null, null)
-                                        .stream()
-                                        .filter(torrentInfo -> StringMatchingUtils.isSimilar(mikanRssItemTitle, torrentInfo.getName(), 0.6)
-                                                || mikanRssItemTitle.equals(torrentInfo.getName()))
-                                        .findFirst().orElse(null);
-                        if (qbTorrentInfo != null && StringUtils.hasText(qbTorrentInfo.getHash())) {
-                            qbIsNull = false;
-                        }
-                        if (System.currentTimeMillis() - start > 5000) {
-                            log.error("fail for qbittorrentClient.getTorrentList(), mikanItem: {}", mikanRssItem);
-                            break;
-                        }
+                .flatMapMany(ReactiveMikanClient::streamMikanMySubscribeRss)
+                .doOnNext(mikanRssPollScheduler::record)
+                .filter(mikanRssItem -> !isProcessed(mikanRssItem))
+                .doOnNext(mikanRssItem -> {
+                    itemCount.incrementAndGet();
+                    log.debug("start for each mikan rss item list for item title: {}",
+                            mikanRssItem.getTitle());
+                })
+                // 并发下载种子文件，请求蜜柑时不占用线程
+                .flatMapSequential(mikanRssItem -> downloadTorrentMetadata(mikanRssItem)
+                        .map(torrentMetadata -> new PendingTorrent(mikanRssItem, torrentMetadata))
+                        .defaultIfEmpty(new PendingTorrent(mikanRssItem, null)),
+                        RSS_ITEM_CONCURRENCY)
+                // 整个周期的新种子合并为批量请求添加到 qbittorrent
+                .collectList()
+                .filter(pendingTorrents -> !pendingTorrents.isEmpty())
+                .flatMapMany(pendingTorrents ->
+                        Mono.fromCallable(() -> addTorrents(pendingTorrents))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(batchAddedHashes ->
+                                        confirmAddedTorrents(pendingTorrents, 0)
+                                                .publishOn(Schedulers.boundedElastic())
+                                                .doOnNext(addedTorrents -> renameAddedTorrents(
+                                                        addedTorrents, batchAddedHashes)))
+                                .flatMapIterable(addedTorrents -> addedTorrents))
+                // 同一番剧的多个剧集请求蜜柑页面时会合并为一个请求
+                .flatMap(addedTorrent -> handleAddedTorrent(addedTorrent)
+                        .then(Mono.just(addedTorrent.mikanRssItem())),
+                        RSS_ITEM_CONCURRENCY)
+                .collectList()
+                // 种子已经添加并同步了条目，记录为已处理，标签添加失败不影响
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(mikanRssItems -> {
+                    markProcessed(mikanRssItems);
+                    commitRssFeedValidators(mikanRssItems.size(), itemCount.get());
+                    mikanRssPollScheduler.flushReleaseTimes();
+                    flushTorrentTags();
+                })
+                .doOnError(throwable -> {
+                    reactiveMikanClient.discardRssFeedValidators();
+                    mikanRssPollScheduler.flushReleaseTimes();
+                    log.error("parse mikan sub rss item fail.", throwable);
+                })
+                .doOnSuccess(mikanRssItems -> {
+                    if (itemCount.get() > 0) {
+                        // 如果新添加的种子文件状态是缺失文件，则需要再恢复下
+                        qbittorrentClient.tryToResumeAllMissingFilesErroredTorrents();
                     }
-                    long end = System.currentTimeMillis();
-                    // log.debug("qbittorrentClient.getTorrentList {}ms", end - start);
-
-                    String bgmTvSubjectId = qbTorrentInfo.getTags();
-                    if (!StringUtils.hasText(bgmTvSubjectId)) {
-                        // add subject map for torrentName
-                        String animePageUrl =
-                                mikanClient.getAnimePageUrlByEpisodePageUrl(
-                                        mikanRssItem.getEpisodePageUrl());
-                        String bgmTvSubjectPageUrl =
-                                mikanClient.getBgmTvSubjectPageUrlByAnimePageUrl(animePageUrl);
-                        if (!StringUtils.hasText(bgmTvSubjectPageUrl)) {
-                            return Mono.empty();
-                        }
-                        int index = bgmTvSubjectPageUrl.lastIndexOf("/");
-                        bgmTvSubjectId = bgmTvSubjectPageUrl.substring(index + 1);
-                        // log.debug("bgmTvSubjectId and qbTorrentInfo" + "bgmTvSubjectId: {} \nqbTorrentInfo: {}", bgmTvSubjectId, qbTorrentInfo);
-                        if (StringUtils.hasText(qbTorrentInfo.getHash())) {
-                            qbittorrentClient.addSingleTags(qbTorrentInfo.getHash(), bgmTvSubjectId);
-                            log.debug("add tag for torrent: {}", mikanRssItemTitle);
-                        }
+                    log.info("end parse mikan my subscribe rss url, item size: {}",
+                            itemCount.get());
+                })
+                .then();
+    }
+
+    /**
+     * 回放归档的订阅内容，经过和正常周期相同的解析、去重和过滤，
+     * 但不添加种子、不记录为已处理，也不记录发布时间影响拉取调度，只输出条目数量和耗时.
+     */
+    public Mono<Void> replayArchivedMikanSubRss() {
+        return Mono.defer(() -> {
+            final AtomicLong itemCount = new AtomicLong();
+            final AtomicLong newItemCount = new AtomicLong();
+            final long startNanos = System.nanoTime();
+            log.info("starting replay archived mikan rss.");
+            return mikanClient.replayArchivedMikanRss()
+                    .doOnNext(mikanRssItem -> itemCount.incrementAndGet())
+                    .filter(mikanRssItem -> !isProcessed(mikanRssItem))
+                    .doOnNext(mikanRssItem -> newItemCount.incrementAndGet())
+                    .doOnError(throwable -> log.error("replay archived mikan rss fail.",
+                            throwable))
+                    .doOnComplete(() -> {
+                        long costMillis = Math.max(1,
+                                Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+                        log.info("end replay archived mikan rss, item size: {}, "
+                                        + "not processed item size: {}, cost: {}ms, {} items/s",
+                                itemCount.get(), newItemCount.get(), costMillis,
+                                itemCount.get() * 1000 / costMillis);
+                    })
+                    .then();
+        });
+    }
+
+    /**
+     * 所有新条目都记录为已处理后才保存订阅链接的校验信息，
+     * 否则下次订阅返回 304 时没有处理的条目不会再出现，留到下一个周期完整读取重试.
+     */
+    private void commitRssFeedValidators(int processedCount, long itemCount) {
+        if (processedCount < itemCount) {
+            log.warn("{} of {} mikan rss item(s) not processed, fetch full rss next cycle.",
+                    itemCount - processedCount, itemCount);
+            reactiveMikanClient.discardRssFeedValidators();
+            return;
+        }
+        reactiveMikanClient.commitRssFeedValidators();
+    }
+
+    /**
+     * 添加收集的标签，包括之前周期没有添加成功的，失败时留到下一个周期重试.
+     */
+    private void flushTorrentTags() {
+        try {
+            torrentTagBatch.flush(qbittorrentClient);
+        } catch (Exception e) {
+            log.warn("add torrent tags fail, will retry in next cycle, tags: {}",
+                    torrentTagBatch.getHashesByTag().keySet(), e);
+        }
+    }
+
+    private Mono<Subject> handleAddedTorrent(AddedTorrent addedTorrent) {
+        MikanRssItem mikanRssItem = addedTorrent.mikanRssItem();
+        QbTorrentInfo qbTorrentInfo = addedTorrent.qbTorrentInfo();
+        String bgmTvSubjectId = qbTorrentInfo.getTags();
+        if (StringUtils.hasText(bgmTvSubjectId)) {
+            return syncSubject(bgmTvSubjectId);
+        }
+        // add subject map for torrentName
+        return bgmTvSubjectResolver.resolveBgmTvSubjectId(mikanRssItem)
+                .filter(StringUtils::hasText)
+                .doOnNext(subjectId -> {
+                    if (StringUtils.hasText(qbTorrentInfo.getHash())) {
+                        torrentTagBatch.add(qbTorrentInfo.getHash(), subjectId);
+                        log.debug("add tag for torrent: {}", mikanRssItem.getTitle());
                     }
-                    return syncSubject(bgmTvSubjectId);
                 })
-                .doOnError(throwable -> log.error("parse mikan sub rss item fail.", throwable))
-                .doOnComplete(() -> {
-                    // 如果新添加的种子文件状态是缺失文件，则需要再恢复下
-                    qbittorrentClient.tryToResumeAllMissingFilesErroredTorrents();
-                    log.info("end parse mikan my subscribe rss url.");
+                .flatMap(this::syncSubject);
+    }
+
+    /**
+     * 在本地下载并解析种子文件，失败时为空，由 qbittorrent 根据链接自行下载.
+     */
+    private Mono<TorrentMetadata> downloadTorrentMetadata(MikanRssItem mikanRssItem) {
+        return reactiveMikanClient.downloadTorrentFile(mikanRssItem.getTorrentUrl())
+                .map(TorrentMetadata::parse)
+                .doOnNext(torrentMetadata -> {
+                    if (StringUtils.hasText(mikanRssItem.getInfoHash())
+                            && !mikanRssItem.getInfoHash().equals(torrentMetadata.getInfoHash())) {
+                        log.warn("torrent info hash [{}] not match torrent url: {}",
+                                torrentMetadata.getInfoHash(), mikanRssItem.getTorrentUrl());
+                    }
+                    log.debug("parse torrent file success, hash: [{}], file size: [{}].",
+                            torrentMetadata.getInfoHash(), torrentMetadata.getFiles().size());
                 })
-                .then();
+                .onErrorResume(e -> {
+                    log.warn("download or parse torrent file fail, will add by url: {}",
+                            mikanRssItem.getTorrentUrl(), e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 批量添加一个周期的所有新种子：能在本地下载到种子文件的上传文件，其他的由 qbittorrent 根据链接下载，
+     * 已经在 qbittorrent 中的跳过.
+     * <br/>
+     * 不知道 hash 的链接只能按标题确认，逐个添加并使用蜜柑的标题作为种子名称.
+     *
+     * @return 批量添加的种子 hash(小写)，确认添加后再重命名为蜜柑的标题
+     */
+    private Set<String> addTorrents(List<PendingTorrent> pendingTorrents) {
+        qbittorrentSyncClient.sync();
+        List<QbittorrentClient.TorrentFile> torrentFiles = new ArrayList<>();
+        List<String> torrentUrls = new ArrayList<>();
+        Set<String> batchAddedHashes = new HashSet<>();
+        for (PendingTorrent pendingTorrent : pendingTorrents) {
+            String infoHash = pendingTorrent.getInfoHash();
+            MikanRssItem mikanRssItem = pendingTorrent.mikanRssItem();
+            if (!StringUtils.hasText(infoHash)) {
+                try {
+                    qbittorrentClient.addTorrentFromUrl(mikanRssItem.getTorrentUrl(),
+                            mikanRssItem.getTitle());
+                } catch (Exception e) {
+                    log.error("add torrent url to qbittorrent fail: {}",
+                            mikanRssItem.getTorrentUrl(), e);
+                }
+                continue;
+            }
+            if (Objects.nonNull(qbittorrentSyncClient.getTorrent(infoHash))) {
+                log.debug("torrent already exists in qbittorrent, hash: [{}].", infoHash);
+                continue;
+            }
+            TorrentMetadata torrentMetadata = pendingTorrent.torrentMetadata();
+            if (Objects.nonNull(torrentMetadata)) {
+                torrentFiles.add(new QbittorrentClient.TorrentFile(infoHash + ".torrent",
+                        torrentMetadata.getBytes()));
+            } else {
+                torrentUrls.add(mikanRssItem.getTorrentUrl());
+            }
+            batchAddedHashes.add(infoHash.toLowerCase());
+        }
+        try {
+            if (!torrentFiles.isEmpty()) {
+                qbittorrentClient.addTorrentsFromFiles(torrentFiles);
+            }
+            if (!torrentUrls.isEmpty()) {
+                qbittorrentClient.addTorrentsFromUrls(torrentUrls);
+            }
+            log.debug("add to qbittorrent for {} torrent file(s) and {} torrent url(s).",
+                    torrentFiles.size(), torrentUrls.size());
+        } catch (Exception e) {
+            // 部分批次可能已经添加成功，仍然确认
+            log.error("add torrents to qbittorrent fail.", e);
+        }
+        return batchAddedHashes;
+    }
+
+    /**
+     * 批量添加时 qbittorrent 使用种子自己的名称，确认添加后重命名为蜜柑的标题，
+     * 和逐个添加时的名称保持一致. 重命名失败只记录日志.
+     */
+    private void renameAddedTorrents(List<AddedTorrent> addedTorrents,
+                                     Set<String> batchAddedHashes) {
+        for (AddedTorrent addedTorrent : addedTorrents) {
+            String hash = addedTorrent.qbTorrentInfo().getHash();
+            String title = addedTorrent.mikanRssItem().getTitle();
+            if (!StringUtils.hasText(title) || !batchAddedHashes.contains(hash.toLowerCase())
+                    || title.equals(addedTorrent.qbTorrentInfo().getName())) {
+                continue;
+            }
+            try {
+                qbittorrentClient.renameTorrent(hash, title);
+                addedTorrent.qbTorrentInfo().setName(title);
+            } catch (Exception e) {
+                log.warn("rename torrent fail, hash: [{}], name: [{}].", hash, title, e);
+            }
+        }
+    }
+
+    /**
+     * 确认种子已经添加到 qbittorrent，每次轮询确认所有还在等待的种子，没有全部确认时按指数退避再次轮询，
+     * 等待期间不占用线程. 超时仍没有确认的条目不记录为已处理，下个周期重试.
+     *
+     * @param waiting 还在等待确认的条目
+     * @param attempt 已经轮询的次数
+     * @return 确认添加成功的种子
+     */
+    private Mono<List<AddedTorrent>> confirmAddedTorrents(List<PendingTorrent> waiting,
+                                                          int attempt) {
+        return Mono.fromCallable(() -> findAddedTorrents(waiting))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(addedTorrents -> {
+                    List<PendingTorrent> remaining = waiting.stream()
+                            .filter(pendingTorrent -> addedTorrents.stream().noneMatch(
+                                    addedTorrent -> addedTorrent.mikanRssItem()
+                                            == pendingTorrent.mikanRssItem()))
+                            .toList();
+                    if (remaining.isEmpty()) {
+                        return Mono.just(addedTorrents);
+                    }
+                    if (attempt + 1 >= CONFIRM_MAX_ATTEMPTS) {
+                        remaining.forEach(pendingTorrent -> log.error(
+                                "not found added torrent in qbittorrent, mikanItem: {}",
+                                pendingTorrent.mikanRssItem()));
+                        return Mono.just(addedTorrents);
+                    }
+                    return Mono.delay(getConfirmBackoff(attempt))
+                            .then(confirmAddedTorrents(remaining, attempt + 1))
+                            .map(moreAddedTorrents -> {
+                                List<AddedTorrent> allAddedTorrents =
+                                        new ArrayList<>(addedTorrents);
+                                allAddedTorrents.addAll(moreAddedTorrents);
+                                return allAddedTorrents;
+                            });
+                });
+    }
+
+    static Duration getConfirmBackoff(int attempt) {
+        Duration backoff = CONFIRM_MIN_BACKOFF.multipliedBy(1L << Math.min(attempt, 10));
+        return backoff.compareTo(CONFIRM_MAX_BACKOFF) > 0 ? CONFIRM_MAX_BACKOFF : backoff;
+    }
+
+    /**
+     * 知道 hash 的条目通过 torrents/info?hashes=a|b|c 只查询这些种子，
+     * 不知道 hash 的条目增量同步后在本地镜像中按标题匹配.
+     */
+    private List<AddedTorrent> findAddedTorrents(List<PendingTorrent> waiting) {
+        Map<String, PendingTorrent> waitingByHash = new LinkedHashMap<>();
+        List<PendingTorrent> waitingByTitle = new ArrayList<>();
+        for (PendingTorrent pendingTorrent : waiting) {
+            String infoHash = pendingTorrent.getInfoHash();
+            if (StringUtils.hasText(infoHash)) {
+                waitingByHash.put(infoHash.toLowerCase(), pendingTorrent);
+            } else {
+                waitingByTitle.add(pendingTorrent);
+            }
+        }
+        List<AddedTorrent> addedTorrents = new ArrayList<>();
+        List<String> hashes = new ArrayList<>(waitingByHash.keySet());
+        for (int from = 0; from < hashes.size(); from += CONFIRM_HASHES_PER_QUERY) {
+            String hashesQuery = String.join("|", hashes.subList(from,
+                    Math.min(from + CONFIRM_HASHES_PER_QUERY, hashes.size())));
+            for (QbTorrentInfo qbTorrentInfo : qbittorrentClient.getTorrentList(null, null,
+                    null, null, null, hashesQuery)) {
+                if (!StringUtils.hasText(qbTorrentInfo.getHash())) {
+                    continue;
+                }
+                PendingTorrent pendingTorrent =
+                        waitingByHash.remove(qbTorrentInfo.getHash().toLowerCase());
+                if (Objects.nonNull(pendingTorrent)) {
+                    addedTorrents.add(new AddedTorrent(pendingTorrent.mikanRssItem(),
+                            qbTorrentInfo));
+                }
+            }
+        }
+        if (!waitingByTitle.isEmpty()) {
+            qbittorrentSyncClient.sync();
+            for (PendingTorrent pendingTorrent : waitingByTitle) {
+                QbTorrentInfo qbTorrentInfo = findAddedTorrentByTitle(pendingTorrent);
+                if (Objects.nonNull(qbTorrentInfo)
+                        && StringUtils.hasText(qbTorrentInfo.getHash())) {
+                    addedTorrents.add(new AddedTorrent(pendingTorrent.mikanRssItem(),
+                            qbTorrentInfo));
+                }
+            }
+        }
+        return addedTorrents;
+    }
+
+    private QbTorrentInfo findAddedTorrentByTitle(PendingTorrent pendingTorrent) {
+        String mikanRssItemTitle = pendingTorrent.mikanRssItem().getTitle();
+        return qbittorrentSyncClient.getTorrents(qbittorrentClient.getCategory())
+                .stream()
+                .filter(torrentInfo -> StringMatchingUtils.isSimilar(mikanRssItemTitle, torrentInfo.getName(), 0.6)
+                        || mikanRssItemTitle.equals(torrentInfo.getName()))
+                .findFirst().orElse(null);
+    }
+
+    private boolean isProcessed(MikanRssItem mikanRssItem) {
+        return Objects.nonNull(processedRssItemIndex)
+                && processedRssItemIndex.contains(mikanRssItem.getIdentity());
+    }
+
+    private void markProcessed(List<MikanRssItem> mikanRssItems) {
+        if (Objects.nonNull(processedRssItemIndex)) {
+            processedRssItemIndex.addAll(mikanRssItems.stream()
+                    .map(MikanRssItem::getIdentity)
+                    .toList());
+        }
     }
 
     private Mono<Subject> matchingSingleFile(Subject subject, String fileName, Long parentId) {
@@ -225,22 +608,60 @@ public class MikanSubHandler {
     }
 
     public Mono<Void> importQbittorrentFilesAndAddSubject() {
-        return Mono.just(qbittorrentClient)
-                .doOnNext(qc ->
+        return Mono.just(qbittorrentSyncClient)
+                .doOnNext(qsc ->
                         log.info("starting import qbittorrent files that has download finished..."))
-                .flatMapMany(qc -> Flux.fromStream(qc.getTorrentList(QbTorrentInfoFilter.ALL,
-                        qc.getCategory(), null, null, null, null).stream()))
-                .filter(qbTorrentInfo -> qbTorrentInfo.getProgress() == 1.0)
+                // 增量同步，同步中下载完成的种子由下载完成事件收集
+                .flatMapMany(qsc -> qsc.syncAsync()
+                        .thenMany(Flux.defer(this::takeCompletedTorrents)))
                 .doOnNext(qbTorrentInfo ->
                         log.debug("start handle single torrent for content path: {}",
                                 qbTorrentInfo.getContentPath()))
-                .flatMap(qbTorrentInfo ->
-                        importFileByHardLinkRecursively(qbTorrentInfo.getContentPath(),
-                                DOWNLOAD_DIRECTORY_ID)
-                                .then(Mono.just(qbTorrentInfo))
-                )
+                .flatMap(qbTorrentInfo -> importCompletedTorrent(qbTorrentInfo)
+                        .onErrorResume(throwable -> {
+                            // 下次导入时重试
+                            log.error("handle single torrent fail: {}",
+                                    qbTorrentInfo.getName(), throwable);
+                            completedTorrents.putIfAbsent(qbTorrentInfo.getHash(),
+                                    qbTorrentInfo);
+                            return Mono.empty();
+                        }))
+                .doOnError(throwable -> log.error("import qbittorrent files fail.", throwable))
+                .doOnComplete(
+                        () -> log.info("end import qbittorrent files that has download finished."))
+                .then();
+    }
+
+    /**
+     * 插件启动后第一次导入分类中所有已经完成的种子，补上插件停止期间下载完成的，
+     * 之后只导入上次导入之后收到下载完成事件的种子.
+     */
+    private Flux<QbTorrentInfo> takeCompletedTorrents() {
+        String category = qbittorrentClient.getCategory();
+        if (importedAllCompletedTorrents.compareAndSet(false, true)) {
+            completedTorrents.clear();
+            return Flux.fromIterable(qbittorrentSyncClient.getTorrents(category))
+                    .filter(qbTorrentInfo -> qbTorrentInfo.getProgress() == 1.0);
+        }
+        List<QbTorrentInfo> torrents = new ArrayList<>();
+        for (String hash : List.copyOf(completedTorrents.keySet())) {
+            completedTorrents.remove(hash);
+            // 使用镜像中最新的状态，已经删除的种子不再导入
+            QbTorrentInfo qbTorrentInfo = qbittorrentSyncClient.getTorrent(hash);
+            if (Objects.nonNull(qbTorrentInfo)
+                    && (category == null || category.equals(qbTorrentInfo.getCategory()))) {
+                torrents.add(qbTorrentInfo);
+            }
+        }
+        return Flux.fromIterable(torrents);
+    }
 
-                .flatMap(torrentInfo -> Mono.just(
+    private Mono<Void> importCompletedTorrent(QbTorrentInfo qbTorrentInfo) {
+        return importFileByHardLinkRecursively(qbTorrentInfo.getContentPath(),
+                        DOWNLOAD_DIRECTORY_ID)
+                .then(Mono.just(qbTorrentInfo))
+                // 没有标签的种子 tags 可能为 null
+                .flatMap(torrentInfo -> Mono.justOrEmpty(
                                 torrentInfo.getTags())
                         .filter(StringUtils::hasText)
                         .flatMap(bgmTvSubjectId -> getSubjectWithBgmTvId(bgmTvSubjectId)
@@ -269,9 +690,6 @@ public class MikanSubHandler {
                                 })
                         )
                 )
-                .doOnError(throwable -> log.error("handle single torrent fail.", throwable))
-                .doOnComplete(
-                        () -> log.info("end import qbittorrent files that has download finished."))
                 .then();
     }
 
@@ -356,5 +774,16 @@ public class MikanSubHandler {
         }
     }
 
+    /**
+     * 等待添加到 qbittorrent 的条目，种子文件下载失败时 torrentMetadata 为 null.
+     */
+    private record PendingTorrent(MikanRssItem mikanRssItem, TorrentMetadata torrentMetadata) {
+        String getInfoHash() {
+            return Objects.nonNull(torrentMetadata)
+                    ? torrentMetadata.getInfoHash() : mikanRssItem.getInfoHash();
+        }
+    }
 
+    private record AddedTorrent(MikanRssItem mikanRssItem, QbTorrentInfo qbTorrentInfo) {
+    }
 }
@@ -0,0 +1,465 @@
+package run.ikaros.plugin.mikan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import run.ikaros.plugin.mikan.exception.MikanRequestException;
+import run.ikaros.plugin.mikan.exception.RssOperateException;
+import run.ikaros.plugin.mikan.http.HttpTransport;
+import run.ikaros.plugin.mikan.http.MikanMirrorExchangeFilter;
+import run.ikaros.plugin.mikan.http.MikanMirrorSelector;
+import run.ikaros.plugin.mikan.http.RateLimitExchangeFilter;
+import run.ikaros.plugin.mikan.store.RssFeedValidator;
+import run.ikaros.plugin.mikan.store.RssFeedValidatorStore;
+import run.ikaros.plugin.mikan.store.RssSnapshotArchive;
+import run.ikaros.plugin.mikan.store.RssSnapshotStore;
+import run.ikaros.plugin.mikan.store.SnapshotOutputStream;
+import run.ikaros.plugin.mikan.utils.DataBufferInputStream;
+import run.ikaros.plugin.mikan.utils.MikanHtmlUtils;
+import run.ikaros.plugin.mikan.utils.TeeInputStream;
+import run.ikaros.plugin.mikan.utils.XmlUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 基于 WebClient 的非阻塞蜜柑客户端，和 {@link MikanClient} 共享配置、限流、缓存和存储.
+ * <br/>
+ * 等待限流和网络 I/O 都不占用线程，并发度由进行中的请求数决定，不再取决于阻塞的线程数.
+ * 只有解析订阅和落盘(订阅快照、归档)时切换到 boundedElastic 线程.
+ */
+@Slf4j
+public class ReactiveMikanClient {
+    /**
+     * 页面和种子文件在内存中的大小上限，订阅内容边读取边解析，不受这个限制
+     */
+    private static final int MAX_IN_MEMORY_SIZE = 16 * 1024 * 1024;
+    /**
+     * 流式读取订阅时预取的响应体缓冲区数量
+     */
+    private static final int RSS_PREFETCH_BUFFERS = 16;
+    /**
+     * 和 {@link org.springframework.retry.annotation.Retryable} 的默认值一致：最多请求 3 次，间隔 1 秒
+     */
+    private static final Retry RETRY = Retry.fixedDelay(2, Duration.ofSeconds(1))
+        .onRetryExhaustedThrow((retrySpec, retrySignal) -> retrySignal.failure());
+    private static final Duration MIRROR_PROBE_TIMEOUT = Duration.ofSeconds(15);
+    private final MikanClient mikanClient;
+    private final WebClient webClient;
+    /**
+     * 订阅链接 -> 完整读取但还没有保存的校验信息
+     */
+    private final Map<String, RssFeedValidator> pendingRssFeedValidators =
+        new ConcurrentHashMap<>();
+
+    public ReactiveMikanClient(MikanClient mikanClient) {
+        Assert.notNull(mikanClient, "'mikanClient' must not null.");
+        this.mikanClient = mikanClient;
+        this.webClient = WebClient.builder()
+            // 手动设置的代理优先，否则按代理规则为每个 host 选择代理
+            .clientConnector(mikanClient.getHttpTransport()
+                .getClientHttpConnector(mikanClient::getProxy))
+            .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_IN_MEMORY_SIZE))
+            .filter(new MikanMirrorExchangeFilter(mikanClient.getMirrorSelector()))
+            // 限流在镜像切换之内，每个镜像按自己的 host 限流，429 / 503 反馈给对应镜像的限流器
+            .filter(new RateLimitExchangeFilter(mikanClient.getHostRateLimiter()))
+            // 超时在镜像切换之内，每个镜像单独计时，超时后切换到下一个镜像
+            .filter(this::timeout)
+            .filter(mikanClient.getHttpTransport().getRouteMetrics().exchangeFilter())
+            .build();
+    }
+
+    /**
+     * 等待响应头和读取响应体都有超时，超时后取消请求，卡住的响应不会一直占用进行中请求的许可.
+     * 读取响应体的超时是两次收到数据之间的间隔，和 {@link HttpTransport} 的读取超时一致.
+     */
+    private Mono<ClientResponse> timeout(ClientRequest request, ExchangeFunction next) {
+        Duration readTimeout = getReadTimeout();
+        return next.exchange(request)
+            .timeout(readTimeout)
+            .map(response -> response.mutate()
+                .body(body -> body.timeout(readTimeout))
+                .build());
+    }
+
+    private Duration getReadTimeout() {
+        Integer seconds = mikanClient.getConfig().getHttpReadTimeoutSeconds();
+        return Duration.ofSeconds(seconds == null || seconds < 1 ? 60 : seconds);
+    }
+
+    /**
+     * 并发读取当前配置的所有订阅链接，合并后按种子去重.
+     * <br/>
+     * 单个订阅链接失败只会跳过该链接，耗时取决于最慢的订阅链接而不是所有链接之和.
+     *
+     * @see #streamMikanRss(String)
+     */
+    public Flux<MikanRssItem> streamMikanMySubscribeRss() {
+        return Flux.defer(() -> {
+            // 之前周期没有提交的校验信息对应的条目可能没有处理，丢弃
+            pendingRssFeedValidators.clear();
+            List<String> mikanRssUrls = mikanClient.getMikanRssUrls();
+            Assert.isTrue(!mikanRssUrls.isEmpty(), "'mikanRss' must not null.");
+            Integer concurrency = mikanClient.getConfig().getMikanRssConcurrency();
+            return Flux.fromIterable(mikanRssUrls)
+                .flatMap(url -> streamMikanRss(url)
+                        .onErrorResume(e -> {
+                            log.warn("stream rss url fail, skip it: {}", url, e);
+                            return Flux.empty();
+                        }),
+                    concurrency == null || concurrency < 1 ? 1 : concurrency);
+        })
+            .filter(mikanRssItem -> Objects.nonNull(mikanRssItem.getIdentity()))
+            .distinct(MikanRssItem::getIdentity);
+    }
+
+    /**
+     * 读取单个订阅链接，设置了 {@link RssFeedValidatorStore} 时发起条件请求，
+     * 服务端返回 304 时直接返回空的 Flux.
+     * 完整读取后响应的校验信息只是暂存，调用方处理完条目后调用 {@link #commitRssFeedValidators()} 保存.
+     * <br/>
+     * 响应体边读取边解析，第一个条目在整个订阅下载完成之前就会发给下游，
+     * 内存中只保留少量缓冲区，取消订阅时取消请求，不再读取剩余内容.
+     *
+     * @param url RSS URL
+     * @return RSS 条目
+     */
+    public Flux<MikanRssItem> streamMikanRss(String url) {
+        Assert.hasText(url, "'url' must has text.");
+        RssFeedValidatorStore validatorStore = mikanClient.getRssFeedValidatorStore();
+        return webClient.get()
+            .uri(URI.create(url))
+            .headers(headers -> {
+                RssFeedValidator validator =
+                    validatorStore == null ? null : validatorStore.get(url);
+                if (validator == null) {
+                    return;
+                }
+                if (StringUtils.isNotBlank(validator.getEtag())) {
+                    headers.set(HttpHeaders.IF_NONE_MATCH, validator.getEtag());
+                }
+                if (StringUtils.isNotBlank(validator.getLastModified())) {
+                    headers.set(HttpHeaders.IF_MODIFIED_SINCE, validator.getLastModified());
+                }
+            })
+            .exchangeToFlux(response -> {
+                if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                    log.info("rss url not modified since last fetch, skip it: {}", url);
+                    return response.releaseBody().thenMany(Flux.empty());
+                }
+                if (!response.statusCode().is2xxSuccessful()) {
+                    return response.createException().flatMapMany(Flux::error);
+                }
+                HttpHeaders headers = response.headers().asHttpHeaders();
+                return Flux.using(
+                        () -> openRssFeedInput(url, response.bodyToFlux(DataBuffer.class)),
+                        input -> XmlUtils.parseMikanRssXmlStream(input.getInputStream())
+                            // 完整解析后才提交快照，失败或者取消时丢弃
+                            .concatWith(Mono.<MikanRssItem>fromRunnable(input::commitSnapshots)),
+                        RssFeedInput::close)
+                    // 完整解析后暂存校验信息，条目都记录为已处理后再保存，避免下次拿到 304 丢失条目
+                    .doOnComplete(() -> stageRssFeedValidator(url, headers))
+                    // 解析和写快照会阻塞，读取响应体时只预取少量缓冲区
+                    .subscribeOn(Schedulers.boundedElastic());
+            })
+            .onErrorMap(e -> !(e instanceof RssOperateException),
+                e -> new RssOperateException("fail stream rss url: " + url, e))
+            .doOnComplete(() -> log.debug("completed stream rss url: {}", url));
+    }
+
+    /**
+     * 边读取响应体边解析，开启快照或归档时读取的内容同时写入对应的文件.
+     */
+    private RssFeedInput openRssFeedInput(String url, Flux<DataBuffer> body) {
+        RssFeedInput input = new RssFeedInput(url,
+            new DataBufferInputStream(body, RSS_PREFETCH_BUFFERS));
+        RssSnapshotStore snapshotStore = mikanClient.getRssSnapshotStore();
+        if (Boolean.TRUE.equals(mikanClient.getConfig().getMikanRssKeepSnapshot())
+            && snapshotStore != null) {
+            input.tee(() -> snapshotStore.openLastSnapshot(url));
+        }
+        RssSnapshotArchive snapshotArchive = mikanClient.getRssSnapshotArchive();
+        if (Boolean.TRUE.equals(mikanClient.getConfig().getMikanRssArchive())
+            && snapshotArchive != null) {
+            input.tee(() -> snapshotArchive.openSnapshot(url, mikanClient.getRssArchiveMaxBytes()));
+        }
+        return input;
+    }
+
+    @FunctionalInterface
+    private interface SnapshotOpener {
+        SnapshotOutputStream open() throws IOException;
+    }
+
+    /**
+     * 订阅的响应体和同时写入的快照. 快照只用于排查问题和回放，失败时只记录日志.
+     */
+    private static final class RssFeedInput {
+        private final String url;
+        private final List<SnapshotOutputStream> snapshots = new ArrayList<>();
+        private InputStream inputStream;
+
+        private RssFeedInput(String url, InputStream inputStream) {
+            this.url = url;
+            this.inputStream = inputStream;
+        }
+
+        InputStream getInputStream() {
+            return inputStream;
+        }
+
+        void tee(SnapshotOpener opener) {
+            try {
+                SnapshotOutputStream snapshot = opener.open();
+                inputStream = new TeeInputStream(inputStream, snapshot);
+                snapshots.add(snapshot);
+            } catch (IOException e) {
+                log.warn("open rss snapshot fail for url: {}", url, e);
+            }
+        }
+
+        /**
+         * 读取解析器没有读取的剩余内容，保证快照完整，然后提交所有快照.
+         */
+        void commitSnapshots() {
+            if (snapshots.isEmpty()) {
+                return;
+            }
+            try {
+                inputStream.transferTo(OutputStream.nullOutputStream());
+                for (SnapshotOutputStream snapshot : snapshots) {
+                    snapshot.commit();
+                }
+            } catch (IOException e) {
+                log.warn("save rss snapshot fail for url: {}", url, e);
+            }
+        }
+
+        /**
+         * 关闭响应体，没有提交的快照被丢弃.
+         */
+        void close() {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                log.warn("close rss url stream fail: {}", url, e);
+            }
+        }
+    }
+
+    private void stageRssFeedValidator(String url, HttpHeaders headers) {
+        if (mikanClient.getRssFeedValidatorStore() == null) {
+            return;
+        }
+        RssFeedValidator validator = new RssFeedValidator();
+        validator.setEtag(headers.getFirst(HttpHeaders.ETAG));
+        validator.setLastModified(headers.getFirst(HttpHeaders.LAST_MODIFIED));
+        pendingRssFeedValidators.put(url, validator);
+    }
+
+    /**
+     * 保存完整读取的订阅链接的校验信息，应当在这些条目都记录为已处理之后调用，
+     * 之后这些订阅链接没有变化时返回 304，不会再读取到这些条目.
+     */
+    public void commitRssFeedValidators() {
+        RssFeedValidatorStore validatorStore = mikanClient.getRssFeedValidatorStore();
+        for (String url : List.copyOf(pendingRssFeedValidators.keySet())) {
+            RssFeedValidator validator = pendingRssFeedValidators.remove(url);
+            if (validatorStore != null && validator != null) {
+                validatorStore.put(url, validator);
+            }
+        }
+    }
+
+    /**
+     * 丢弃暂存的校验信息，下次依然完整读取这些订阅链接.
+     */
+    public void discardRssFeedValidators() {
+        pendingRssFeedValidators.clear();
+    }
+
+
+    /**
+     * 探测所有蜜柑镜像的延迟，结果由 {@link MikanMirrorExchangeFilter} 记录到镜像选择中.
+     */
+    public Mono<Void> probeMikanMirrors() {
+        MikanMirrorSelector mirrorSelector = mikanClient.getMirrorSelector();
+        return Flux.fromIterable(mirrorSelector.getMirrors())
+            .flatMap(baseUrl -> webClient.get()
+                .uri(URI.create(baseUrl + "/"))
+                .attribute(MikanMirrorExchangeFilter.PROBE_ATTRIBUTE, true)
+                .exchangeToMono(ClientResponse::releaseBody)
+                .timeout(MIRROR_PROBE_TIMEOUT)
+                .onErrorResume(TimeoutException.class, e -> {
+                    mirrorSelector.recordFailure(baseUrl);
+                    return Mono.empty();
+                })
+                .onErrorResume(e -> {
+                    log.debug("probe mikan mirror fail: {}", baseUrl, e);
+                    return Mono.empty();
+                }))
+            .then()
+            .doOnSuccess(v -> log.debug("probe mikan mirrors completed, selected: {}",
+                mirrorSelector.getBaseUrl()));
+    }
+
+    /**
+     * @param episodePageUrl 蜜柑剧集页面链接
+     * @return 剧集所属的蜜柑番剧页面链接
+     */
+    public Mono<String> getAnimePageUrlByEpisodePageUrl(String episodePageUrl) {
+        Assert.hasText(episodePageUrl, "'episodePageUrl' must has text.");
+        return extractPage(episodePageUrl, MikanHtmlUtils::newBangumiTitleHrefExtractor,
+            MikanHtmlUtils::parseBangumiTitleHref)
+            .map(href -> MikanClient.BASE_URL + href)
+            .switchIfEmpty(Mono.error(() -> new MikanRequestException(
+                "not found element, for episode page url: " + episodePageUrl)))
+            .retryWhen(RETRY);
+    }
+
+    /**
+     * @param animePageUrl 蜜柑番剧页面链接
+     * @return 番剧页面中的 bgm.tv 条目链接，页面中没有时为空，请求失败时为错误
+     */
+    public Mono<String> getBgmTvSubjectPageUrlByAnimePageUrl(String animePageUrl) {
+        Assert.hasText(animePageUrl, "'animePageUrl' must has text.");
+        return extractPage(animePageUrl, MikanHtmlUtils::newBgmTvSubjectHrefExtractor,
+            MikanHtmlUtils::parseBgmTvSubjectHref)
+            .retryWhen(RETRY);
+    }
+
+    /**
+     * 按行读取页面并增量查找目标元素，找到后取消订阅，不再读取剩余内容.
+     * 没有找到时对已经读取的完整页面使用 Jsoup 解析.
+     */
+    private Mono<String> extractPage(String pageUrl,
+                                     Supplier<MikanHtmlUtils.HrefExtractor> extractorSupplier,
+                                     Function<String, String> domParser) {
+        return webClient.get()
+            .uri(URI.create(pageUrl))
+            .exchangeToMono(response -> {
+                if (!response.statusCode().is2xxSuccessful()) {
+                    return response.createException().flatMap(Mono::error);
+                }
+                MikanHtmlUtils.HrefExtractor extractor = extractorSupplier.get();
+                StringBuilder page = new StringBuilder();
+                return response.bodyToFlux(String.class)
+                    .<String>handle((line, sink) -> {
+                        page.append(line).append('\n');
+                        String href = extractor.append(line + '\n');
+                        if (href != null) {
+                            sink.next(href);
+                        }
+                    })
+                    .next()
+                    .switchIfEmpty(Mono.fromSupplier(() -> {
+                        String href = extractor.finish();
+                        if (href != null) {
+                            return href;
+                        }
+                        // 使用已经读取的内容，不再重新请求
+                        log.debug("not found element by stream, will parse full page: {}",
+                            pageUrl);
+                        return domParser.apply(page.toString());
+                    }));
+            });
+    }
+
+    /**
+     * @see MikanClient#getAnimePageUrlByBangumiId(String)
+     */
+    public String getAnimePageUrlByBangumiId(String bangumiId) {
+        return mikanClient.getAnimePageUrlByBangumiId(bangumiId);
+    }
+
+    /**
+     * 获取蜜柑某一季度按星期排列的番剧索引中的所有番剧 id.
+     *
+     * @param year      年份，例如 2024
+     * @param seasonStr 季度，春、夏、秋、冬
+     * @return 番剧 id，按页面中的顺序去重
+     */
+    public Mono<List<String>> getSeasonBangumiIds(int year, String seasonStr) {
+        Assert.hasText(seasonStr, "'seasonStr' must has text.");
+        URI url = MikanClient.getSeasonBangumiIndexUri(year, seasonStr);
+        return getPage(url)
+            .map(MikanClient::parseSeasonBangumiIds)
+            .doOnNext(bangumiIds -> log.debug(
+                "get season bangumi ids size: {}, year: {}, season: {}",
+                bangumiIds.size(), year, seasonStr))
+            .retryWhen(RETRY);
+    }
+
+    /**
+     * 按关键词搜索番剧页面链接.
+     * <br/>
+     * 向蜜柑发送原始的关键词，规范化的关键词只作为缓存的 key，相同番剧名的重复搜索直接从缓存返回.
+     * 只有没有结果的搜索会按较短的时间缓存，请求或者解析页面失败不缓存.
+     *
+     * @param keyword 关键词，一般是番剧名
+     * @return 番剧页面链接，没有结果时为空
+     */
+    public Mono<String> getAnimePageUrlBySearch(String keyword) {
+        Assert.hasText(keyword, "'keyword' must has text.");
+        String query = keyword.trim();
+        String normalized = MikanClient.normalizeSearchKeyword(query);
+        String cacheKey = StringUtils.isBlank(normalized) ? query : normalized;
+        return mikanClient.getSearchCache().getAsync(cacheKey, key -> getPage(
+                MikanClient.getSearchUri(query))
+            .retryWhen(RETRY)
+            .mapNotNull(content -> MikanClient.parseSearchAnimePageUrl(content, query))
+            .doOnNext(url -> log.debug("end find anime page url by keyword:{}  url:{}",
+                query, url)));
+    }
+
+    /**
+     * 下载种子文件内容.
+     *
+     * @param torrentUrl 种子链接
+     * @return .torrent 文件内容
+     */
+    public Mono<byte[]> downloadTorrentFile(String torrentUrl) {
+        Assert.hasText(torrentUrl, "'torrentUrl' must has text.");
+        return webClient.get()
+            .uri(URI.create(torrentUrl))
+            .retrieve()
+            .bodyToMono(byte[].class)
+            .filter(bytes -> bytes.length > 0)
+            .switchIfEmpty(Mono.error(() -> new MikanRequestException(
+                "not found torrent file response data, for torrent url: " + torrentUrl)))
+            .retryWhen(RETRY);
+    }
+
+    private Mono<String> getPage(URI url) {
+        return webClient.get()
+            .uri(url)
+            .retrieve()
+            .bodyToMono(byte[].class)
+            .map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+            .switchIfEmpty(Mono.error(() -> new MikanRequestException(
+                "not found response data, for url: " + url)));
+    }
+}
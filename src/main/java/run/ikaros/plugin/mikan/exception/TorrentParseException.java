@@ -0,0 +1,14 @@
+package run.ikaros.plugin.mikan.exception;
+
+public class TorrentParseException extends RuntimeException {
+    public TorrentParseException() {
+    }
+
+    public TorrentParseException(String message) {
+        super(message);
+    }
+
+    public TorrentParseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
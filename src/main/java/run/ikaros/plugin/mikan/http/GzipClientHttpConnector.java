@@ -0,0 +1,100 @@
+package run.ikaros.plugin.mikan.http;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpResponse;
+import org.springframework.http.client.reactive.ClientHttpResponseDecorator;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.function.Function;
+import java.util.zip.ZipException;
+
+/**
+ * 为 WebClient 协商 gzip 压缩并边读取边解压，httpclient5 的异步客户端不会自动解压响应体.
+ * <br/>
+ * 请求没有指定 Accept-Encoding 时添加 gzip，解压后的响应去掉 Content-Encoding 和 Content-Length.
+ * HEAD 请求以及 204 / 304 响应没有响应体，即使带着 Content-Encoding 也不解压.
+ */
+class GzipClientHttpConnector implements ClientHttpConnector {
+    private static final String GZIP = "gzip";
+    private final ClientHttpConnector delegate;
+
+    GzipClientHttpConnector(ClientHttpConnector delegate) {
+        Assert.notNull(delegate, "'delegate' must not null.");
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Mono<ClientHttpResponse> connect(
+        HttpMethod method, URI uri,
+        Function<? super ClientHttpRequest, Mono<Void>> requestCallback) {
+        return delegate.connect(method, uri, request -> {
+                // 请求的 headers 在回调中写入，调用方指定的 Accept-Encoding 会覆盖这里的值
+                request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, GZIP);
+                return requestCallback.apply(request);
+            })
+            .map(response -> hasBody(method, response) ? decode(response) : response);
+    }
+
+    private static boolean hasBody(HttpMethod method, ClientHttpResponse response) {
+        int statusCode = response.getStatusCode().value();
+        return !HttpMethod.HEAD.equals(method) && statusCode != 204 && statusCode != 304;
+    }
+
+    private static ClientHttpResponse decode(ClientHttpResponse response) {
+        if (!GZIP.equalsIgnoreCase(
+            response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+            return response;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.remove(HttpHeaders.CONTENT_ENCODING);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        HttpHeaders decodedHeaders = HttpHeaders.readOnlyHttpHeaders(headers);
+        return new ClientHttpResponseDecorator(response) {
+            @Override
+            public HttpHeaders getHeaders() {
+                return decodedHeaders;
+            }
+
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return Flux.using(GzipDecoder::new,
+                    decoder -> getDelegate().getBody()
+                        .<DataBuffer>handle((buffer, sink) -> {
+                            try {
+                                byte[] bytes = new byte[buffer.readableByteCount()];
+                                buffer.read(bytes);
+                                byte[] decoded = decoder.decode(bytes);
+                                if (decoded.length > 0) {
+                                    sink.next(DefaultDataBufferFactory.sharedInstance
+                                        .wrap(decoded));
+                                }
+                            } catch (ZipException e) {
+                                sink.error(e);
+                            } finally {
+                                DataBufferUtils.release(buffer);
+                            }
+                        })
+                        .concatWith(Mono.<DataBuffer>fromRunnable(() -> finish(decoder))),
+                    GzipDecoder::end);
+            }
+        };
+    }
+
+    private static void finish(GzipDecoder decoder) {
+        try {
+            decoder.finish();
+        } catch (ZipException e) {
+            throw new IllegalStateException("incomplete gzip response body", e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package run.ikaros.plugin.mikan.http;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * 增量解压 gzip 响应体，每次传入收到的一段数据，返回这段数据能解压出的内容.
+ * <br/>
+ * 只支持单个 gzip 成员，结束后校验 CRC32 和长度. 不是线程安全的，使用完需要调用 {@link #end()}.
+ */
+final class GzipDecoder {
+    private static final byte[] EMPTY = new byte[0];
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int FIXED_HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] output = new byte[8 * 1024];
+    /**
+     * 还不完整的头部或尾部
+     */
+    private byte[] pending = EMPTY;
+    private State state = State.HEADER;
+
+    private enum State {
+        HEADER, BODY, TRAILER, DONE
+    }
+
+    /**
+     * @param input 收到的一段压缩数据
+     * @return 解压出的内容，可能为空
+     */
+    byte[] decode(byte[] input) throws ZipException {
+        byte[] data = input;
+        if (pending.length > 0) {
+            data = Arrays.copyOf(pending, pending.length + input.length);
+            System.arraycopy(input, 0, data, pending.length, input.length);
+            pending = EMPTY;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int offset = 0;
+        while (offset < data.length && state != State.DONE) {
+            switch (state) {
+                case HEADER -> {
+                    int headerSize = headerSize(data, offset);
+                    if (headerSize < 0) {
+                        pending = Arrays.copyOfRange(data, offset, data.length);
+                        return out.toByteArray();
+                    }
+                    offset += headerSize;
+                    state = State.BODY;
+                }
+                case BODY -> {
+                    offset = inflate(data, offset, out);
+                    if (inflater.finished()) {
+                        state = State.TRAILER;
+                    }
+                }
+                case TRAILER -> {
+                    if (data.length - offset < TRAILER_SIZE) {
+                        pending = Arrays.copyOfRange(data, offset, data.length);
+                        return out.toByteArray();
+                    }
+                    checkTrailer(data, offset);
+                    offset += TRAILER_SIZE;
+                    state = State.DONE;
+                }
+                default -> throw new IllegalStateException("unexpected state: " + state);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return 已经消费到的位置
+     */
+    private int inflate(byte[] data, int offset, ByteArrayOutputStream out)
+        throws ZipException {
+        inflater.setInput(data, offset, data.length - offset);
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(output);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        throw new ZipException("gzip body needs dictionary");
+                    }
+                    break;
+                }
+                crc.update(output, 0, n);
+                out.write(output, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("invalid gzip body: " + e.getMessage());
+        }
+        return data.length - inflater.getRemaining();
+    }
+
+    /**
+     * @return 头部的长度，数据不够时为 -1
+     */
+    private static int headerSize(byte[] data, int offset) throws ZipException {
+        if (data.length - offset < FIXED_HEADER_SIZE) {
+            return -1;
+        }
+        if ((data[offset] & 0xFF) != 0x1F || (data[offset + 1] & 0xFF) != 0x8B) {
+            throw new ZipException("not in gzip format");
+        }
+        if (data[offset + 2] != 8) {
+            throw new ZipException("unsupported gzip compression method: " + data[offset + 2]);
+        }
+        int flags = data[offset + 3] & 0xFF;
+        int index = offset + FIXED_HEADER_SIZE;
+        if ((flags & FEXTRA) != 0) {
+            if (data.length - index < 2) {
+                return -1;
+            }
+            index += 2 + ((data[index] & 0xFF) | (data[index + 1] & 0xFF) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            index = skipZeroTerminated(data, index);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            index = skipZeroTerminated(data, index);
+        }
+        if ((flags & FHCRC) != 0) {
+            index += 2;
+        }
+        return index > data.length ? -1 : index - offset;
+    }
+
+    private static int skipZeroTerminated(byte[] data, int index) {
+        for (int i = index; i < data.length; i++) {
+            if (data[i] == 0) {
+                return i + 1;
+            }
+        }
+        return data.length + 1;
+    }
+
+    private void checkTrailer(byte[] data, int offset) throws ZipException {
+        if (readInt(data, offset) != (int) crc.getValue()) {
+            throw new ZipException("corrupt gzip trailer: crc mismatch");
+        }
+        if (readInt(data, offset + 4) != (int) inflater.getBytesWritten()) {
+            throw new ZipException("corrupt gzip trailer: size mismatch");
+        }
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF)
+            | (data[offset + 1] & 0xFF) << 8
+            | (data[offset + 2] & 0xFF) << 16
+            | (data[offset + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * 响应体结束时调用，压缩数据不完整时抛出异常.
+     * 没有收到任何数据时当作空的响应体，例如带着 Content-Encoding 的 Content-Length: 0.
+     */
+    void finish() throws ZipException {
+        if (state == State.HEADER && pending.length == 0) {
+            return;
+        }
+        if (state != State.DONE) {
+            throw new ZipException("unexpected end of gzip stream");
+        }
+    }
+
+    void end() {
+        inflater.end();
+    }
+}
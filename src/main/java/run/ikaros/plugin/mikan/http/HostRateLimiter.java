@@ -0,0 +1,279 @@
+package run.ikaros.plugin.mikan.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * 按 host 限流的令牌桶，加上所有 host 共享的同时进行中请求数上限.
+ * <br/>
+ * 请求先按到达顺序预约该 host 的时间片，等到时间片以及该 host 的暂停结束之后，
+ * 再按顺序获取进行中请求的许可，等待中的 host 不会占用其他 host 的许可.
+ * 服务端返回 429 / 503 时按 Retry-After 暂停该 host 的所有请求.
+ * 等待期间不占用线程.
+ */
+@Slf4j
+public class HostRateLimiter {
+    /**
+     * 429 / 503 没有 Retry-After 时的暂停时间
+     */
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(10);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(10);
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    /**
+     * 等待进行中许可的调用方，按到达顺序放行
+     */
+    private final Deque<CompletableFuture<Permit>> inFlightWaiters = new ArrayDeque<>();
+    /**
+     * 时间片使用的单调时间，和 {@link #scheduler} 的时间一致
+     */
+    private final LongSupplier nanoTime;
+    private final Scheduler scheduler;
+    private int inFlight;
+    private volatile int maxInFlight;
+    private volatile double permitsPerSecond;
+    private volatile int burst;
+
+    public HostRateLimiter(double permitsPerSecond, int burst, int maxInFlight) {
+        this(permitsPerSecond, burst, maxInFlight, System::nanoTime, Schedulers.parallel());
+    }
+
+    HostRateLimiter(double permitsPerSecond, int burst, int maxInFlight,
+                    LongSupplier nanoTime, Scheduler scheduler) {
+        Assert.notNull(nanoTime, "'nanoTime' must not null.");
+        Assert.notNull(scheduler, "'scheduler' must not null.");
+        this.nanoTime = nanoTime;
+        this.scheduler = scheduler;
+        update(permitsPerSecond, burst, maxInFlight);
+    }
+
+    /**
+     * 更新限流参数，已经预约的时间片不受影响.
+     */
+    public void update(double permitsPerSecond, int burst, int maxInFlight) {
+        Assert.isTrue(permitsPerSecond > 0, "'permitsPerSecond' must be positive.");
+        Assert.isTrue(burst > 0, "'burst' must be positive.");
+        Assert.isTrue(maxInFlight > 0, "'maxInFlight' must be positive.");
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        List<CompletableFuture<Permit>> granted;
+        synchronized (inFlightWaiters) {
+            this.maxInFlight = maxInFlight;
+            granted = pollGrantedWaiters();
+        }
+        granted.forEach(this::completeWaiter);
+    }
+
+    /**
+     * 非阻塞地等待可以向该 host 发起请求，等待期间不占用线程，取消订阅时归还许可.
+     * 请求结束后需要调用 {@link Permit#release()}.
+     *
+     * @param host 请求的 host
+     * @return 进行中请求的许可
+     */
+    public Mono<Permit> acquireAsync(String host) {
+        Assert.hasText(host, "'host' must has text.");
+        return Mono.defer(() -> {
+            TokenBucket bucket = getBucket(host);
+            long slotNanos = bucket.reserve(permitsPerSecond, burst, nanoTime.getAsLong());
+            return acquireAfterSlot(bucket, slotNanos);
+        });
+    }
+
+    private Mono<Permit> acquireAfterSlot(TokenBucket bucket, long slotNanos) {
+        return awaitSlot(bucket, slotNanos)
+            .then(Mono.defer(() -> {
+                CompletableFuture<Permit> waiter = acquireInFlight();
+                return Mono.fromFuture(waiter)
+                    .doOnCancel(() -> cancelWaiter(waiter));
+            }))
+            .flatMap(permit -> {
+                if (bucket.getWaitNanos(slotNanos, nanoTime.getAsLong()) > 0) {
+                    // 等待许可期间该 host 收到了 Retry-After，归还许可继续等待
+                    permit.release();
+                    return acquireAfterSlot(bucket, slotNanos);
+                }
+                return Mono.just(permit);
+            });
+    }
+
+    private Mono<Void> awaitSlot(TokenBucket bucket, long slotNanos) {
+        return Mono.defer(() -> {
+            long waitNanos = bucket.getWaitNanos(slotNanos, nanoTime.getAsLong());
+            if (waitNanos <= 0) {
+                return Mono.empty();
+            }
+            // 预约之后可能收到了 Retry-After，需要继续等待
+            return Mono.delay(Duration.ofNanos(waitNanos), scheduler)
+                .then(awaitSlot(bucket, slotNanos));
+        });
+    }
+
+    /**
+     * 根据响应状态处理限流，429 / 503 时暂停该 host.
+     *
+     * @param host       请求的 host
+     * @param statusCode 响应状态码
+     * @param retryAfter 响应头 Retry-After，可以为 null
+     */
+    public void onResponse(String host, int statusCode, String retryAfter) {
+        if (statusCode != 429 && statusCode != 503) {
+            return;
+        }
+        Duration pause = parseRetryAfter(retryAfter, Clock.systemUTC());
+        getBucket(host).pause(pause, nanoTime.getAsLong());
+        log.warn("host [{}] response status {}, pause requests for {}.", host, statusCode,
+            pause);
+    }
+
+    /**
+     * 解析 Retry-After，支持秒数和 HTTP 日期两种格式.
+     */
+    static Duration parseRetryAfter(String retryAfter, Clock clock) {
+        Duration duration = DEFAULT_RETRY_AFTER;
+        if (retryAfter != null && !retryAfter.isBlank()) {
+            String value = retryAfter.trim();
+            try {
+                duration = Duration.ofSeconds(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                try {
+                    duration = Duration.between(ZonedDateTime.now(clock),
+                        ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME
+                            .withLocale(Locale.ENGLISH)));
+                } catch (DateTimeParseException ex) {
+                    log.debug("invalid retry after: {}", retryAfter);
+                }
+            }
+        }
+        if (duration.isNegative()) {
+            return Duration.ZERO;
+        }
+        return duration.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : duration;
+    }
+
+    private TokenBucket getBucket(String host) {
+        return buckets.computeIfAbsent(host, h -> new TokenBucket());
+    }
+
+    private CompletableFuture<Permit> acquireInFlight() {
+        CompletableFuture<Permit> waiter = new CompletableFuture<>();
+        List<CompletableFuture<Permit>> granted;
+        synchronized (inFlightWaiters) {
+            inFlightWaiters.addLast(waiter);
+            granted = pollGrantedWaiters();
+        }
+        granted.forEach(this::completeWaiter);
+        return waiter;
+    }
+
+    /**
+     * 在锁内按顺序取出可以放行的调用方，在锁外完成，避免在锁内执行下游代码.
+     */
+    private List<CompletableFuture<Permit>> pollGrantedWaiters() {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        while (inFlight < maxInFlight && !inFlightWaiters.isEmpty()) {
+            inFlight++;
+            granted.add(inFlightWaiters.pollFirst());
+        }
+        return granted;
+    }
+
+    private void completeWaiter(CompletableFuture<Permit> waiter) {
+        Permit permit = new Permit();
+        if (!waiter.complete(permit)) {
+            // 已经取消
+            permit.release();
+        }
+    }
+
+    private void cancelWaiter(CompletableFuture<Permit> waiter) {
+        boolean removed;
+        synchronized (inFlightWaiters) {
+            removed = inFlightWaiters.remove(waiter);
+        }
+        if (!removed && !waiter.cancel(false)) {
+            // 已经拿到许可，直接归还
+            waiter.join().release();
+        }
+    }
+
+    private void releaseInFlight() {
+        List<CompletableFuture<Permit>> granted;
+        synchronized (inFlightWaiters) {
+            inFlight--;
+            granted = pollGrantedWaiters();
+        }
+        granted.forEach(this::completeWaiter);
+    }
+
+    /**
+     * 进行中请求的许可，可以重复释放.
+     */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                releaseInFlight();
+            }
+        }
+    }
+
+    /**
+     * 预约式令牌桶(GCRA)，每次调用预约下一个可用的时间片，调用方按时间片顺序发起请求.
+     */
+    static final class TokenBucket {
+        private long theoreticalArrivalNanos = Long.MIN_VALUE;
+        private volatile long pausedUntilNanos = Long.MIN_VALUE;
+
+        synchronized long reserve(double permitsPerSecond, int burst, long now) {
+            long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+            long earliest = pausedUntilNanos == Long.MIN_VALUE
+                ? now : Math.max(now, pausedUntilNanos);
+            long tat = theoreticalArrivalNanos == Long.MIN_VALUE
+                ? earliest : Math.max(theoreticalArrivalNanos, earliest);
+            long slot = Math.max(earliest, tat - (burst - 1) * intervalNanos);
+            theoreticalArrivalNanos = tat + intervalNanos;
+            return slot;
+        }
+
+        synchronized void pause(Duration duration, long now) {
+            long until = now + duration.toNanos();
+            if (pausedUntilNanos == Long.MIN_VALUE || until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+            }
+        }
+
+        /**
+         * @return 距离预约的时间片以及暂停结束还需要等待的时间
+         */
+        long getWaitNanos(long slotNanos, long now) {
+            long pausedUntil = pausedUntilNanos;
+            long until = pausedUntil == Long.MIN_VALUE
+                ? slotNanos : Math.max(slotNanos, pausedUntil);
+            return Math.max(0, until - now);
+        }
+    }
+}
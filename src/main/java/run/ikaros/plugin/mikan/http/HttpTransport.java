@@ -0,0 +1,331 @@
+package run.ikaros.plugin.mikan.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.routing.DefaultProxyRoutePlanner;
+import org.apache.hc.client5.http.impl.routing.SystemDefaultRoutePlanner;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.HttpComponentsClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+import run.ikaros.plugin.mikan.qbittorrent.model.QbConfig;
+import run.ikaros.plugin.mikan.utils.TtlCache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 蜜柑和 qbittorrent 共享的 HTTP 连接.
+ * <br/>
+ * 按 host 分别维护连接池并复用长连接，自动协商 gzip 压缩，缓存 DNS 解析结果，
+ * 建立连接、等待连接池和读取响应都有超时，避免每次轮询 qbittorrent 都重新建立 TCP / TLS 连接.
+ * <br/>
+ * 按 {@link ProxyRules} 为每个 host 选择 HTTP 代理、SOCKS 代理或者直连，经过 HTTP 代理的连接
+ * 按代理分别池化；并按路由统计延迟.
+ * <br/>
+ * RestTemplate 使用同步客户端，WebClient 使用异步客户端，两者的 DNS 缓存、超时和连接数配置一致.
+ * 异步客户端按代理分别创建，SOCKS 代理对整个客户端生效.
+ */
+@Slf4j
+@Component
+public class HttpTransport implements Closeable {
+    /**
+     * 服务端没有返回 Keep-Alive 时，空闲长连接的保留时间
+     */
+    private static final TimeValue MAX_KEEP_ALIVE = TimeValue.ofSeconds(60);
+    private static final TimeValue MAX_IDLE = TimeValue.ofSeconds(30);
+    private static final TimeValue CONNECTION_TIME_TO_LIVE = TimeValue.ofMinutes(5);
+    private static final Duration DNS_CACHE_TTL = Duration.ofMinutes(5);
+    /**
+     * 所有 host 的连接数上限是单个 host 上限的倍数
+     */
+    private static final int MAX_TOTAL_CONNECTIONS_FACTOR = 4;
+    /**
+     * 每个异步客户端的 I/O 线程数，请求量很小，不需要按 CPU 核数创建
+     */
+    private static final int ASYNC_IO_THREADS = 2;
+    private final DnsResolver dnsResolver = new CachingDnsResolver(DNS_CACHE_TTL);
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final HttpComponentsClientHttpRequestFactory httpComponentsRequestFactory;
+    private final ClientHttpRequestFactory requestFactory;
+    private final ProxyRules proxyRules = new ProxyRules();
+    private final RouteMetrics routeMetrics = new RouteMetrics(proxyRules);
+    /**
+     * 代理 -> 异步客户端，直连的 key 为 {@link Proxy#NO_PROXY}
+     */
+    private final Map<Proxy, AsyncClient> asyncClients = new ConcurrentHashMap<>();
+    private volatile ConnectionConfig connectionConfig;
+    private volatile int maxConnectionsPerHost;
+    private volatile Duration connectTimeout;
+    private volatile RequestConfig asyncRequestConfig;
+    private volatile boolean closed;
+
+    public HttpTransport() {
+        QbConfig config = new QbConfig();
+        this.connectTimeout = Duration.ofSeconds(config.getHttpConnectTimeoutSeconds());
+        this.connectionConfig = newConnectionConfig(config);
+        this.maxConnectionsPerHost = config.getHttpMaxConnectionsPerHost();
+        this.asyncRequestConfig = newRequestConfig(connectTimeout);
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setDnsResolver(dnsResolver)
+            .setDefaultConnectionConfig(connectionConfig)
+            .setMaxConnPerRoute(maxConnectionsPerHost)
+            .setMaxConnTotal(maxConnectionsPerHost * MAX_TOTAL_CONNECTIONS_FACTOR)
+            .build();
+        this.connectionManager.setSocketConfigResolver(route -> {
+            // HTTP 代理由 route planner 处理，SOCKS 代理在建立连接时使用
+            Proxy proxy = proxyRules.select(route.getTargetHost().getHostName());
+            return proxy.type() == Proxy.Type.SOCKS
+                ? SocketConfig.custom().setSocksProxyAddress(proxy.address()).build()
+                : SocketConfig.DEFAULT;
+        });
+        this.proxyRules.update(config.getHttpProxyRules());
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setRoutePlanner(new SystemDefaultRoutePlanner(proxyRules))
+            .setKeepAliveStrategy(HttpTransport::getKeepAliveDuration)
+            .evictExpiredConnections()
+            .evictIdleConnections(MAX_IDLE)
+            .build();
+        // 等待连接池的超时由请求工厂合并到每个请求中，更新配置后立即生效
+        this.httpComponentsRequestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        this.httpComponentsRequestFactory.setConnectionRequestTimeout(
+            (int) connectTimeout.toMillis());
+        this.requestFactory = new InterceptingClientHttpRequestFactory(
+            httpComponentsRequestFactory, List.of(routeMetrics.interceptor()));
+    }
+
+    private static TimeValue getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        TimeValue keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+            .getKeepAliveDuration(response, context);
+        return keepAlive.compareTo(MAX_KEEP_ALIVE) > 0 ? MAX_KEEP_ALIVE : keepAlive;
+    }
+
+    private static RequestConfig newRequestConfig(Duration connectTimeout) {
+        return RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.of(connectTimeout))
+            .build();
+    }
+
+    private static ConnectionConfig newConnectionConfig(QbConfig config) {
+        return ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofSeconds(config.getHttpConnectTimeoutSeconds()))
+            .setSocketTimeout(Timeout.ofSeconds(config.getHttpReadTimeoutSeconds()))
+            .setTimeToLive(CONNECTION_TIME_TO_LIVE)
+            .build();
+    }
+
+    /**
+     * 更新超时和连接数，等待连接池的超时立即生效，其他配置只影响之后新建的连接.
+     */
+    public void update(QbConfig config) {
+        Assert.notNull(config, "'config' must not null.");
+        Assert.isTrue(config.getHttpConnectTimeoutSeconds() > 0,
+            "'httpConnectTimeoutSeconds' must be positive.");
+        Assert.isTrue(config.getHttpReadTimeoutSeconds() > 0,
+            "'httpReadTimeoutSeconds' must be positive.");
+        Assert.isTrue(config.getHttpMaxConnectionsPerHost() > 0,
+            "'httpMaxConnectionsPerHost' must be positive.");
+        this.connectionConfig = newConnectionConfig(config);
+        this.maxConnectionsPerHost = config.getHttpMaxConnectionsPerHost();
+        this.connectTimeout = Duration.ofSeconds(config.getHttpConnectTimeoutSeconds());
+        this.asyncRequestConfig = newRequestConfig(connectTimeout);
+        connectionManager.setDefaultConnectionConfig(connectionConfig);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        connectionManager.setMaxTotal(maxConnectionsPerHost * MAX_TOTAL_CONNECTIONS_FACTOR);
+        httpComponentsRequestFactory.setConnectionRequestTimeout((int) connectTimeout.toMillis());
+        asyncClients.values().forEach(client -> updatePool(client.connectionManager()));
+    }
+
+    private void updatePool(PoolingAsyncClientConnectionManager asyncConnectionManager) {
+        asyncConnectionManager.setDefaultConnectionConfig(connectionConfig);
+        asyncConnectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        asyncConnectionManager.setMaxTotal(maxConnectionsPerHost * MAX_TOTAL_CONNECTIONS_FACTOR);
+    }
+
+    /**
+     * 替换代理规则，关闭空闲连接，之后的请求按新的规则建立连接.
+     */
+    public void updateProxyRules(String rules) {
+        int count = proxyRules.update(rules);
+        connectionManager.closeIdle(TimeValue.ZERO_MILLISECONDS);
+        asyncClients.values().forEach(client ->
+            client.connectionManager().closeIdle(TimeValue.ZERO_MILLISECONDS));
+        log.debug("update http proxy rules, {} valid rule(s).", count);
+    }
+
+    /**
+     * @return 当前的代理规则，也可以作为 {@link java.net.ProxySelector} 用于其他客户端
+     */
+    public ProxyRules getProxyRules() {
+        return proxyRules;
+    }
+
+    public RouteMetrics getRouteMetrics() {
+        return routeMetrics;
+    }
+
+    /**
+     * @return 用于 RestTemplate 的请求工厂，所有 RestTemplate 共享同一个连接池
+     */
+    public ClientHttpRequestFactory getRequestFactory() {
+        return requestFactory;
+    }
+
+    /**
+     * 用于 WebClient 的连接器，按请求的 host 选择代理对应的异步客户端，自动解压 gzip 响应.
+     *
+     * @param proxySelector host -> 代理，返回 null 时直连
+     * @return 所有 WebClient 共享同一组异步客户端
+     */
+    public ClientHttpConnector getClientHttpConnector(Function<String, Proxy> proxySelector) {
+        Assert.notNull(proxySelector, "'proxySelector' must not null.");
+        return new GzipClientHttpConnector((method, uri, requestCallback) -> Mono.defer(() ->
+            getAsyncClient(proxySelector.apply(uri.getHost())).connector()
+                .connect(method, uri, requestCallback)));
+    }
+
+    private AsyncClient getAsyncClient(Proxy proxy) {
+        Assert.state(!closed, "http transport is closed.");
+        return asyncClients.computeIfAbsent(proxy == null ? Proxy.NO_PROXY : proxy,
+            this::newAsyncClient);
+    }
+
+    private AsyncClient newAsyncClient(Proxy proxy) {
+        PoolingAsyncClientConnectionManager asyncConnectionManager =
+            PoolingAsyncClientConnectionManagerBuilder.create()
+                .setDnsResolver(dnsResolver)
+                .build();
+        updatePool(asyncConnectionManager);
+        IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom()
+            .setIoThreadCount(ASYNC_IO_THREADS);
+        HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+            .setConnectionManager(asyncConnectionManager)
+            .setKeepAliveStrategy(HttpTransport::getKeepAliveDuration)
+            .evictExpiredConnections()
+            .evictIdleConnections(MAX_IDLE);
+        if (proxy.type() != Proxy.Type.DIRECT) {
+            InetSocketAddress address = resolveProxyAddress(proxy);
+            if (proxy.type() == Proxy.Type.HTTP) {
+                builder.setRoutePlanner(new DefaultProxyRoutePlanner(
+                    new HttpHost(address.getHostString(), address.getPort())));
+            } else {
+                ioReactorConfig.setSocksProxyAddress(address);
+            }
+        }
+        CloseableHttpAsyncClient asyncClient = builder
+            .setIOReactorConfig(ioReactorConfig.build())
+            .build();
+        log.debug("create async http client for proxy: {}", proxy);
+        // 连接器创建时启动客户端，每个请求使用当前的等待连接池超时
+        return new AsyncClient(asyncConnectionManager, asyncClient,
+            new HttpComponentsClientHttpConnector(asyncClient, (method, uri) -> {
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(asyncRequestConfig);
+                return context;
+            }));
+    }
+
+    /**
+     * 代理规则中的地址没有解析，SOCKS 代理需要解析后的地址. 解析失败时不创建客户端，
+     * 请求失败而不是绕过代理直连.
+     */
+    private static InetSocketAddress resolveProxyAddress(Proxy proxy) {
+        if (!(proxy.address() instanceof InetSocketAddress address)) {
+            throw new IllegalArgumentException("unsupported proxy address: " + proxy);
+        }
+        InetSocketAddress resolved = address.isUnresolved()
+            ? new InetSocketAddress(address.getHostString(), address.getPort())
+            : address;
+        if (proxy.type() == Proxy.Type.SOCKS && resolved.isUnresolved()) {
+            throw new IllegalStateException("can not resolve socks proxy: " + proxy);
+        }
+        return resolved;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        httpClient.close();
+        for (AsyncClient client : asyncClients.values()) {
+            client.httpClient().close();
+        }
+        asyncClients.clear();
+    }
+
+    private record AsyncClient(PoolingAsyncClientConnectionManager connectionManager,
+                               CloseableHttpAsyncClient httpClient,
+                               ClientHttpConnector connector) {
+    }
+
+    /**
+     * 缓存 DNS 解析结果，解析失败不缓存.
+     */
+    static final class CachingDnsResolver implements DnsResolver {
+        private final TtlCache<String, InetAddress[]> addresses;
+
+        CachingDnsResolver(Duration ttl) {
+            this.addresses = new TtlCache<>(ttl, Duration.ZERO, 256);
+        }
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            try {
+                return addresses.get(host, h -> {
+                    try {
+                        return SystemDefaultDnsResolver.INSTANCE.resolve(h);
+                    } catch (UnknownHostException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).clone();
+            } catch (UncheckedIOException e) {
+                throw (UnknownHostException) e.getCause();
+            }
+        }
+
+        @Override
+        public String resolveCanonicalHostname(String host) throws UnknownHostException {
+            return SystemDefaultDnsResolver.INSTANCE.resolveCanonicalHostname(host);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package run.ikaros.plugin.mikan.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * WebClient 的蜜柑镜像过滤器，把蜜柑链接改写为当前选中的镜像，失败时依次尝试其他镜像.
+ * <br/>
+ * 带有 {@link #PROBE_ATTRIBUTE} 属性的请求只访问链接本身指向的镜像，用于探测延迟.
+ */
+@Slf4j
+public class MikanMirrorExchangeFilter implements ExchangeFilterFunction {
+    public static final String PROBE_ATTRIBUTE =
+        MikanMirrorExchangeFilter.class.getName() + ".probe";
+    private final MikanMirrorSelector mirrorSelector;
+
+    public MikanMirrorExchangeFilter(MikanMirrorSelector mirrorSelector) {
+        Assert.notNull(mirrorSelector, "'mirrorSelector' must not null.");
+        this.mirrorSelector = mirrorSelector;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!mirrorSelector.isMikanUrl(request.url())) {
+            return next.exchange(request);
+        }
+        if (request.attribute(PROBE_ATTRIBUTE).isPresent()) {
+            String baseUrl = mirrorSelector.getMirrorOf(request.url());
+            return baseUrl == null ? next.exchange(request)
+                : exchange(request, next, baseUrl, null);
+        }
+        return Mono.defer(() -> exchange(request, next, mirrorSelector.getBaseUrl(),
+            new HashSet<>()));
+    }
+
+    /**
+     * @param failed 本次请求已经失败的镜像，为 null 时不切换镜像
+     */
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next,
+                                          String baseUrl, Set<String> failed) {
+        URI url = MikanMirrorSelector.rewrite(request.url(), baseUrl);
+        long startNanos = System.nanoTime();
+        return next.exchange(ClientRequest.from(request).url(url).build())
+            // 先转换为信号，切换镜像后的结果不会被再次处理
+            .materialize()
+            .flatMap(signal -> {
+                ClientResponse response = signal.get();
+                Throwable error = signal.getThrowable();
+                if (response != null && !response.statusCode().is5xxServerError()) {
+                    mirrorSelector.recordLatency(baseUrl,
+                        Duration.ofNanos(System.nanoTime() - startNanos));
+                    return Mono.just(response);
+                }
+                if (response == null && error == null) {
+                    return Mono.empty();
+                }
+                mirrorSelector.recordFailure(baseUrl);
+                Mono<ClientResponse> result =
+                    response != null ? Mono.just(response) : Mono.error(error);
+                if (failed == null) {
+                    return result;
+                }
+                failed.add(baseUrl);
+                String nextBaseUrl = mirrorSelector.getBaseUrlExcluding(failed);
+                if (nextBaseUrl == null) {
+                    return result;
+                }
+                log.debug("request mikan mirror [{}] fail, switch to [{}]: {}", baseUrl,
+                    nextBaseUrl, request.url());
+                return (response != null ? response.releaseBody() : Mono.<Void>empty())
+                    .then(exchange(request, next, nextBaseUrl, failed));
+            });
+    }
+}
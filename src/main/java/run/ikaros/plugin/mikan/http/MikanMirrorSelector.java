@@ -0,0 +1,254 @@
+package run.ikaros.plugin.mikan.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 蜜柑镜像选择.
+ * <br/>
+ * 根据后台探测和实际请求的延迟(指数加权平均)选择最快的可用镜像，请求失败的镜像暂时标记为不可用，
+ * 冷却时间随连续失败次数翻倍. 订阅链接和页面链接中的蜜柑域名在发起请求时替换为选中的镜像，
+ * 链接本身(缓存 key、已处理条目等)保持不变.
+ */
+@Slf4j
+public class MikanMirrorSelector {
+    /**
+     * 不在镜像列表中也会被替换的蜜柑域名
+     */
+    private static final Set<String> KNOWN_MIKAN_HOSTS = Set.of("mikanani.me", "mikanime.tv");
+    private static final Duration MIN_COOLDOWN = Duration.ofSeconds(30);
+    private static final Duration MAX_COOLDOWN = Duration.ofMinutes(10);
+    /**
+     * 新的延迟样本在加权平均中的权重
+     */
+    private static final double LATENCY_WEIGHT = 0.3;
+    private volatile Map<String, MirrorState> mirrors = Map.of();
+    private volatile Set<String> mirrorHosts = Set.of();
+
+    public MikanMirrorSelector(List<String> mirrors) {
+        setMirrors(mirrors);
+    }
+
+    /**
+     * 更新镜像列表，保留仍在列表中的镜像的延迟和健康状态.
+     *
+     * @param mirrors 镜像地址，例如 https://mikanime.tv，按优先级排列
+     */
+    public synchronized void setMirrors(List<String> mirrors) {
+        Assert.notEmpty(mirrors, "'mirrors' must not empty.");
+        Map<String, MirrorState> states = new LinkedHashMap<>();
+        for (String mirror : mirrors) {
+            String baseUrl = normalizeBaseUrl(mirror);
+            if (baseUrl != null) {
+                states.put(baseUrl, this.mirrors.getOrDefault(baseUrl, new MirrorState()));
+            }
+        }
+        Assert.notEmpty(states, "'mirrors' has no valid url.");
+        this.mirrors = states;
+        this.mirrorHosts = states.keySet().stream()
+            .map(baseUrl -> URI.create(baseUrl).getHost())
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * 解析按行或者英文逗号分隔的镜像列表.
+     */
+    public static List<String> parseMirrors(String mirrors) {
+        if (mirrors == null) {
+            return List.of();
+        }
+        return Arrays.stream(mirrors.split("[\\r\\n,]+"))
+            .map(MikanMirrorSelector::normalizeBaseUrl)
+            .filter(Objects::nonNull)
+            .distinct()
+            .toList();
+    }
+
+    static String normalizeBaseUrl(String mirror) {
+        if (mirror == null || mirror.isBlank()) {
+            return null;
+        }
+        try {
+            URI uri = new URI(mirror.trim());
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return null;
+            }
+            return new URI(uri.getScheme().toLowerCase(Locale.ROOT), null,
+                uri.getHost().toLowerCase(Locale.ROOT), uri.getPort(), null, null, null)
+                .toString();
+        } catch (URISyntaxException e) {
+            log.warn("invalid mikan mirror: {}", mirror);
+            return null;
+        }
+    }
+
+    public List<String> getMirrors() {
+        return List.copyOf(mirrors.keySet());
+    }
+
+    public int size() {
+        return mirrors.size();
+    }
+
+    /**
+     * @return 可用镜像中延迟最低的，还没有延迟数据时按配置顺序；全部不可用时选冷却最先结束的
+     */
+    public String getBaseUrl() {
+        return selectBaseUrl(null);
+    }
+
+    /**
+     * @param excluded 本次请求已经失败的镜像
+     * @return 除去已经失败的镜像之外的选择，没有其他镜像时为 null
+     */
+    public String getBaseUrlExcluding(Set<String> excluded) {
+        Assert.notNull(excluded, "'excluded' must not null.");
+        return selectBaseUrl(excluded);
+    }
+
+    private String selectBaseUrl(Set<String> excluded) {
+        long now = System.nanoTime();
+        String best = null;
+        MirrorState bestState = null;
+        for (Map.Entry<String, MirrorState> entry : mirrors.entrySet()) {
+            if (excluded != null && excluded.contains(entry.getKey())) {
+                continue;
+            }
+            MirrorState state = entry.getValue();
+            if (bestState == null || state.isBetterThan(bestState, now)) {
+                best = entry.getKey();
+                bestState = state;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return 链接是否指向蜜柑(镜像列表中的域名或者已知的蜜柑域名)
+     */
+    public boolean isMikanUrl(URI url) {
+        if (url == null || url.getHost() == null) {
+            return false;
+        }
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        return KNOWN_MIKAN_HOSTS.contains(host) || mirrorHosts.contains(host);
+    }
+
+    /**
+     * 把链接的协议和域名替换为指定的镜像，路径和参数不变.
+     */
+    public static URI rewrite(URI url, String baseUrl) {
+        StringBuilder builder = new StringBuilder(baseUrl);
+        builder.append(url.getRawPath() == null || url.getRawPath().isEmpty()
+            ? "/" : url.getRawPath());
+        if (url.getRawQuery() != null) {
+            builder.append('?').append(url.getRawQuery());
+        }
+        if (url.getRawFragment() != null) {
+            builder.append('#').append(url.getRawFragment());
+        }
+        return URI.create(builder.toString());
+    }
+
+    /**
+     * 把蜜柑链接替换为当前选中的镜像，其他链接原样返回.
+     */
+    public String rewrite(String url) {
+        URI uri = URI.create(url);
+        return isMikanUrl(uri) ? rewrite(uri, getBaseUrl()).toString() : url;
+    }
+
+    public void recordLatency(String baseUrl, Duration latency) {
+        MirrorState state = mirrors.get(baseUrl);
+        if (state != null) {
+            state.recordLatency(latency);
+        }
+    }
+
+    public void recordFailure(String baseUrl) {
+        MirrorState state = mirrors.get(baseUrl);
+        if (state != null) {
+            Duration cooldown = state.recordFailure();
+            log.warn("mikan mirror [{}] request fail, mark it unavailable for {}.", baseUrl,
+                cooldown);
+        }
+    }
+
+    /**
+     * @return 链接所属的镜像，不是镜像列表中的域名时为 null
+     */
+    public String getMirrorOf(URI url) {
+        String baseUrl = normalizeBaseUrl(url.toString());
+        return baseUrl != null && mirrors.containsKey(baseUrl) ? baseUrl : null;
+    }
+
+    static final class MirrorState {
+        private double latencyMillis = Double.NaN;
+        private int consecutiveFailures;
+        private long unavailableUntilNanos;
+
+        synchronized void recordLatency(Duration latency) {
+            double millis = latency.toNanos() / 1_000_000.0;
+            latencyMillis = Double.isNaN(latencyMillis)
+                ? millis : LATENCY_WEIGHT * millis + (1 - LATENCY_WEIGHT) * latencyMillis;
+            consecutiveFailures = 0;
+            unavailableUntilNanos = 0;
+        }
+
+        synchronized Duration recordFailure() {
+            consecutiveFailures++;
+            Duration cooldown = MIN_COOLDOWN.multipliedBy(
+                1L << Math.min(consecutiveFailures - 1, 10));
+            if (cooldown.compareTo(MAX_COOLDOWN) > 0) {
+                cooldown = MAX_COOLDOWN;
+            }
+            unavailableUntilNanos = System.nanoTime() + cooldown.toNanos();
+            return cooldown;
+        }
+
+        synchronized boolean isAvailable(long now) {
+            return consecutiveFailures == 0 || now - unavailableUntilNanos >= 0;
+        }
+
+        synchronized double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        synchronized long getUnavailableUntilNanos() {
+            return unavailableUntilNanos;
+        }
+
+        /**
+         * 可用的优先；都可用时延迟低的优先，没有延迟数据的排在有数据的之后；都不可用时冷却先结束的优先.
+         * 条件相同时保持配置顺序.
+         */
+        boolean isBetterThan(MirrorState other, long now) {
+            boolean available = isAvailable(now);
+            boolean otherAvailable = other.isAvailable(now);
+            if (available != otherAvailable) {
+                return available;
+            }
+            if (!available) {
+                return getUnavailableUntilNanos() - other.getUnavailableUntilNanos() < 0;
+            }
+            double latency = getLatencyMillis();
+            double otherLatency = other.getLatencyMillis();
+            if (Double.isNaN(latency)) {
+                return false;
+            }
+            return Double.isNaN(otherLatency) || latency < otherLatency;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package run.ikaros.plugin.mikan.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 按 host 选择代理的规则，每行一条，格式为 {@code host 模式=代理}，按顺序匹配第一条.
+ * <br/>
+ * host 模式支持 * 通配符，例如 {@code *.mikanime.tv}、{@code 192.168.*}，{@code *} 匹配所有 host；
+ * 以 {@code *.} 开头的模式同时匹配域名本身，{@code *.mikanime.tv} 也匹配 {@code mikanime.tv}.
+ * 代理为 {@code direct}、{@code http://host:port} 或者 {@code socks://host:port}.
+ * 没有匹配的规则时直连.
+ * <pre>
+ * 192.168.*=direct
+ * *.mikanime.tv=socks://127.0.0.1:1080
+ * *=http://127.0.0.1:7890
+ * </pre>
+ */
+@Slf4j
+public class ProxyRules extends ProxySelector {
+    private static final List<Proxy> DIRECT = List.of(Proxy.NO_PROXY);
+    private volatile List<Rule> rules = List.of();
+
+    /**
+     * 替换所有规则，格式错误的行会被忽略.
+     *
+     * @return 有效的规则数量
+     */
+    public int update(String text) {
+        this.rules = parse(text);
+        return rules.size();
+    }
+
+    static List<Rule> parse(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<Rule> parsed = new ArrayList<>();
+        for (String line : text.split("[\\r\\n]+")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            int index = trimmed.indexOf('=');
+            if (index <= 0) {
+                log.warn("invalid proxy rule, ignore it: {}", line);
+                continue;
+            }
+            String hostPattern = trimmed.substring(0, index).trim().toLowerCase(Locale.ROOT);
+            Proxy proxy = parseProxy(trimmed.substring(index + 1).trim());
+            if (proxy == null) {
+                log.warn("invalid proxy rule, ignore it: {}", line);
+                continue;
+            }
+            parsed.add(new Rule(toPattern(hostPattern), hostPattern, proxy));
+        }
+        return List.copyOf(parsed);
+    }
+
+    private static Pattern toPattern(String hostPattern) {
+        StringBuilder regex = new StringBuilder();
+        String rest = hostPattern;
+        if (hostPattern.startsWith("*.")) {
+            // 子域名或者域名本身
+            regex.append("(?:.*\\.)?");
+            rest = hostPattern.substring(2);
+        }
+        String[] parts = rest.split("\\*", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    static Proxy parseProxy(String value) {
+        if ("direct".equalsIgnoreCase(value)) {
+            return Proxy.NO_PROXY;
+        }
+        try {
+            URI uri = URI.create(value);
+            if (uri.getScheme() == null || uri.getHost() == null || uri.getPort() < 0) {
+                return null;
+            }
+            InetSocketAddress address =
+                InetSocketAddress.createUnresolved(uri.getHost(), uri.getPort());
+            return switch (uri.getScheme().toLowerCase(Locale.ROOT)) {
+                case "http" -> new Proxy(Proxy.Type.HTTP, address);
+                case "socks", "socks5" -> new Proxy(Proxy.Type.SOCKS, address);
+                default -> null;
+            };
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return host 对应的代理，直连时为 {@link Proxy#NO_PROXY}
+     */
+    public Proxy select(String host) {
+        if (host == null) {
+            return Proxy.NO_PROXY;
+        }
+        String lowerHost = host.toLowerCase(Locale.ROOT);
+        for (Rule rule : rules) {
+            if (rule.pattern().matcher(lowerHost).matches()) {
+                return rule.proxy();
+            }
+        }
+        return Proxy.NO_PROXY;
+    }
+
+    @Override
+    public List<Proxy> select(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("'uri' must not null.");
+        }
+        Proxy proxy = select(uri.getHost());
+        return proxy == Proxy.NO_PROXY ? DIRECT : List.of(proxy);
+    }
+
+    @Override
+    public void connectFailed(URI uri, SocketAddress address, IOException e) {
+        log.debug("connect proxy [{}] fail for uri: {}", address, uri, e);
+    }
+
+    /**
+     * @return 用于日志和统计的路由描述，例如 {@code mikanime.tv via socks 127.0.0.1:1080}
+     */
+    public String describeRoute(String host) {
+        Proxy proxy = select(host);
+        if (proxy.type() == Proxy.Type.DIRECT
+            || !(proxy.address() instanceof InetSocketAddress address)) {
+            return host + " direct";
+        }
+        return host + " via " + proxy.type().name().toLowerCase(Locale.ROOT) + " "
+            + address.getHostString() + ":" + address.getPort();
+    }
+
+    record Rule(Pattern pattern, String hostPattern, Proxy proxy) {
+    }
+}
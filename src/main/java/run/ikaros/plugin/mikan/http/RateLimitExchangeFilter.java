@@ -0,0 +1,51 @@
+package run.ikaros.plugin.mikan.http;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebClient 的限流过滤器，按请求的主机从 {@link HostRateLimiter} 获取许可.
+ * <br/>
+ * 等待许可时不占用线程，进行中请求的许可在响应体读取结束(包括取消和释放响应体)时才释放.
+ * <br/>
+ * 放在 {@link MikanMirrorExchangeFilter} 之内，每次尝试都按实际请求的镜像获取许可并反馈响应状态.
+ * 镜像探测请求不获取许可，只反馈响应状态.
+ */
+public class RateLimitExchangeFilter implements ExchangeFilterFunction {
+    private final HostRateLimiter hostRateLimiter;
+
+    public RateLimitExchangeFilter(HostRateLimiter hostRateLimiter) {
+        Assert.notNull(hostRateLimiter, "'hostRateLimiter' must not null.");
+        this.hostRateLimiter = hostRateLimiter;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String host = request.url().getHost();
+        if (host == null) {
+            return next.exchange(request);
+        }
+        if (request.attribute(MikanMirrorExchangeFilter.PROBE_ATTRIBUTE).isPresent()) {
+            return next.exchange(request)
+                .doOnNext(response -> onResponse(host, response));
+        }
+        return hostRateLimiter.acquireAsync(host)
+            .flatMap(permit -> next.exchange(request)
+                .doOnNext(response -> onResponse(host, response))
+                .map(response -> response.mutate()
+                    .body(body -> body.doFinally(signalType -> permit.release()))
+                    .build())
+                .doOnError(e -> permit.release())
+                .doOnCancel(permit::release));
+    }
+
+    private void onResponse(String host, ClientResponse response) {
+        hostRateLimiter.onResponse(host, response.statusCode().value(),
+            response.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}
@@ -0,0 +1,121 @@
+package run.ikaros.plugin.mikan.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按路由(host 和使用的代理)统计请求次数、失败次数和延迟.
+ * <br/>
+ * 延迟为收到响应头的耗时，每次请求(包括镜像切换后的重试)单独统计.
+ */
+@Slf4j
+public class RouteMetrics {
+    /**
+     * 新的延迟样本在加权平均中的权重
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+    private final ProxyRules proxyRules;
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+
+    public RouteMetrics(ProxyRules proxyRules) {
+        Assert.notNull(proxyRules, "'proxyRules' must not null.");
+        this.proxyRules = proxyRules;
+    }
+
+    public void record(String host, Duration latency, boolean success) {
+        if (host == null) {
+            return;
+        }
+        routes.computeIfAbsent(proxyRules.describeRoute(host), route -> new RouteStats())
+            .record(latency, success);
+    }
+
+    /**
+     * @return 路由描述 -> 统计快照，按路由排序
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshot = new TreeMap<>();
+        routes.forEach((route, stats) -> snapshot.put(route, stats.snapshot()));
+        return snapshot;
+    }
+
+    public void logSnapshot() {
+        snapshot().forEach((route, stats) -> log.info(
+            "route [{}] requests: {}, failures: {}, avg latency: {}ms, max latency: {}ms",
+            route, stats.requests(), stats.failures(), Math.round(stats.avgLatencyMillis()),
+            stats.maxLatencyMillis()));
+    }
+
+    /**
+     * @return RestTemplate 使用的统计拦截器
+     */
+    public ClientHttpRequestInterceptor interceptor() {
+        return (request, body, execution) -> {
+            String host = request.getURI().getHost();
+            long start = System.nanoTime();
+            try {
+                var response = execution.execute(request, body);
+                record(host, Duration.ofNanos(System.nanoTime() - start),
+                    !response.getStatusCode().is5xxServerError());
+                return response;
+            } catch (IOException | RuntimeException e) {
+                record(host, Duration.ofNanos(System.nanoTime() - start), false);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * @return WebClient 使用的统计过滤器，应当放在镜像切换之后，统计实际发出的请求
+     */
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> {
+            String host = request.url().getHost();
+            return next.exchange(request)
+                .elapsed()
+                .doOnNext(tuple -> record(host, Duration.ofMillis(tuple.getT1()),
+                    !tuple.getT2().statusCode().is5xxServerError()))
+                .map(tuple -> tuple.getT2())
+                .doOnError(e -> record(host, Duration.ZERO, false));
+        };
+    }
+
+    /**
+     * @param avgLatencyMillis 成功请求延迟的指数加权平均
+     */
+    public record Snapshot(long requests, long failures, double avgLatencyMillis,
+                           long maxLatencyMillis) {
+    }
+
+    static final class RouteStats {
+        private long requests;
+        private long failures;
+        private double latencyMillis = Double.NaN;
+        private long maxLatencyMillis;
+
+        synchronized void record(Duration latency, boolean success) {
+            requests++;
+            if (!success) {
+                failures++;
+                return;
+            }
+            double millis = latency.toNanos() / 1_000_000.0;
+            latencyMillis = Double.isNaN(latencyMillis)
+                ? millis : LATENCY_WEIGHT * millis + (1 - LATENCY_WEIGHT) * latencyMillis;
+            maxLatencyMillis = Math.max(maxLatencyMillis, latency.toMillis());
+        }
+
+        synchronized Snapshot snapshot() {
+            return new Snapshot(requests, failures,
+                Double.isNaN(latencyMillis) ? 0 : latencyMillis, maxLatencyMillis);
+        }
+    }
+}
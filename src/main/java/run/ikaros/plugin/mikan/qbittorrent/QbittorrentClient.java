@@ -1,15 +1,21 @@
 package run.ikaros.plugin.mikan.qbittorrent;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
@@ -19,6 +25,7 @@ import run.ikaros.api.custom.ReactiveCustomClient;
 import run.ikaros.api.infra.exception.NotFoundException;
 import run.ikaros.api.plugin.event.PluginConfigMapUpdateEvent;
 import run.ikaros.plugin.mikan.DefaultConst;
+import run.ikaros.plugin.mikan.http.HttpTransport;
 import run.ikaros.plugin.mikan.utils.JsonUtils;
 import run.ikaros.plugin.mikan.MikanPlugin;
 import run.ikaros.plugin.mikan.qbittorrent.model.QbCategory;
@@ -26,6 +33,9 @@ import run.ikaros.plugin.mikan.qbittorrent.model.QbConfig;
 import run.ikaros.plugin.mikan.qbittorrent.model.QbTorrentInfo;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -39,9 +49,23 @@ import lombok.extern.slf4j.Slf4j;
 @Component
 @Retryable
 public class QbittorrentClient {
+    /**
+     * 直接从响应流读取种子列表，不经过 Map 和 JSON 字符串
+     */
+    private static final ObjectReader TORRENT_INFO_READER =
+        JsonUtils.readerFor(QbTorrentInfo.class);
+    /**
+     * 批量添加时按批重试，和 {@link Retryable} 的默认值一致：最多请求 3 次，间隔 1 秒.
+     * 只重试请求失败，qbittorrent 返回 Fails(种子无效)时不重试
+     */
+    private static final RetryTemplate BATCH_RETRY_TEMPLATE = RetryTemplate.builder()
+        .maxAttempts(3)
+        .fixedBackoff(1000)
+        .retryOn(RestClientException.class)
+        .build();
     private String category = DefaultConst.OPTION_QBITTORRENT_CATEGORY;
     private String reactiveSavePath = DefaultConst.OPTION_QBITTORRENT_CATEGORY_SAVE_PATH;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
     private QbConfig config = new QbConfig();
     private HttpHeaders httpHeaders = new HttpHeaders();
     private String baseSavePath;
@@ -49,8 +73,11 @@ public class QbittorrentClient {
 
     private final ReactiveCustomClient customClient;
 
-    public QbittorrentClient(ReactiveCustomClient customClient) {
+    public QbittorrentClient(ReactiveCustomClient customClient, HttpTransport httpTransport) {
+        Assert.notNull(httpTransport, "'httpTransport' must not null.");
         this.customClient = customClient;
+        // 和蜜柑共享连接池，每次轮询复用长连接
+        this.restTemplate = new RestTemplate(httpTransport.getRequestFactory());
     }
 
     public interface API {
@@ -64,11 +91,13 @@ public class QbittorrentClient {
         String TORRENTS_ADD = "/api/v2/torrents/add";
         String TORRENTS_INFO = "/api/v2/torrents/info";
         String TORRENTS_RENAME_FILE = "/api/v2/torrents/renameFile";
+        String TORRENTS_RENAME = "/api/v2/torrents/rename";
         String TORRENTS_RESUME = "/api/v2/torrents/resume";
         String TORRENTS_PAUSE = "/api/v2/torrents/pause";
         String TORRENTS_DELETE = "/api/v2/torrents/delete";
         String TORRENTS_RECHECK = "/api/v2/torrents/recheck";
         String TORRENTS_ADD_TAGS = "/api/v2/torrents/addTags";
+        String SYNC_MAIN_DATA = "/api/v2/sync/maindata";
     }
 
     public QbittorrentClient setHttpHeaders(HttpHeaders httpHeaders) {
@@ -139,6 +168,20 @@ public class QbittorrentClient {
             config.setQbPassword(qbPassword);
             log.debug("update qbittorrent password");
         }
+        String qbAddBatchSize = map.get("qbAddBatchSize");
+        if (StringUtils.isNotBlank(qbAddBatchSize)) {
+            try {
+                int batchSize = Integer.parseInt(qbAddBatchSize.trim());
+                if (batchSize > 0) {
+                    config.setQbAddBatchSize(batchSize);
+                    log.debug("update qbittorrent add batch size: {}", batchSize);
+                } else {
+                    log.warn("invalid qbAddBatchSize: {}", qbAddBatchSize);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("invalid qbAddBatchSize: {}", qbAddBatchSize);
+            }
+        }
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -344,16 +387,38 @@ public class QbittorrentClient {
      * @link <a href="https://github.com/qbittorrent/qBittorrent/wiki/WebUI-API-(qBittorrent-4.1)#add-new-torrent">WebUI-API-(qBittorrent-4.1)#add-new-torrent</a>
      */
     @Retryable
-    public synchronized void addTorrentFromURLs(String src,
-                                                String savepath,
-                                                String category,
-                                                String newName,
-                                                boolean skipChecking,
-                                                boolean statusIsPaused,
-                                                boolean enableSequentialDownload,
-                                                boolean prioritizeDownloadFirstLastPiece) {
+    public void addTorrentFromURLs(String src,
+                                   String savepath,
+                                   String category,
+                                   String newName,
+                                   boolean skipChecking,
+                                   boolean statusIsPaused,
+                                   boolean enableSequentialDownload,
+                                   boolean prioritizeDownloadFirstLastPiece) {
         Assert.notNull(src, "'src' must not null.");
         Assert.hasText(category, "'category' must has text.");
+        // This method can add torrents from server local file or from URLs.
+        // http://, https://, magnet: and bc://bt/ links are supported.
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("urls", src);
+        postAddTorrents(body, savepath, category, newName, skipChecking, statusIsPaused,
+            enableSequentialDownload, prioritizeDownloadFirstLastPiece);
+    }
+
+    /**
+     * 发送 torrents/add 请求，除了 urls 和 torrents 之外的字段各种添加方式都相同.
+     *
+     * @param body 已经包含 urls 或者 torrents 字段的请求体
+     * @return 响应体，qbittorrent 添加失败时为 Fails.
+     */
+    private String postAddTorrents(MultiValueMap<String, Object> body,
+                                   String savepath,
+                                   String category,
+                                   String newName,
+                                   boolean skipChecking,
+                                   boolean statusIsPaused,
+                                   boolean enableSequentialDownload,
+                                   boolean prioritizeDownloadFirstLastPiece) {
         final String url = getUrlPrefix() + API.TORRENTS_ADD;
 
         HttpHeaders headers = new HttpHeaders();
@@ -367,26 +432,29 @@ public class QbittorrentClient {
             log.debug("create qbittorrent torrent download path: {}", savepath);
         }
 
-        // This method can add torrents from server local file or from URLs.
-        // http://, https://, magnet: and bc://bt/ links are supported.
-        MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
-        body.put("urls", List.of(src));
         if (StringUtils.isNotBlank(savepath)) {
-            body.put("savepath", List.of(savepath));
+            body.add("savepath", savepath);
         }
-        body.put("category", List.of(category));
-        body.put("skip_checking", List.of(skipChecking ? "true" : "false"));
-        body.put("paused", List.of(statusIsPaused ? "true" : "false"));
+        body.add("category", category);
+        body.add("skip_checking", skipChecking ? "true" : "false");
+        body.add("paused", statusIsPaused ? "true" : "false");
         if (StringUtils.isNotBlank(newName)) {
-            body.put("rename", List.of(newName));
+            body.add("rename", newName);
         }
-        body.put("sequentialDownload", List.of(enableSequentialDownload ? "true" : "false"));
-        body.put("firstLastPiecePrio",
-            List.of(prioritizeDownloadFirstLastPiece ? "true" : "false"));
+        body.add("sequentialDownload", enableSequentialDownload ? "true" : "false");
+        body.add("firstLastPiecePrio", prioritizeDownloadFirstLastPiece ? "true" : "false");
 
-        HttpEntity<MultiValueMap<String, String>> httpEntity = new HttpEntity<>(body, headers);
+        return restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(body, headers),
+            String.class).getBody();
+    }
 
-        restTemplate.exchange(url, HttpMethod.POST, httpEntity, Void.class);
+    private static ByteArrayResource newTorrentResource(TorrentFile torrentFile) {
+        return new ByteArrayResource(torrentFile.bytes()) {
+            @Override
+            public String getFilename() {
+                return torrentFile.fileName();
+            }
+        };
     }
 
     public void addTorrentFromUrl(String url) {
@@ -401,6 +469,98 @@ public class QbittorrentClient {
             false, false, false);
     }
 
+    /**
+     * 批量添加种子链接，按 {@link QbConfig#getQbAddBatchSize()} 分批，每批一个请求，
+     * 链接在 urls 字段中按行分隔. 批量添加时不能逐个重命名，种子使用自己的名称，
+     * 需要时添加后再调用 {@link #renameTorrent(String, String)}.
+     * 每批单独重试，某一批失败时不会重新发送已经成功的批次.
+     *
+     * @param srcs 种子链接，http://, https://, magnet: 和 bc://bt/
+     * @see #addTorrentFromURLs(String, String, String, String, boolean, boolean, boolean, boolean)
+     */
+    @Retryable(maxAttempts = 1)
+    public void addTorrentsFromURLs(List<String> srcs,
+                                    String savepath,
+                                    String category,
+                                    boolean skipChecking,
+                                    boolean statusIsPaused,
+                                    boolean enableSequentialDownload,
+                                    boolean prioritizeDownloadFirstLastPiece) {
+        Assert.notNull(srcs, "'srcs' must not null.");
+        Assert.hasText(category, "'category' must has text.");
+        for (List<String> batch : partition(srcs)) {
+            // 类内部调用不经过代理，addTorrentFromURLs 的 @Retryable 不生效
+            BATCH_RETRY_TEMPLATE.execute(context -> {
+                addTorrentFromURLs(String.join("\n", batch), savepath, category, null,
+                    skipChecking, statusIsPaused, enableSequentialDownload,
+                    prioritizeDownloadFirstLastPiece);
+                return null;
+            });
+            log.debug("add {} torrent url(s) to qbittorrent in one request.", batch.size());
+        }
+    }
+
+    /**
+     * 批量上传种子文件，按 {@link QbConfig#getQbAddBatchSize()} 分批，每批一个请求，
+     * 每个种子文件是一个 torrents 字段，qbittorrent 不需要再自己下载种子文件.
+     * 批量添加时不能逐个重命名，种子使用自己的名称，
+     * 需要时添加后再调用 {@link #renameTorrent(String, String)}.
+     * 每批单独重试，某一批失败时不会重新发送已经成功的批次.
+     *
+     * @param torrentFiles .torrent 文件名和内容
+     */
+    @Retryable(maxAttempts = 1)
+    public void addTorrentsFromFiles(List<TorrentFile> torrentFiles,
+                                     String savepath,
+                                     String category,
+                                     boolean skipChecking,
+                                     boolean statusIsPaused,
+                                     boolean enableSequentialDownload,
+                                     boolean prioritizeDownloadFirstLastPiece) {
+        Assert.notNull(torrentFiles, "'torrentFiles' must not null.");
+        Assert.hasText(category, "'category' must has text.");
+        for (List<TorrentFile> batch : partition(torrentFiles)) {
+            String response = BATCH_RETRY_TEMPLATE.execute(context -> {
+                MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+                for (TorrentFile torrentFile : batch) {
+                    body.add("torrents", newTorrentResource(torrentFile));
+                }
+                return postAddTorrents(body, savepath, category, null, skipChecking,
+                    statusIsPaused, enableSequentialDownload, prioritizeDownloadFirstLastPiece);
+            });
+            // 只有全部种子都无效时 qbittorrent 才返回 Fails.
+            if (response != null && response.contains("Fails")) {
+                throw new QbittorrentRequestException(
+                    "add torrents from files fail, file size: " + batch.size());
+            }
+            log.debug("add {} torrent file(s) to qbittorrent in one request.", batch.size());
+        }
+    }
+
+    public void addTorrentsFromUrls(List<String> urls) {
+        addTorrentsFromURLs(urls, getSavePath(), category, false, false, false, false);
+    }
+
+    public void addTorrentsFromFiles(List<TorrentFile> torrentFiles) {
+        addTorrentsFromFiles(torrentFiles, getSavePath(), category, false, false, false, false);
+    }
+
+    private <T> List<List<T>> partition(List<T> list) {
+        int batchSize = Math.max(1, Objects.requireNonNullElse(config.getQbAddBatchSize(), 20));
+        List<List<T>> batches = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += batchSize) {
+            batches.add(list.subList(from, Math.min(from + batchSize, list.size())));
+        }
+        return batches;
+    }
+
+    /**
+     * @param fileName .torrent file name
+     * @param bytes    .torrent file content
+     */
+    public record TorrentFile(String fileName, byte[] bytes) {
+    }
+
     /**
      * @param filter   Filter torrent list by state. Allowed state filters: all, downloading,
      *                 seeding,completed, paused, active, inactive, resumed, stalled,
@@ -443,23 +603,52 @@ public class QbittorrentClient {
             urlBuilder.queryParam("hashes", hashes);
         }
 
-        ResponseEntity<ArrayList> originalListResponseEntity
-            = restTemplate.exchange(urlBuilder.toUriString(),
-            HttpMethod.GET, new HttpEntity<>(null, httpHeaders), ArrayList.class);
-        ArrayList originalList = originalListResponseEntity.getBody();
+        // 只编码一次，hashes 中的 | 不会被再次编码
+        URI uri = urlBuilder.encode().build().toUri();
+        List<QbTorrentInfo> qbTorrentInfoList = restTemplate.execute(uri, HttpMethod.GET,
+            request -> {
+                request.getHeaders().addAll(httpHeaders);
+                request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+            },
+            response -> readTorrentList(response.getBody()));
 
-        Assert.notNull(originalList, "'originalList' must not null.");
+        Assert.notNull(qbTorrentInfoList, "'qbTorrentInfoList' must not null.");
+        return qbTorrentInfoList;
+    }
 
-        List<QbTorrentInfo> qbTorrentInfoList = new ArrayList<>(originalList.size());
-        for (Object o : originalList) {
-            QbTorrentInfo qbTorrentInfo
-                = JsonUtils.json2obj(JsonUtils.obj2Json(o), QbTorrentInfo.class);
-            qbTorrentInfoList.add(qbTorrentInfo);
+    /**
+     * 逐个读取 torrents/info 返回的 JSON 数组中的种子，直接反序列化为 {@link QbTorrentInfo}.
+     */
+    public static List<QbTorrentInfo> readTorrentList(InputStream inputStream)
+        throws IOException {
+        List<QbTorrentInfo> qbTorrentInfoList = new ArrayList<>();
+        try (MappingIterator<QbTorrentInfo> iterator =
+                 TORRENT_INFO_READER.readValues(inputStream)) {
+            while (iterator.hasNextValue()) {
+                qbTorrentInfoList.add(iterator.nextValue());
+            }
         }
-
         return qbTorrentInfoList;
     }
 
+    /**
+     * @param rid 上一次返回的 rid，为 0 时返回全部数据，否则只返回之后的变化
+     * @return 原始的 maindata，种子只包含发生变化的字段
+     * @link <a href="https://github.com/qbittorrent/qBittorrent/wiki/WebUI-API-(qBittorrent-4.1)#get-main-data">WebUI-API-(qBittorrent-4.1)#get-main-data</a>
+     * @see QbittorrentSyncClient
+     */
+    @Retryable
+    public JsonNode getMainData(long rid) {
+        final String url = getUrlPrefix() + API.SYNC_MAIN_DATA + "?rid=" + rid;
+        ResponseEntity<JsonNode> responseEntity = restTemplate.exchange(url, HttpMethod.GET,
+            new HttpEntity<>(null, httpHeaders), JsonNode.class);
+        JsonNode mainData = responseEntity.getBody();
+        if (mainData == null || !mainData.isObject()) {
+            throw new QbittorrentRequestException("get main data fail, rid=" + rid);
+        }
+        return mainData;
+    }
+
     public QbTorrentInfo getTorrent(String hash) {
         Assert.hasText(hash, "'hash' must has text.");
         List<QbTorrentInfo> torrentList = getTorrentList(null, null, null, null, null, hash);
@@ -500,6 +689,33 @@ public class QbittorrentClient {
         restTemplate.exchange(url, HttpMethod.POST, httpEntity, Void.class);
     }
 
+    /**
+     * rename torrent
+     *
+     * @param hash The hash of the torrent
+     * @param name New torrent name
+     * @link <a href="https://github.com/qbittorrent/qBittorrent/wiki/WebUI-API-(qBittorrent-4.1)#set-torrent-name">WebUI-API-(qBittorrent-4.1)#set-torrent-name</a>
+     */
+    @Retryable
+    public void renameTorrent(String hash, String name) {
+        Assert.hasText(hash, "'hash' must has text.");
+        Assert.hasText(name, "'name' must has text.");
+        final String url = getUrlPrefix() + API.TORRENTS_RENAME;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        headers.setAcceptCharset(List.of(StandardCharsets.UTF_8));
+        List<String> cookies = this.httpHeaders.get(HttpHeaders.COOKIE);
+        headers.put(HttpHeaders.COOKIE, cookies == null ? List.of() : cookies);
+
+        String body = "hash=" + hash
+            + "&name=" + URLEncoder.encode(name, StandardCharsets.UTF_8);
+
+        HttpEntity<String> httpEntity = new HttpEntity<>(body, headers);
+
+        restTemplate.exchange(url, HttpMethod.POST, httpEntity, Void.class);
+    }
+
     @Retryable
     public void resume(String hashes) {
         Assert.hasText(hashes, "'hashes' must has text.");
@@ -586,7 +802,20 @@ public class QbittorrentClient {
      */
     public void addSingleTags(String hash, String tag) {
         Assert.hasText(hash, "'hash' must has text.");
-        Assert.hasText(tag, "'tag' must has text.");
+        addTags(List.of(hash), tag);
+    }
+
+    /**
+     * 一个请求给多个种子添加相同的标签，hashes 按 | 拼接.
+     *
+     * @param hashes 种子 hash
+     * @param tags   标签，多个标签按英文逗号分隔
+     * @see <a href="https://github.com/qbittorrent/qBittorrent/wiki/WebUI-API-(qBittorrent-4.1)#add-torrent-tags">WebUI-API-(qBittorrent-4.1)#add-torrent-tags</a>
+     */
+    @Retryable
+    public void addTags(Collection<String> hashes, String tags) {
+        Assert.notEmpty(hashes, "'hashes' must not empty.");
+        Assert.hasText(tags, "'tags' must has text.");
         final String url = getUrlPrefix() + API.TORRENTS_ADD_TAGS;
 
         HttpHeaders headers = new HttpHeaders();
@@ -595,8 +824,9 @@ public class QbittorrentClient {
         List<String> cookies = this.httpHeaders.get(HttpHeaders.COOKIE);
         headers.put(HttpHeaders.COOKIE, cookies == null ? List.of() : cookies);
 
-        String body = "hashes=" + hash
-            + "&tags=" + tag;
+        String body = "hashes=" + URLEncoder.encode(String.join("|", hashes),
+            StandardCharsets.UTF_8)
+            + "&tags=" + URLEncoder.encode(tags, StandardCharsets.UTF_8);
 
         HttpEntity<String> httpEntity = new HttpEntity<>(body, headers);
 
@@ -0,0 +1,186 @@
+package run.ikaros.plugin.mikan.qbittorrent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import run.ikaros.plugin.mikan.qbittorrent.model.QbTorrentInfo;
+import run.ikaros.plugin.mikan.utils.JsonUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 通过 /api/v2/sync/maindata 在本地维护 qbittorrent 种子状态的镜像.
+ * <br/>
+ * 第一次同步获取全部种子，之后携带上一次的 rid 只获取变化的种子和变化的字段，
+ * 并在种子添加、下载完成、出错和删除时发出事件，添加时已经完成的种子也会发出下载完成事件.
+ * 镜像中的 {@link QbTorrentInfo} 每次变化时重新创建，读取方拿到的对象不会再被修改.
+ *
+ * @link <a href="https://github.com/qbittorrent/qBittorrent/wiki/WebUI-API-(qBittorrent-4.1)#get-main-data">WebUI-API-(qBittorrent-4.1)#get-main-data</a>
+ */
+@Slf4j
+public class QbittorrentSyncClient {
+    private static final Set<String> ERRORED_STATES = Set.of("error", "missingFiles");
+    private final QbittorrentClient qbittorrentClient;
+    /**
+     * hash -> 合并了所有变化之后的原始字段
+     */
+    private final Map<String, ObjectNode> torrentNodes = new HashMap<>();
+    private final Map<String, QbTorrentInfo> torrents = new ConcurrentHashMap<>();
+    private final Sinks.Many<TorrentEvent> events =
+        Sinks.many().multicast().directBestEffort();
+    private long rid = 0;
+    private boolean initialized = false;
+
+    public QbittorrentSyncClient(QbittorrentClient qbittorrentClient) {
+        Assert.notNull(qbittorrentClient, "'qbittorrentClient' must not null.");
+        this.qbittorrentClient = qbittorrentClient;
+    }
+
+    /**
+     * 请求一次 maindata 并合并到本地镜像，第一次为全量，之后为增量.
+     */
+    public synchronized void sync() {
+        apply(qbittorrentClient.getMainData(rid));
+    }
+
+    /**
+     * 在 boundedElastic 上同步一次.
+     */
+    public Mono<Void> syncAsync() {
+        return Mono.fromRunnable(this::sync)
+            .subscribeOn(Schedulers.boundedElastic())
+            .then();
+    }
+
+    synchronized void apply(JsonNode mainData) {
+        boolean fullUpdate = mainData.path("full_update").asBoolean(false);
+        // 第一次同步只建立镜像，不把已有的种子当作新添加
+        boolean emit = initialized;
+        if (fullUpdate) {
+            Set<String> removed = new HashSet<>(torrentNodes.keySet());
+            mainData.path("torrents").fieldNames().forEachRemaining(removed::remove);
+            removeTorrents(removed, emit);
+        }
+        Iterator<Map.Entry<String, JsonNode>> changes = mainData.path("torrents").fields();
+        while (changes.hasNext()) {
+            Map.Entry<String, JsonNode> change = changes.next();
+            if (change.getValue().isObject()) {
+                updateTorrent(change.getKey(), (ObjectNode) change.getValue(), fullUpdate, emit);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        mainData.path("torrents_removed").forEach(hash -> removed.add(hash.asText()));
+        removeTorrents(removed, emit);
+        rid = mainData.path("rid").asLong(rid);
+        initialized = true;
+        log.debug("sync qbittorrent main data, rid: {}, full update: {}, torrent size: {}.",
+            rid, fullUpdate, torrents.size());
+    }
+
+    private void updateTorrent(String hash, ObjectNode change, boolean fullUpdate,
+                               boolean emit) {
+        ObjectNode node = torrentNodes.get(hash);
+        QbTorrentInfo previous = torrents.get(hash);
+        if (node == null || fullUpdate) {
+            node = JsonNodeFactory.instance.objectNode();
+            torrentNodes.put(hash, node);
+        }
+        node.setAll(change);
+        node.put("hash", hash);
+        QbTorrentInfo current = JsonUtils.node2obj(node, QbTorrentInfo.class);
+        if (current == null) {
+            return;
+        }
+        torrents.put(hash, current);
+        if (!emit) {
+            return;
+        }
+        if (previous == null) {
+            emit(TorrentEvent.Type.ADDED, current);
+            // 添加时已经下载完成，例如文件已经存在时
+            if (isCompleted(current)) {
+                emit(TorrentEvent.Type.COMPLETED, current);
+            }
+            return;
+        }
+        if (!isCompleted(previous) && isCompleted(current)) {
+            emit(TorrentEvent.Type.COMPLETED, current);
+        }
+        if (!isErrored(previous) && isErrored(current)) {
+            emit(TorrentEvent.Type.ERRORED, current);
+        }
+    }
+
+    private void removeTorrents(Collection<String> hashes, boolean emit) {
+        for (String hash : hashes) {
+            torrentNodes.remove(hash);
+            QbTorrentInfo removed = torrents.remove(hash);
+            if (removed != null && emit) {
+                emit(TorrentEvent.Type.REMOVED, removed);
+            }
+        }
+    }
+
+    private void emit(TorrentEvent.Type type, QbTorrentInfo torrent) {
+        log.debug("qbittorrent torrent {}: [{}].", type, torrent.getName());
+        events.tryEmitNext(new TorrentEvent(type, torrent));
+    }
+
+    private static boolean isCompleted(QbTorrentInfo torrent) {
+        return torrent.getProgress() != null && torrent.getProgress() >= 1.0f;
+    }
+
+    private static boolean isErrored(QbTorrentInfo torrent) {
+        return ERRORED_STATES.contains(torrent.getState());
+    }
+
+    /**
+     * @return 种子变化事件，只包含订阅之后的同步中发生的变化
+     */
+    public Flux<TorrentEvent> events() {
+        return events.asFlux();
+    }
+
+    /**
+     * @return 本地镜像中的种子，没有时为 null
+     */
+    public QbTorrentInfo getTorrent(String hash) {
+        return hash == null ? null : torrents.get(hash.toLowerCase());
+    }
+
+    /**
+     * @param category 分类，为 null 时返回所有种子
+     * @return 本地镜像中的种子
+     */
+    public List<QbTorrentInfo> getTorrents(String category) {
+        return torrents.values().stream()
+            .filter(torrent -> category == null || Objects.equals(category,
+                torrent.getCategory()))
+            .toList();
+    }
+
+    public synchronized long getRid() {
+        return rid;
+    }
+
+    public record TorrentEvent(Type type, QbTorrentInfo torrent) {
+        public enum Type {
+            ADDED, COMPLETED, ERRORED, REMOVED
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package run.ikaros.plugin.mikan.qbittorrent;
+
+import org.springframework.util.Assert;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 收集一个周期内需要添加的种子标签，按标签(番剧的 bgm.tv 条目 id)分组，
+ * 最后每个标签只发一个 {@link QbittorrentClient#addTags(java.util.Collection, String)} 请求.
+ * <br/>
+ * 可以在多个线程中添加. 同一个实例在多个周期之间复用，发送失败的标签和下一个周期的一起发送.
+ */
+public class TorrentTagBatch {
+    private final Map<String, Set<String>> hashesByTag = new LinkedHashMap<>();
+
+    public synchronized void add(String hash, String tag) {
+        Assert.hasText(hash, "'hash' must has text.");
+        Assert.hasText(tag, "'tag' must has text.");
+        hashesByTag.computeIfAbsent(tag, t -> new LinkedHashSet<>()).add(hash);
+    }
+
+    public synchronized boolean isEmpty() {
+        return hashesByTag.isEmpty();
+    }
+
+    /**
+     * @return 标签 -> 种子 hash 的副本
+     */
+    public synchronized Map<String, Set<String>> getHashesByTag() {
+        Map<String, Set<String>> copy = new LinkedHashMap<>();
+        hashesByTag.forEach((tag, hashes) -> copy.put(tag, Set.copyOf(hashes)));
+        return copy;
+    }
+
+    /**
+     * 发送所有收集的标签并清空，请求失败时保留未发送的标签.
+     */
+    public void flush(QbittorrentClient qbittorrentClient) {
+        Assert.notNull(qbittorrentClient, "'qbittorrentClient' must not null.");
+        for (Map.Entry<String, Set<String>> entry : getHashesByTag().entrySet()) {
+            qbittorrentClient.addTags(entry.getValue(), entry.getKey());
+            synchronized (this) {
+                Set<String> hashes = hashesByTag.get(entry.getKey());
+                if (hashes != null) {
+                    hashes.removeAll(entry.getValue());
+                    if (hashes.isEmpty()) {
+                        hashesByTag.remove(entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -6,11 +6,82 @@ import lombok.extern.slf4j.Slf4j;
 @Data
 @Slf4j
 public class QbConfig {
+    /**
+     * 蜜柑订阅链接，多个链接按行(或英文逗号)分隔
+     */
     private String mikanRss;
+    /**
+     * 同时拉取的订阅链接数量上限
+     */
+    private Integer mikanRssConcurrency = 4;
+    /**
+     * 是否在插件数据目录保留每个订阅链接最近一次的响应内容，用于调试
+     */
+    private Boolean mikanRssKeepSnapshot = false;
+    /**
+     * 是否在插件数据目录压缩归档每次订阅链接的响应内容，用于离线回放
+     */
+    private Boolean mikanRssArchive = false;
+    /**
+     * 归档的总大小上限(MB)，超过时删除最旧的归档
+     */
+    private Integer mikanRssArchiveMaxMb = 64;
+    /**
+     * 回放模式，从归档中解析订阅内容，不访问网络也不添加种子，只记录解析和处理的耗时
+     */
+    private Boolean mikanRssReplay = false;
+    /**
+     * 每个蜜柑域名每秒的请求数
+     */
+    private Integer mikanRequestsPerSecond = 2;
+    /**
+     * 每个蜜柑域名允许的突发请求数
+     */
+    private Integer mikanRequestBurst = 4;
+    /**
+     * 同时进行中的蜜柑请求数上限
+     */
+    private Integer mikanMaxInFlight = 4;
+    /**
+     * 是否每个季度预先抓取当季所有番剧对应的 bgm.tv 条目
+     */
+    private Boolean mikanSeasonPrefetch = true;
+    /**
+     * 订阅链接拉取间隔下限(分钟)，预计的更新时间附近按这个间隔拉取
+     */
+    private Integer mikanRssPollMinMinutes = 2;
+    /**
+     * 订阅链接拉取间隔上限(分钟)，远离更新时间时逐渐放慢到这个间隔
+     */
+    private Integer mikanRssPollMaxMinutes = 180;
+    /**
+     * 蜜柑镜像，多个镜像按行(或英文逗号)分隔，自动选择延迟最低的可用镜像
+     */
+    private String mikanMirrors = "https://mikanime.tv\nhttps://mikanani.me";
+    /**
+     * 建立连接的超时时间(秒)，蜜柑和 qbittorrent 共用
+     */
+    private Integer httpConnectTimeoutSeconds = 10;
+    /**
+     * 读取响应的超时时间(秒)，蜜柑和 qbittorrent 共用
+     */
+    private Integer httpReadTimeoutSeconds = 60;
+    /**
+     * 每个 host 连接池的连接数上限
+     */
+    private Integer httpMaxConnectionsPerHost = 8;
+    /**
+     * 按 host 的代理规则，每行一条，例如 *.mikanime.tv=socks://127.0.0.1:1080(同时匹配 mikanime.tv)，没有匹配的规则时直连
+     */
+    private String httpProxyRules = "";
     /**
      * API前缀，例如：http://192.168.2.229:60101
      */
     private String qbUrlPrefix;
     private String qbUsername;
     private String qbPassword;
+    /**
+     * 批量添加种子时每个请求包含的种子数量
+     */
+    private Integer qbAddBatchSize = 20;
 }
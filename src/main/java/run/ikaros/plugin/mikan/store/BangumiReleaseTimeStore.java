@@ -0,0 +1,53 @@
+package run.ikaros.plugin.mikan.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.util.Assert;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每部番剧最近几次的发布时间，和订阅的 ETag / Last-Modified 一起持久化.
+ * 插件重启后订阅返回 304 时，依然可以按之前学习到的更新时间调度拉取.
+ *
+ * @see run.ikaros.plugin.mikan.MikanRssPollScheduler
+ */
+public class BangumiReleaseTimeStore {
+    private static final String FILE_NAME = "bangumi-release-times.json";
+    private final JsonFileStore<List<LocalDateTime>> releaseTimes;
+
+    public BangumiReleaseTimeStore(Path dataDir) {
+        Assert.notNull(dataDir, "'dataDir' must not null.");
+        this.releaseTimes = new JsonFileStore<>(dataDir.resolve(FILE_NAME),
+            new TypeReference<Map<String, List<LocalDateTime>>>() {
+            });
+    }
+
+    /**
+     * @return 番剧标识 -> 发布时间
+     */
+    public Map<String, List<LocalDateTime>> getAll() {
+        return releaseTimes.getAll();
+    }
+
+    /**
+     * 批量保存多部番剧的发布时间，没有变化时不写磁盘，有变化时只写一次.
+     *
+     * @param bangumiReleaseTimes 番剧标识 -> 发布时间
+     */
+    public void putAll(Map<String, List<LocalDateTime>> bangumiReleaseTimes) {
+        Assert.notNull(bangumiReleaseTimes, "'bangumiReleaseTimes' must not null.");
+        Map<String, List<LocalDateTime>> copies = new HashMap<>();
+        bangumiReleaseTimes.forEach((bangumiKey, times) -> copies.put(bangumiKey,
+            List.copyOf(times)));
+        releaseTimes.putAll(copies);
+    }
+
+    public void removeAll(Collection<String> bangumiKeys) {
+        releaseTimes.removeAll(bangumiKeys);
+    }
+}
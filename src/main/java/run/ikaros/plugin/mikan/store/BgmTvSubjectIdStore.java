@@ -0,0 +1,87 @@
+package run.ikaros.plugin.mikan.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 蜜柑番剧 id 到 bgm.tv 条目 id 的映射，一部番剧对应的条目不会变化，永久保存.
+ * <br/>
+ * 番剧页面没有 bgm.tv 链接时也记录下来，一段时间内不再请求这部番剧的页面，
+ * 过期后重新请求，蜜柑之后补上的链接依然能够解析到.
+ */
+public class BgmTvSubjectIdStore {
+    private static final String FILE_NAME = "bangumi-bgmtv-subject-ids.json";
+    private static final String MISSING_FILE_NAME = "bangumi-bgmtv-subject-missing.json";
+    /**
+     * 没有 bgm.tv 链接的记录的有效期
+     */
+    static final Duration MISSING_TTL = Duration.ofDays(7);
+    private final JsonFileStore<String> subjectIds;
+    /**
+     * 蜜柑番剧 id -> 确认番剧页面没有 bgm.tv 链接的时间
+     */
+    private final JsonFileStore<Long> missingCheckedTimes;
+    private final Clock clock;
+
+    public BgmTvSubjectIdStore(Path dataDir) {
+        this(dataDir, Clock.systemUTC());
+    }
+
+    public BgmTvSubjectIdStore(Path dataDir, Clock clock) {
+        Assert.notNull(dataDir, "'dataDir' must not null.");
+        Assert.notNull(clock, "'clock' must not null.");
+        this.subjectIds = new JsonFileStore<>(dataDir.resolve(FILE_NAME),
+            new TypeReference<Map<String, String>>() {
+            });
+        this.missingCheckedTimes = new JsonFileStore<>(dataDir.resolve(MISSING_FILE_NAME),
+            new TypeReference<Map<String, Long>>() {
+            });
+        this.clock = clock;
+    }
+
+    /**
+     * @param bangumiId 蜜柑番剧 id
+     * @return bgm.tv 条目 id，没有记录时为 null
+     */
+    @Nullable
+    public String get(String bangumiId) {
+        return subjectIds.get(bangumiId);
+    }
+
+    public void put(String bangumiId, String bgmTvSubjectId) {
+        Assert.hasText(bangumiId, "'bangumiId' must has text.");
+        Assert.hasText(bgmTvSubjectId, "'bgmTvSubjectId' must has text.");
+        subjectIds.put(bangumiId, bgmTvSubjectId);
+        missingCheckedTimes.remove(bangumiId);
+    }
+
+    /**
+     * 记录番剧页面没有 bgm.tv 链接.
+     *
+     * @param bangumiId 蜜柑番剧 id
+     */
+    public void putMissing(String bangumiId) {
+        Assert.hasText(bangumiId, "'bangumiId' must has text.");
+        missingCheckedTimes.put(bangumiId, clock.millis());
+    }
+
+    /**
+     * @param bangumiId 蜜柑番剧 id
+     * @return 有效期内是否确认过番剧页面没有 bgm.tv 链接
+     */
+    public boolean isMissing(String bangumiId) {
+        Long checkedTime = missingCheckedTimes.get(bangumiId);
+        return checkedTime != null
+            && clock.millis() - checkedTime < MISSING_TTL.toMillis();
+    }
+
+    public int size() {
+        return subjectIds.size();
+    }
+}
@@ -0,0 +1,130 @@
+package run.ikaros.plugin.mikan.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import run.ikaros.plugin.mikan.utils.JsonUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 保存在单个 JSON 文件中的字符串 key 映射，全部读入内存.
+ * <br/>
+ * 内容变化时整体写入临时文件再原子替换，写入中途失败不会损坏已有的文件.
+ *
+ * @param <V> 值类型
+ */
+@Slf4j
+class JsonFileStore<V> {
+    private final Path filePath;
+    private final TypeReference<Map<String, V>> typeReference;
+    private final Map<String, V> values = new ConcurrentHashMap<>();
+
+    JsonFileStore(Path filePath, TypeReference<Map<String, V>> typeReference) {
+        Assert.notNull(filePath, "'filePath' must not null.");
+        Assert.notNull(typeReference, "'typeReference' must not null.");
+        this.filePath = filePath;
+        this.typeReference = typeReference;
+        load();
+    }
+
+    @Nullable
+    V get(String key) {
+        return key == null ? null : values.get(key);
+    }
+
+    /**
+     * 值没有变化时不写磁盘.
+     */
+    void put(String key, V value) {
+        Assert.hasText(key, "'key' must has text.");
+        Assert.notNull(value, "'value' must not null.");
+        if (value.equals(values.put(key, value))) {
+            return;
+        }
+        save();
+    }
+
+    void remove(String key) {
+        if (key != null && values.remove(key) != null) {
+            save();
+        }
+    }
+
+    /**
+     * 批量写入，有变化时只写一次磁盘.
+     */
+    void putAll(Map<String, V> entries) {
+        Assert.notNull(entries, "'entries' must not null.");
+        boolean changed = false;
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            Assert.hasText(entry.getKey(), "'key' must has text.");
+            Assert.notNull(entry.getValue(), "'value' must not null.");
+            changed |= !entry.getValue().equals(values.put(entry.getKey(), entry.getValue()));
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    /**
+     * 批量删除，有变化时只写一次磁盘.
+     */
+    void removeAll(Collection<String> keys) {
+        Assert.notNull(keys, "'keys' must not null.");
+        boolean changed = false;
+        for (String key : keys) {
+            changed |= key != null && values.remove(key) != null;
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * @return 所有记录的副本
+     */
+    Map<String, V> getAll() {
+        return Map.copyOf(values);
+    }
+
+    private void load() {
+        if (!Files.exists(filePath)) {
+            return;
+        }
+        try {
+            String json = Files.readString(filePath, StandardCharsets.UTF_8);
+            Map<String, V> map = JsonUtils.json2obj(json, typeReference);
+            if (map != null) {
+                values.putAll(map);
+            }
+            log.debug("load json file store size: {}, file path: {}", values.size(), filePath);
+        } catch (IOException e) {
+            log.warn("load json file store fail, file path: {}", filePath, e);
+        }
+    }
+
+    private synchronized void save() {
+        try {
+            Files.createDirectories(filePath.getParent());
+            Path tmpPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+            Files.writeString(tmpPath, JsonUtils.obj2Json(values), StandardCharsets.UTF_8);
+            Files.move(tmpPath, filePath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("save json file store fail, file path: {}", filePath, e);
+        }
+    }
+}
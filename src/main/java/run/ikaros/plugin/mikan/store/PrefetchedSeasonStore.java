@@ -0,0 +1,34 @@
+package run.ikaros.plugin.mikan.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.util.Assert;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * 已经完整预先抓取过的蜜柑季度，插件重启后不会重新抓取整个季度.
+ */
+public class PrefetchedSeasonStore {
+    private static final String FILE_NAME = "mikan-prefetched-seasons.json";
+    /**
+     * 季度，例如 2024春 -> 完成抓取的时间
+     */
+    private final JsonFileStore<Long> prefetchedTimes;
+
+    public PrefetchedSeasonStore(Path dataDir) {
+        Assert.notNull(dataDir, "'dataDir' must not null.");
+        this.prefetchedTimes = new JsonFileStore<>(dataDir.resolve(FILE_NAME),
+            new TypeReference<Map<String, Long>>() {
+            });
+    }
+
+    public boolean isPrefetched(String season) {
+        return prefetchedTimes.get(season) != null;
+    }
+
+    public void markPrefetched(String season) {
+        Assert.hasText(season, "'season' must has text.");
+        prefetchedTimes.put(season, System.currentTimeMillis());
+    }
+}
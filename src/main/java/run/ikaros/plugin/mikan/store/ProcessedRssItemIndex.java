@@ -0,0 +1,196 @@
+package run.ikaros.plugin.mikan.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已处理过的 RSS 条目索引，按种子 info-hash 或种子链接记录，只追加写入.
+ * 一行一个，格式为 {@code 处理时间(毫秒)\t标识}.
+ * <br/>
+ * 每个周期只有不在索引中的条目才会添加到 qbittorrent 以及抓取条目信息.
+ * <br/>
+ * 加载时压缩文件：去掉超过 {@link #MAX_AGE} 的条目、重复的行以及写入中断留下的不完整的最后一行，
+ * 文件大小不会无限增长. 过期的条目即使再次出现在订阅中，已经在 qbittorrent 中的种子也不会重复添加.
+ *
+ * @see run.ikaros.plugin.mikan.MikanRssItem#getIdentity()
+ */
+@Slf4j
+public class ProcessedRssItemIndex {
+    private static final String FILE_NAME = "processed-rss-items.txt";
+    /**
+     * 条目在索引中保留的时间
+     */
+    static final Duration MAX_AGE = Duration.ofDays(365);
+    private final Path filePath;
+    private final Clock clock;
+    /**
+     * 标识 -> 处理时间
+     */
+    private final Map<String, Long> processedTimes = new ConcurrentHashMap<>();
+
+    public ProcessedRssItemIndex(Path dataDir) {
+        this(dataDir, Clock.systemUTC());
+    }
+
+    public ProcessedRssItemIndex(Path dataDir, Clock clock) {
+        Assert.notNull(dataDir, "'dataDir' must not null.");
+        Assert.notNull(clock, "'clock' must not null.");
+        this.filePath = dataDir.resolve(FILE_NAME);
+        this.clock = clock;
+        load();
+    }
+
+    public boolean contains(String identity) {
+        return identity != null && processedTimes.containsKey(identity);
+    }
+
+    public void add(String identity) {
+        if (identity == null) {
+            return;
+        }
+        addAll(List.of(identity));
+    }
+
+    /**
+     * 添加一个周期的所有条目，新条目只打开一次文件一起追加.
+     */
+    public void addAll(Collection<String> identities) {
+        if (identities == null || identities.isEmpty()) {
+            return;
+        }
+        long now = clock.millis();
+        List<String> newIdentities = new ArrayList<>();
+        for (String identity : identities) {
+            if (identity != null && processedTimes.putIfAbsent(identity, now) == null) {
+                newIdentities.add(identity);
+            }
+        }
+        if (!newIdentities.isEmpty()) {
+            append(now, newIdentities);
+        }
+    }
+
+    public int size() {
+        return processedTimes.size();
+    }
+
+    private void load() {
+        if (!Files.exists(filePath)) {
+            return;
+        }
+        try {
+            String content = Files.readString(filePath, StandardCharsets.UTF_8);
+            String[] lines = content.split("\n", -1);
+            // 最后一个元素是最后一个换行之后的内容，不为空时是写入中断的不完整的行
+            if (!lines[lines.length - 1].isBlank()) {
+                log.warn("drop incomplete last line of processed rss item index: {}",
+                    lines[lines.length - 1]);
+            }
+            long now = clock.millis();
+            long expiredBefore = now - MAX_AGE.toMillis();
+            int lineCount = 0;
+            int keptLineCount = 0;
+            for (int i = 0; i < lines.length - 1; i++) {
+                String line = lines[i].trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                lineCount++;
+                if (parseLine(line, now, expiredBefore)) {
+                    keptLineCount++;
+                }
+            }
+            log.debug("load processed rss item index size: {}", processedTimes.size());
+            // 有过期、重复、无效或者旧格式的行时重写文件
+            if (keptLineCount != lineCount || keptLineCount != processedTimes.size()
+                || !lines[lines.length - 1].isBlank()) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.warn("load processed rss item index fail, file path: {}", filePath, e);
+        }
+    }
+
+    /**
+     * @return 这一行是否原样保留，旧格式、无效以及过期的行为 false
+     */
+    private boolean parseLine(String line, long now, long expiredBefore) {
+        int index = line.indexOf('\t');
+        if (index < 0) {
+            // 旧版本只有标识，从现在开始计算保留时间
+            processedTimes.putIfAbsent(line, now);
+            return false;
+        }
+        String identity = line.substring(index + 1).trim();
+        long processedTime;
+        try {
+            processedTime = Long.parseLong(line.substring(0, index));
+        } catch (NumberFormatException e) {
+            log.warn("drop invalid line of processed rss item index: {}", line);
+            return false;
+        }
+        if (identity.isEmpty() || processedTime < expiredBefore) {
+            return false;
+        }
+        processedTimes.merge(identity, processedTime, Math::max);
+        return true;
+    }
+
+    /**
+     * 重写整个文件，先写临时文件再原子替换.
+     */
+    private synchronized void compact() {
+        try {
+            Path tmpPath = filePath.resolveSibling(FILE_NAME + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpPath,
+                StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : processedTimes.entrySet()) {
+                    writeLine(writer, entry.getValue(), entry.getKey());
+                }
+            }
+            Files.move(tmpPath, filePath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            log.debug("compact processed rss item index size: {}", processedTimes.size());
+        } catch (IOException e) {
+            log.warn("compact processed rss item index fail, file path: {}", filePath, e);
+        }
+    }
+
+    private synchronized void append(long processedTime, List<String> identities) {
+        try {
+            Files.createDirectories(filePath.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String identity : identities) {
+                    writeLine(writer, processedTime, identity);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("append processed rss item index fail, identities size: {}",
+                identities.size(), e);
+        }
+    }
+
+    private static void writeLine(BufferedWriter writer, long processedTime, String identity)
+        throws IOException {
+        writer.write(Long.toString(processedTime));
+        writer.write('\t');
+        writer.write(identity);
+        writer.write('\n');
+    }
+}
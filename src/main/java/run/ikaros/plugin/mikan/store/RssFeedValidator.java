@@ -0,0 +1,26 @@
+package run.ikaros.plugin.mikan.store;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+/**
+ * 订阅链接上一次响应的缓存校验信息.
+ *
+ * @link <a href="https://developer.mozilla.org/en-US/docs/Web/HTTP/Conditional_requests">HTTP conditional requests</a>
+ */
+@Data
+public class RssFeedValidator {
+    /**
+     * 响应头 ETag，请求时作为 If-None-Match 发送
+     */
+    private String etag;
+    /**
+     * 响应头 Last-Modified，请求时作为 If-Modified-Since 发送
+     */
+    private String lastModified;
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return etag == null && lastModified == null;
+    }
+}
@@ -0,0 +1,38 @@
+package run.ikaros.plugin.mikan.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * 按订阅链接持久化 ETag / Last-Modified，插件重启后条件请求依然生效.
+ */
+public class RssFeedValidatorStore {
+    private static final String FILE_NAME = "rss-feed-validators.json";
+    private final JsonFileStore<RssFeedValidator> validators;
+
+    public RssFeedValidatorStore(Path dataDir) {
+        Assert.notNull(dataDir, "'dataDir' must not null.");
+        this.validators = new JsonFileStore<>(dataDir.resolve(FILE_NAME),
+            new TypeReference<Map<String, RssFeedValidator>>() {
+            });
+    }
+
+    @Nullable
+    public RssFeedValidator get(String url) {
+        return validators.get(url);
+    }
+
+    public void put(String url, RssFeedValidator validator) {
+        Assert.hasText(url, "'url' must has text.");
+        Assert.notNull(validator, "'validator' must not null.");
+        if (validator.isEmpty()) {
+            validators.remove(url);
+            return;
+        }
+        validators.put(url, validator);
+    }
+}
@@ -0,0 +1,129 @@
+package run.ikaros.plugin.mikan.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import run.ikaros.plugin.mikan.utils.ByteBufferInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 订阅链接响应的压缩归档，按时间保留多份，总大小超过上限时删除最旧的归档.
+ * <br/>
+ * 用于离线回放：从内存映射的归档文件解析，测量解析和处理流程的吞吐，不需要访问网络.
+ */
+@Slf4j
+public class RssSnapshotArchive {
+    private static final String DIR_NAME = "rss-archive";
+    private static final String SUFFIX = ".xml.gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final Path archiveDir;
+    /**
+     * 归档文件名中的时间
+     */
+    private final Clock clock;
+
+    public RssSnapshotArchive(Path dataDir) {
+        this(dataDir, Clock.systemUTC());
+    }
+
+    public RssSnapshotArchive(Path dataDir, Clock clock) {
+        Assert.notNull(dataDir, "'dataDir' must not null.");
+        Assert.notNull(clock, "'clock' must not null.");
+        this.archiveDir = dataDir.resolve(DIR_NAME);
+        this.clock = clock;
+    }
+
+    public Path getArchiveDir() {
+        return archiveDir;
+    }
+
+    /**
+     * 打开一份新归档的输出流，写入时 gzip 压缩，提交时移动到归档目录并按上限清理旧归档，
+     * 没有提交时丢弃.
+     *
+     * @param url      订阅链接
+     * @param maxBytes 归档目录的总大小上限
+     */
+    public SnapshotOutputStream openSnapshot(String url, long maxBytes) throws IOException {
+        Assert.hasText(url, "'url' must has text.");
+        Files.createDirectories(archiveDir);
+        String urlHash = DigestUtils.md5DigestAsHex(url.getBytes(StandardCharsets.UTF_8));
+        Path snapshotPath = archiveDir.resolve(clock.millis() + "-" + urlHash + SUFFIX);
+        Path tmpPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        return new SnapshotOutputStream(new GZIPOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(tmpPath), BUFFER_SIZE), BUFFER_SIZE),
+            tmpPath, snapshotPath, path -> {
+                log.debug("archive rss snapshot for url: {}, path: {}", url, path);
+                trim(maxBytes);
+            });
+    }
+
+    /**
+     * @return 所有归档，从旧到新
+     */
+    public List<Path> listSnapshots() throws IOException {
+        if (!Files.isDirectory(archiveDir)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(archiveDir)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                .sorted(Comparator.comparingLong(RssSnapshotArchive::getArchiveTime)
+                    .thenComparing(Path::getFileName))
+                .toList();
+        }
+    }
+
+    /**
+     * 以内存映射的方式打开归档，返回解压后的输入流.
+     */
+    public InputStream openReplay(Path snapshotPath) throws IOException {
+        Assert.notNull(snapshotPath, "'snapshotPath' must not null.");
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            // 关闭通道后映射依然有效
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new GZIPInputStream(new ByteBufferInputStream(buffer), BUFFER_SIZE);
+    }
+
+    private synchronized void trim(long maxBytes) throws IOException {
+        List<Path> snapshots = new ArrayList<>(listSnapshots());
+        long totalBytes = 0;
+        for (Path snapshot : snapshots) {
+            totalBytes += Files.size(snapshot);
+        }
+        // 至少保留最新的一份
+        while (totalBytes > maxBytes && snapshots.size() > 1) {
+            Path oldest = snapshots.remove(0);
+            totalBytes -= Files.size(oldest);
+            Files.deleteIfExists(oldest);
+            log.debug("delete oldest rss snapshot archive: {}", oldest);
+        }
+    }
+
+    private static long getArchiveTime(Path path) {
+        String fileName = path.getFileName().toString();
+        int index = fileName.indexOf('-');
+        try {
+            return Long.parseLong(index < 0 ? fileName : fileName.substring(0, index));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
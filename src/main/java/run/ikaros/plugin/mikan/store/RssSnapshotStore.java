@@ -0,0 +1,41 @@
+package run.ikaros.plugin.mikan.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 订阅链接的响应快照，用于调试，只保留每个订阅链接最近一次的内容.
+ */
+@Slf4j
+public class RssSnapshotStore {
+    private static final String DIR_NAME = "rss-snapshots";
+    private final Path snapshotDir;
+
+    public RssSnapshotStore(Path dataDir) {
+        Assert.notNull(dataDir, "'dataDir' must not null.");
+        this.snapshotDir = dataDir.resolve(DIR_NAME);
+    }
+
+    public Path getLastSnapshotPath(String url) {
+        Assert.hasText(url, "'url' must has text.");
+        String urlHash = DigestUtils.md5DigestAsHex(url.getBytes(StandardCharsets.UTF_8));
+        return snapshotDir.resolve("last-" + urlHash + ".xml");
+    }
+
+    /**
+     * 打开最近一次快照的输出流，先写入临时文件，提交时替换原快照，没有提交时丢弃.
+     */
+    public SnapshotOutputStream openLastSnapshot(String url) throws IOException {
+        Files.createDirectories(snapshotDir);
+        Path snapshotPath = getLastSnapshotPath(url);
+        Path tmpPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        return new SnapshotOutputStream(Files.newOutputStream(tmpPath), tmpPath, snapshotPath,
+            path -> log.debug("save rss snapshot for url: {}, path: {}", url, path));
+    }
+}
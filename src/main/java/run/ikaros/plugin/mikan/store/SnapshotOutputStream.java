@@ -0,0 +1,75 @@
+package run.ikaros.plugin.mikan.store;
+
+import org.springframework.util.Assert;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 先写入临时文件的快照输出流，调用 {@link #commit()} 后才移动到目标位置.
+ * <br/>
+ * 没有提交就关闭时删除临时文件，读取中断或者解析失败的内容不会留下快照，也不会覆盖已有的快照.
+ */
+public class SnapshotOutputStream extends FilterOutputStream {
+    private final Path tmpPath;
+    private final Path targetPath;
+    private final CommitListener commitListener;
+    private boolean closed;
+
+    SnapshotOutputStream(OutputStream out, Path tmpPath, Path targetPath,
+                         CommitListener commitListener) {
+        super(out);
+        Assert.notNull(tmpPath, "'tmpPath' must not null.");
+        Assert.notNull(targetPath, "'targetPath' must not null.");
+        Assert.notNull(commitListener, "'commitListener' must not null.");
+        this.tmpPath = tmpPath;
+        this.targetPath = targetPath;
+        this.commitListener = commitListener;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    /**
+     * 关闭输出流并把临时文件移动到目标位置.
+     */
+    public void commit() throws IOException {
+        Assert.state(!closed, "snapshot is closed.");
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpPath);
+            throw e;
+        }
+        Files.move(tmpPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        commitListener.onCommit(targetPath);
+    }
+
+    /**
+     * 没有提交时丢弃临时文件，已经提交时什么也不做.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+    }
+
+    @FunctionalInterface
+    interface CommitListener {
+        void onCommit(Path targetPath) throws IOException;
+    }
+}
@@ -0,0 +1,155 @@
+package run.ikaros.plugin.mikan.torrent;
+
+import org.springframework.util.Assert;
+import run.ikaros.plugin.mikan.exception.TorrentParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最小的 bencode 解码器，用于解析 .torrent 文件.
+ * <br/>
+ * 解码结果：整数为 {@link Long}，字符串为 byte[]，列表为 {@link List}，
+ * 字典为 key 按 UTF-8 解码的 {@link LinkedHashMap}.
+ * 同时记录顶层 info 字典在原始字节中的位置，用于计算 info-hash.
+ *
+ * @link <a href="https://www.bittorrent.org/beps/bep_0003.html#bencoding">BEP 3 bencoding</a>
+ */
+public class BencodeDecoder {
+    private static final int MAX_DEPTH = 64;
+    private static final String INFO_KEY = "info";
+    private final byte[] data;
+    private int position;
+    private int infoStart = -1;
+    private int infoEnd = -1;
+
+    public BencodeDecoder(byte[] data) {
+        Assert.notNull(data, "'data' must not null.");
+        this.data = data;
+    }
+
+    /**
+     * 解码整个字节数组，只能包含一个 bencode 值.
+     */
+    public Object decode() {
+        position = 0;
+        Object value = readValue(0);
+        if (position != data.length) {
+            throw new TorrentParseException("unexpected trailing data at " + position);
+        }
+        return value;
+    }
+
+    /**
+     * @return 顶层 info 字典的起始位置(包含)，没有时为 -1
+     */
+    public int getInfoStart() {
+        return infoStart;
+    }
+
+    /**
+     * @return 顶层 info 字典的结束位置(不包含)，没有时为 -1
+     */
+    public int getInfoEnd() {
+        return infoEnd;
+    }
+
+    private Object readValue(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new TorrentParseException("bencode nesting too deep at " + position);
+        }
+        byte b = peek();
+        if (b == 'i') {
+            return readLong();
+        }
+        if (b == 'l') {
+            return readList(depth);
+        }
+        if (b == 'd') {
+            return readDictionary(depth);
+        }
+        if (b >= '0' && b <= '9') {
+            return readBytes();
+        }
+        throw new TorrentParseException("unexpected bencode token '" + (char) b
+            + "' at " + position);
+    }
+
+    private Long readLong() {
+        position++;
+        int end = indexOf('e');
+        String text = new String(data, position, end - position, StandardCharsets.US_ASCII);
+        try {
+            long value = Long.parseLong(text);
+            position = end + 1;
+            return value;
+        } catch (NumberFormatException e) {
+            throw new TorrentParseException("invalid bencode integer at " + position, e);
+        }
+    }
+
+    private byte[] readBytes() {
+        int colon = indexOf(':');
+        long length;
+        try {
+            length = Long.parseLong(
+                new String(data, position, colon - position, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new TorrentParseException("invalid bencode string length at " + position, e);
+        }
+        int start = colon + 1;
+        if (length < 0 || start + length > data.length) {
+            throw new TorrentParseException("bencode string out of range at " + position);
+        }
+        byte[] bytes = new byte[(int) length];
+        System.arraycopy(data, start, bytes, 0, bytes.length);
+        position = start + bytes.length;
+        return bytes;
+    }
+
+    private List<Object> readList(int depth) {
+        position++;
+        List<Object> list = new ArrayList<>();
+        while (peek() != 'e') {
+            list.add(readValue(depth + 1));
+        }
+        position++;
+        return list;
+    }
+
+    private Map<String, Object> readDictionary(int depth) {
+        position++;
+        Map<String, Object> map = new LinkedHashMap<>();
+        while (peek() != 'e') {
+            String key = new String(readBytes(), StandardCharsets.UTF_8);
+            int valueStart = position;
+            Object value = readValue(depth + 1);
+            if (depth == 0 && INFO_KEY.equals(key)) {
+                infoStart = valueStart;
+                infoEnd = position;
+            }
+            map.put(key, value);
+        }
+        position++;
+        return map;
+    }
+
+    private byte peek() {
+        if (position >= data.length) {
+            throw new TorrentParseException("unexpected end of bencode data");
+        }
+        return data[position];
+    }
+
+    private int indexOf(char c) {
+        for (int i = position; i < data.length; i++) {
+            if (data[i] == c) {
+                return i;
+            }
+        }
+        throw new TorrentParseException("missing '" + c + "' after " + position);
+    }
+}
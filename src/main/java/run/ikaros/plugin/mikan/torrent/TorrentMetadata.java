@@ -0,0 +1,131 @@
+package run.ikaros.plugin.mikan.torrent;
+
+import org.springframework.util.Assert;
+import run.ikaros.plugin.mikan.exception.TorrentParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * .torrent 文件的元数据，包含 info-hash 和文件列表.
+ *
+ * @link <a href="https://www.bittorrent.org/beps/bep_0003.html#metainfo-files">BEP 3 metainfo files</a>
+ */
+public class TorrentMetadata {
+    private final byte[] bytes;
+    private final String infoHash;
+    private final String name;
+    private final List<TorrentFileEntry> files;
+
+    private TorrentMetadata(byte[] bytes, String infoHash, String name,
+                            List<TorrentFileEntry> files) {
+        this.bytes = bytes;
+        this.infoHash = infoHash;
+        this.name = name;
+        this.files = files;
+    }
+
+    /**
+     * 解析 .torrent 文件内容.
+     *
+     * @param bytes .torrent 文件内容
+     * @return 元数据
+     * @throws TorrentParseException 不是合法的 .torrent 文件时
+     */
+    @SuppressWarnings("unchecked")
+    public static TorrentMetadata parse(byte[] bytes) {
+        Assert.notNull(bytes, "'bytes' must not null.");
+        BencodeDecoder decoder = new BencodeDecoder(bytes);
+        if (!(decoder.decode() instanceof Map<?, ?> root)
+            || !(root.get("info") instanceof Map<?, ?> info)) {
+            throw new TorrentParseException("torrent has no info dictionary");
+        }
+        String infoHash = sha1Hex(bytes, decoder.getInfoStart(), decoder.getInfoEnd());
+        String name = getString((Map<String, Object>) info, "name");
+
+        List<TorrentFileEntry> files = new ArrayList<>();
+        if (info.get("files") instanceof List<?> fileList) {
+            // 多文件种子
+            for (Object o : fileList) {
+                if (!(o instanceof Map<?, ?> file)) {
+                    continue;
+                }
+                Object pathObj = file.containsKey("path.utf-8")
+                    ? file.get("path.utf-8") : file.get("path");
+                List<String> segments = new ArrayList<>();
+                if (pathObj instanceof List<?> pathList) {
+                    for (Object segment : pathList) {
+                        if (segment instanceof byte[] segmentBytes) {
+                            segments.add(new String(segmentBytes, StandardCharsets.UTF_8));
+                        }
+                    }
+                }
+                files.add(new TorrentFileEntry(String.join("/", segments),
+                    getLong((Map<String, Object>) file, "length")));
+            }
+        } else {
+            files.add(new TorrentFileEntry(name, getLong((Map<String, Object>) info, "length")));
+        }
+        return new TorrentMetadata(bytes, infoHash, name, List.copyOf(files));
+    }
+
+    private static String getString(Map<String, Object> map, String key) {
+        Object value = map.containsKey(key + ".utf-8") ? map.get(key + ".utf-8") : map.get(key);
+        return value instanceof byte[] valueBytes
+            ? new String(valueBytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static long getLong(Map<String, Object> map, String key) {
+        return map.get(key) instanceof Long value ? value : 0L;
+    }
+
+    private static String sha1Hex(byte[] bytes, int start, int end) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            messageDigest.update(bytes, start, end - start);
+            return HexFormat.of().formatHex(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return .torrent 文件原始内容
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return v1 info-hash，小写十六进制
+     */
+    public String getInfoHash() {
+        return infoHash;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<TorrentFileEntry> getFiles() {
+        return files;
+    }
+
+    public long getTotalLength() {
+        return files.stream().mapToLong(TorrentFileEntry::length).sum();
+    }
+
+    /**
+     * 种子中的单个文件.
+     *
+     * @param path   多文件种子中相对种子根目录的路径，单文件种子中为文件名
+     * @param length 文件大小(bytes)
+     */
+    public record TorrentFileEntry(String path, long length) {
+    }
+}
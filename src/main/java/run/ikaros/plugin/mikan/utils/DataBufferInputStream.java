@@ -0,0 +1,99 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.Assert;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * 把响应体的 {@link DataBuffer} 流转换为阻塞读取的输入流，最多预取 prefetch 个缓冲区，
+ * 内存占用和响应体的大小无关.
+ * <br/>
+ * 只能在允许阻塞的线程(例如 boundedElastic)中创建和读取，关闭时取消还没有读取的响应体.
+ */
+public class DataBufferInputStream extends InputStream {
+    private final Stream<DataBuffer> buffers;
+    private final Iterator<DataBuffer> iterator;
+    private DataBuffer current;
+    private boolean closed;
+
+    public DataBufferInputStream(Flux<DataBuffer> body, int prefetch) {
+        Assert.notNull(body, "'body' must not null.");
+        Assert.isTrue(prefetch > 0, "'prefetch' must be positive.");
+        this.buffers = body
+            .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+            .toStream(prefetch);
+        this.iterator = buffers.iterator();
+    }
+
+    @Override
+    public int read() throws IOException {
+        DataBuffer buffer = nextBuffer();
+        return buffer == null ? -1 : buffer.read() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        DataBuffer buffer = nextBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.readableByteCount());
+        buffer.read(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.readableByteCount();
+    }
+
+    /**
+     * @return 还有可读字节的缓冲区，响应体结束时为 null
+     */
+    private DataBuffer nextBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        while (current == null || current.readableByteCount() == 0) {
+            releaseCurrent();
+            try {
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                current = iterator.next();
+            } catch (RuntimeException e) {
+                throw new IOException("read response body fail", Exceptions.unwrap(e));
+            }
+        }
+        return current;
+    }
+
+    private void releaseCurrent() {
+        if (current != null) {
+            DataBufferUtils.release(current);
+            current = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        releaseCurrent();
+        buffers.close();
+    }
+}
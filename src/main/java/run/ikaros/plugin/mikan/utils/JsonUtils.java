@@ -4,7 +4,9 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -83,6 +85,55 @@ public class JsonUtils {
         return null;
     }
 
+    /**
+     * 获取指定类型的 ObjectReader，ObjectReader 是线程安全的，应当缓存起来重复使用.
+     *
+     * @param clazz 对象字节码
+     * @return 使用相同配置的 ObjectReader
+     */
+    public static ObjectReader readerFor(Class<?> clazz) {
+        Assert.notNull(clazz, "'clazz' must not be null");
+        return objectMapper.readerFor(clazz);
+    }
+
+    /**
+     * 转换JSON树为对象，不经过字符串.
+     *
+     * @param node  json树
+     * @param clazz 对象字节码
+     * @param <T>   对象类型
+     * @return 对象实例
+     */
+    public static <T> T node2obj(JsonNode node, Class<T> clazz) {
+        Assert.notNull(clazz, "'clazz' must not be null");
+        Assert.notNull(node, "'node' must not be null");
+        try {
+            return objectMapper.treeToValue(node, clazz);
+        } catch (JsonProcessingException e) {
+            logger.error("convert json node to obj fail. ", e);
+        }
+        return null;
+    }
+
+    /**
+     * 转换JSON为泛型对象.
+     *
+     * @param json          json字符串
+     * @param typeReference 对象类型引用
+     * @param <T>           对象类型
+     * @return 对象实例，解析失败时为 null
+     */
+    public static <T> T json2obj(String json, TypeReference<T> typeReference) {
+        Assert.notNull(typeReference, "'typeReference' must not be null");
+        Assert.notNull(json, "'json' must not be null");
+        try {
+            return objectMapper.readValue(json, typeReference);
+        } catch (JsonProcessingException e) {
+            logger.error("convert json to obj fail, type: {}", typeReference.getType(), e);
+        }
+        return null;
+    }
+
     /**
      * 转换JSON为对象数组.
      *
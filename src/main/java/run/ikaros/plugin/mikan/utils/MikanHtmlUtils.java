@@ -0,0 +1,257 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import org.jsoup.select.Elements;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 蜜柑页面的流式提取，边读边查找目标元素，不构建完整的 DOM 树.
+ * <br/>
+ * 只查找 #sk-container 之内的内容，结果和 Jsoup 完整解析一致：番剧链接取第一个，找到后立即停止读取；
+ * bgm.tv 链接取最后一个，读取到 #sk-container 结束为止.
+ * 只保留最近一段窗口的内容，内存占用和页面大小无关.
+ * 没有找到时返回 null，由调用方回退到 Jsoup 完整解析.
+ *
+ * @see #parseBangumiTitleHref(String)
+ * @see #parseBgmTvSubjectHref(String)
+ */
+public class MikanHtmlUtils {
+    private static final int CHUNK_SIZE = 8 * 1024;
+    /**
+     * 窗口内保留的字符数，需要大于目标元素开始标签到链接结束的长度
+     */
+    private static final int WINDOW_SIZE = 4 * 1024;
+    /**
+     * 页面主体 div#sk-container 的开始标签
+     */
+    private static final Pattern SCOPE_PATTERN = Pattern.compile(
+        "<div\\b[^>]*?\\bid=\"sk-container\"[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DIV_TAG_PATTERN = Pattern.compile(
+        "<(/?)div\\b", Pattern.CASE_INSENSITIVE);
+    /**
+     * "</div" 的长度，窗口末尾这么多字符内可能有不完整的标签，下次追加后再扫描
+     */
+    private static final int DIV_TAG_LENGTH = 5;
+    /**
+     * 剧集页面中番剧的链接，对应 #sk-container .bangumi-title a
+     */
+    private static final Pattern BANGUMI_TITLE_HREF_PATTERN = Pattern.compile(
+        "class=\"[^\"]*\\bbangumi-title\\b[^\"]*\"[^>]*>[^<]*<a\\b[^>]*?\\bhref=\"([^\"]*)\"",
+        Pattern.CASE_INSENSITIVE);
+    /**
+     * 番剧页面中 bgm.tv 的链接，对应文本包含 Bangumi 的 #sk-container .bangumi-info 中的 a
+     */
+    private static final Pattern BGM_TV_SUBJECT_HREF_PATTERN = Pattern.compile(
+        "class=\"[^\"]*\\bbangumi-info\\b[^\"]*\"[^>]*>[^<]*Bangumi[^<]*"
+            + "<a\\b[^>]*?\\bhref=\"([^\"]*)\"",
+        Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 从蜜柑剧集页面中提取番剧页面的相对链接.
+     *
+     * @param inputStream 页面内容，UTF-8 编码，由调用方负责关闭
+     * @return 番剧页面的相对链接，例如 /Home/Bangumi/3060#583，没有找到时为 null
+     */
+    public static String extractBangumiTitleHref(InputStream inputStream) throws IOException {
+        return extract(inputStream, newBangumiTitleHrefExtractor());
+    }
+
+    /**
+     * 从蜜柑番剧页面中提取 bgm.tv 条目链接.
+     *
+     * @param inputStream 页面内容，UTF-8 编码，由调用方负责关闭
+     * @return bgm.tv 条目链接，没有找到时为 null
+     */
+    public static String extractBgmTvSubjectHref(InputStream inputStream) throws IOException {
+        return extract(inputStream, newBgmTvSubjectHrefExtractor());
+    }
+
+    /**
+     * 使用 Jsoup 完整解析剧集页面，提取番剧页面的相对链接.
+     *
+     * @param html 页面内容
+     * @return 番剧页面的相对链接，没有找到时为 null
+     */
+    public static String parseBangumiTitleHref(String html) {
+        Assert.notNull(html, "'html' must not null.");
+        Document document = Jsoup.parse(html);
+        Element element = document.selectFirst("#sk-container .bangumi-title a");
+        return element == null ? null : element.attr("href");
+    }
+
+    /**
+     * 使用 Jsoup 完整解析番剧页面，提取 bgm.tv 条目链接.
+     *
+     * @param html 页面内容
+     * @return bgm.tv 条目链接，没有找到时为 null
+     */
+    public static String parseBgmTvSubjectHref(String html) {
+        Assert.notNull(html, "'html' must not null.");
+        Document document = Jsoup.parse(html);
+        Elements elements = document.select("#sk-container .bangumi-info");
+        Element targetElement = null;
+        for (Element element : elements) {
+            List<TextNode> textNodes = element.textNodes();
+            if (textNodes.isEmpty()) {
+                continue;
+            }
+            TextNode textNode = textNodes.get(0);
+            String val = textNode.text();
+            if (val.contains("Bangumi")) {
+                targetElement = element.selectFirst("a");
+            }
+        }
+        return targetElement == null ? null : targetElement.attr("href");
+    }
+
+    /**
+     * @return 按片段追加页面内容的剧集页面番剧链接提取器，取第一个匹配
+     */
+    public static HrefExtractor newBangumiTitleHrefExtractor() {
+        return new HrefExtractor(BANGUMI_TITLE_HREF_PATTERN, false);
+    }
+
+    /**
+     * @return 按片段追加页面内容的番剧页面 bgm.tv 条目链接提取器，取最后一个匹配
+     */
+    public static HrefExtractor newBgmTvSubjectHrefExtractor() {
+        return new HrefExtractor(BGM_TV_SUBJECT_HREF_PATTERN, true);
+    }
+
+    static String extract(InputStream inputStream, HrefExtractor extractor) throws IOException {
+        Assert.notNull(inputStream, "'inputStream' must not null.");
+        Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        char[] chunk = new char[CHUNK_SIZE];
+        int len;
+        while ((len = reader.read(chunk)) != -1) {
+            String href = extractor.append(chunk, 0, len);
+            if (href != null) {
+                return href;
+            }
+        }
+        return extractor.finish();
+    }
+
+    /**
+     * 增量提取器，每次追加一段页面内容后在窗口内查找，适用于按片段到达的响应体.
+     * <br/>
+     * 通过 div 标签的层级判断 #sk-container 的结束位置，不处理注释和脚本中的 div.
+     * 非线程安全，每个页面使用一个实例.
+     */
+    public static final class HrefExtractor {
+        private final Pattern pattern;
+        private final boolean lastMatch;
+        private final StringBuilder window = new StringBuilder(WINDOW_SIZE + CHUNK_SIZE);
+        private boolean inScope;
+        private boolean scopeEnded;
+        /**
+         * #sk-container 之内 div 的层级
+         */
+        private int depth;
+        /**
+         * 窗口中已经扫描过 div 标签的位置
+         */
+        private int scanned;
+        private String href;
+
+        private HrefExtractor(Pattern pattern, boolean lastMatch) {
+            this.pattern = pattern;
+            this.lastMatch = lastMatch;
+        }
+
+        /**
+         * @param content 页面的下一段内容
+         * @return 确定的链接，还需要继续读取或者没有找到时为 null
+         */
+        public String append(CharSequence content) {
+            Assert.notNull(content, "'content' must not null.");
+            window.append(content);
+            return find();
+        }
+
+        String append(char[] chunk, int offset, int len) {
+            window.append(chunk, offset, len);
+            return find();
+        }
+
+        /**
+         * 页面读取结束时调用.
+         *
+         * @return 找到的链接，没有找到时为 null
+         */
+        public String finish() {
+            return href;
+        }
+
+        private String find() {
+            if (scopeEnded) {
+                return href;
+            }
+            if (!inScope) {
+                Matcher scope = SCOPE_PATTERN.matcher(window);
+                if (!scope.find()) {
+                    trim(window.length() - WINDOW_SIZE);
+                    return null;
+                }
+                inScope = true;
+                depth = 1;
+                window.delete(0, scope.end());
+                scanned = 0;
+            }
+            int limit = scanScopeEnd();
+            Matcher matcher = pattern.matcher(window).region(0, limit);
+            int matchEnd = 0;
+            while (matcher.find()) {
+                href = Parser.unescapeEntities(matcher.group(1), true);
+                if (!lastMatch) {
+                    scopeEnded = true;
+                    return href;
+                }
+                matchEnd = matcher.end();
+            }
+            if (scopeEnded) {
+                return href;
+            }
+            // 已经匹配过的内容不再保留，避免下次重复匹配
+            trim(Math.max(Math.min(matchEnd, scanned), window.length() - WINDOW_SIZE));
+            return null;
+        }
+
+        /**
+         * @return #sk-container 结束的位置，还没有结束时为窗口的长度
+         */
+        private int scanScopeEnd() {
+            Matcher tag = DIV_TAG_PATTERN.matcher(window).region(scanned, window.length());
+            while (tag.find()) {
+                depth += tag.group(1).isEmpty() ? 1 : -1;
+                scanned = tag.end();
+                if (depth == 0) {
+                    scopeEnded = true;
+                    return tag.start();
+                }
+            }
+            scanned = Math.max(scanned, window.length() - DIV_TAG_LENGTH);
+            return window.length();
+        }
+
+        private void trim(int count) {
+            if (count > 0) {
+                window.delete(0, count);
+                scanned = Math.max(0, scanned - count);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 合并同一个 key 的并发请求：请求进行中时，其他调用方共享同一个请求和结果，
+ * 请求结束(成功或失败)后移除，下一次调用重新发起请求.
+ *
+ * @param <K> key 类型，例如请求的 URL
+ * @param <V> 结果类型
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param key      请求的 key
+     * @param supplier 没有进行中的请求时用于发起请求
+     * @return 共享的请求结果
+     */
+    public Mono<V> execute(K key, Supplier<Mono<V>> supplier) {
+        Assert.notNull(key, "'key' must not null.");
+        Assert.notNull(supplier, "'supplier' must not null.");
+        return Mono.defer(() -> inFlight.computeIfAbsent(key, k -> {
+            // 同一时刻每个 key 只有一个请求，结束后直接按 key 移除
+            return supplier.get()
+                .doFinally(signalType -> inFlight.remove(k))
+                .cache();
+        }));
+    }
+
+    /**
+     * @return 进行中的请求数量
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,68 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.springframework.util.Assert;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 读取的同时把读到的字节写入另一个输出流，关闭时两个流都会关闭.
+ */
+public class TeeInputStream extends FilterInputStream {
+    private final OutputStream branch;
+
+    public TeeInputStream(InputStream in, OutputStream branch) {
+        super(in);
+        Assert.notNull(branch, "'branch' must not null.");
+        this.branch = branch;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            branch.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            branch.write(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 跳过的字节也需要写入分支流
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int len = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (len == -1) {
+                break;
+            }
+            skipped += len;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            branch.close();
+        }
+    }
+}
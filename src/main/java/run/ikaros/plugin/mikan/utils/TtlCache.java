@@ -0,0 +1,108 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 带过期时间的内存缓存，null 结果(例如搜索没有结果)也会缓存，使用单独的过期时间.
+ * <br/>
+ * 加载时抛出异常不会缓存. 条目数超过上限时先清理过期条目，仍然超过时清理最早过期的条目.
+ *
+ * @param <K> key 类型
+ * @param <V> value 类型
+ */
+public class TtlCache<K, V> {
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final int maxSize;
+
+    /**
+     * @param ttl         非 null 结果的过期时间
+     * @param negativeTtl null 结果的过期时间
+     * @param maxSize     条目数上限
+     */
+    public TtlCache(Duration ttl, Duration negativeTtl, int maxSize) {
+        Assert.notNull(ttl, "'ttl' must not null.");
+        Assert.notNull(negativeTtl, "'negativeTtl' must not null.");
+        Assert.isTrue(maxSize > 0, "'maxSize' must be positive.");
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取缓存，不存在或已过期时使用 loader 加载.
+     */
+    public V get(K key, Function<K, V> loader) {
+        Assert.notNull(key, "'key' must not null.");
+        Assert.notNull(loader, "'loader' must not null.");
+        long now = System.nanoTime();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.isExpired(now)) {
+            return entry.value();
+        }
+        V value = loader.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * 异步获取缓存，不存在或已过期时订阅 loader 加载，loader 没有结果(empty)时按 null 结果缓存.
+     */
+    public Mono<V> getAsync(K key, Function<K, Mono<V>> loader) {
+        Assert.notNull(key, "'key' must not null.");
+        Assert.notNull(loader, "'loader' must not null.");
+        return Mono.defer(() -> {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && !entry.isExpired(System.nanoTime())) {
+                return Mono.justOrEmpty(entry.value());
+            }
+            return loader.apply(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .doOnNext(value -> put(key, value.orElse(null)))
+                .flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    private void put(K key, V value) {
+        long expireAtNanos = System.nanoTime()
+            + (value == null ? negativeTtl : ttl).toNanos();
+        entries.put(key, new Entry<>(value, expireAtNanos));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private synchronized void evict() {
+        long now = System.nanoTime();
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now));
+        while (entries.size() > maxSize) {
+            entries.entrySet().stream()
+                .min((a, b) -> Long.compare(a.getValue().expireAtNanos(),
+                    b.getValue().expireAtNanos()))
+                .ifPresent(e -> entries.remove(e.getKey(), e.getValue()));
+        }
+    }
+
+    private record Entry<V>(V value, long expireAtNanos) {
+        boolean isExpired(long now) {
+            return now - expireAtNanos >= 0;
+        }
+    }
+}
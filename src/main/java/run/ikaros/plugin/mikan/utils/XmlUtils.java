@@ -5,16 +5,21 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
-import run.ikaros.api.infra.utils.SystemVarUtils;
+import reactor.core.publisher.Flux;
 import run.ikaros.plugin.mikan.MikanRssItem;
 import run.ikaros.plugin.mikan.exception.RssOperateException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -22,42 +27,191 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.*;
-import java.net.Proxy;
-import java.net.URL;
-import java.net.URLConnection;
-import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class XmlUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(XmlUtils.class);
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+    /**
+     * 蜜柑的种子链接以 info-hash 结尾，例如 /Download/20230723/{info-hash}.torrent
+     */
+    private static final Pattern TORRENT_URL_INFO_HASH_PATTERN =
+        Pattern.compile("/([0-9a-fA-F]{40})\\.torrent$");
+    /**
+     * 番剧的订阅链接或番剧页面链接中的番剧 id，
+     * 例如 /RSS/Bangumi?bangumiId=3060&subgroupid=583 或者 /Home/Bangumi/3060
+     */
+    private static final Pattern BANGUMI_ID_PATTERN =
+        Pattern.compile("(?:[?&]bangumiId=|/Home/Bangumi/)(\\d+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SUBGROUP_ID_PATTERN =
+        Pattern.compile("[?&]subgroupid=(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
 
-    public static List<MikanRssItem> parseMikanRssXmlFile(String filePath) {
-        Assert.hasText(filePath, "'filePath' must has text.");
+    /**
+     * 使用 StAX 流式解析蜜柑 RSS，每读完一个 item 立即发出，不构建完整的 DOM 树.
+     *
+     * @param inputStream RSS XML 输入流，由调用方负责关闭
+     * @return 按 RSS 中的顺序发出的条目
+     */
+    public static Flux<MikanRssItem> parseMikanRssXmlStream(InputStream inputStream) {
+        Assert.notNull(inputStream, "'inputStream' must not null.");
+        return Flux.generate(
+            () -> new RssStreamState(XML_INPUT_FACTORY.createXMLStreamReader(inputStream)),
+            (state, sink) -> {
+                try {
+                    MikanRssItem mikanRssItem = nextItem(state);
+                    if (mikanRssItem == null) {
+                        sink.complete();
+                    } else {
+                        sink.next(mikanRssItem);
+                    }
+                } catch (XMLStreamException exception) {
+                    sink.error(new RssOperateException("parse xml stream fail", exception));
+                }
+                return state;
+            },
+            state -> {
+                try {
+                    state.reader.close();
+                } catch (XMLStreamException exception) {
+                    LOGGER.warn("close xml stream reader fail", exception);
+                }
+            });
+    }
+
+    /**
+     * 流式解析的状态，channel 的链接在所有 item 之前.
+     */
+    private static final class RssStreamState {
+        private final XMLStreamReader reader;
+        private String channelLink;
+
+        private RssStreamState(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+    }
+
+    private static MikanRssItem nextItem(RssStreamState state) throws XMLStreamException {
+        XMLStreamReader reader = state.reader;
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String nodeName = reader.getLocalName();
+            if ("item".equalsIgnoreCase(nodeName)) {
+                MikanRssItem mikanRssItem = readItem(reader);
+                fillBangumiIds(mikanRssItem, state.channelLink);
+                return mikanRssItem;
+            }
+            if ("link".equalsIgnoreCase(nodeName) && state.channelLink == null) {
+                state.channelLink = reader.getElementText();
+            }
+        }
+        return null;
+    }
+
+    private static MikanRssItem readItem(XMLStreamReader reader) throws XMLStreamException {
+        MikanRssItem mikanRssItem = new MikanRssItem();
+        // 和 DOM 解析保持一致，只处理 item 的直接子节点以及 torrent 节点的子节点
+        int depth = 1;
+        boolean inTorrent = false;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if (depth == 1) {
+                    inTorrent = false;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            depth++;
+            String nodeName = reader.getLocalName();
+            if (depth == 3 && inTorrent) {
+                if ("pubDate".equalsIgnoreCase(nodeName)) {
+                    mikanRssItem.setPubDate(parsePubDate(reader.getElementText()));
+                    depth--;
+                } else if ("contentLength".equalsIgnoreCase(nodeName)
+                    && mikanRssItem.getContentLength() == null) {
+                    mikanRssItem.setContentLength(parseLength(reader.getElementText()));
+                    depth--;
+                }
+                continue;
+            }
+            if (depth != 2) {
+                continue;
+            }
+            if ("link".equalsIgnoreCase(nodeName)) {
+                mikanRssItem.setEpisodePageUrl(reader.getElementText());
+                depth--;
+            } else if ("title".equalsIgnoreCase(nodeName)) {
+                mikanRssItem.setTitle(reader.getElementText());
+                depth--;
+            } else if ("guid".equalsIgnoreCase(nodeName)) {
+                mikanRssItem.setGuid(reader.getElementText());
+                depth--;
+            } else if ("enclosure".equalsIgnoreCase(nodeName)) {
+                String url = reader.getAttributeValue(null, "url");
+                mikanRssItem.setTorrentUrl(url);
+                mikanRssItem.setInfoHash(parseInfoHash(url));
+                Long length = parseLength(reader.getAttributeValue(null, "length"));
+                if (length != null) {
+                    mikanRssItem.setContentLength(length);
+                }
+            } else if ("torrent".equalsIgnoreCase(nodeName)) {
+                inTorrent = true;
+            }
+        }
+        return mikanRssItem;
+    }
+
+    /**
+     * 使用 DOM 一次读入整个 RSS XML 再解析，结果和 {@link #parseMikanRssXmlStream(InputStream)} 一致，
+     * 测试中作为流式解析的对照.
+     *
+     * @param inputStream RSS XML 输入流，由调用方负责关闭
+     * @return RSS 条目
+     */
+    public static List<MikanRssItem> parseMikanRssXml(InputStream inputStream) {
+        Assert.notNull(inputStream, "'inputStream' must not null.");
         List<MikanRssItem> mikanRssItemList = new ArrayList<>();
 
         try {
-            File cacheFile = new File(filePath);
-            if (!cacheFile.exists()) {
-                LOGGER.warn("cache file not exist, will return directly, file path:{}", filePath);
-                return mikanRssItemList;
-            }
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.parse(cacheFile);
+            Document document = builder.parse(inputStream);
             Element element = document.getDocumentElement();
             Node firstChild = element.getFirstChild();
             if (firstChild.getNodeName().contains("#text")) {
                 firstChild = firstChild.getNextSibling();
             }
             NodeList childNodes = firstChild.getChildNodes();
+            String channelLink = null;
             for (int j = 0; j < childNodes.getLength(); j++) {
                 Node item1 = childNodes.item(j);
                 String nodeName = item1.getNodeName();
                 // LOGGER.debug("parse channel item name: {}", nodeName);
+                if ("link".equalsIgnoreCase(nodeName) && channelLink == null) {
+                    channelLink = item1.getTextContent();
+                }
                 if ("item".equalsIgnoreCase(nodeName)) {
                     MikanRssItem mikanRssItem = handlerItemNode(item1);
+                    fillBangumiIds(mikanRssItem, channelLink);
                     mikanRssItemList.add(mikanRssItem);
                 }
             }
@@ -82,17 +236,131 @@ public class XmlUtils {
             if ("title".equalsIgnoreCase(nodeName)) {
                 mikanRssItem.setTitle(textContent);
             }
-            // if ("torrent".equalsIgnoreCase(nodeName)) {
-            //  mikanRssItem.setTorrentUrl(node.getFirstChild().getNextSibling().getTextContent());
-            // }
+            if ("guid".equalsIgnoreCase(nodeName)) {
+                mikanRssItem.setGuid(textContent);
+            }
+            if ("torrent".equalsIgnoreCase(nodeName)) {
+                NodeList torrentChildNodes = node.getChildNodes();
+                for (int j = 0; j < torrentChildNodes.getLength(); j++) {
+                    Node torrentChildNode = torrentChildNodes.item(j);
+                    String torrentChildNodeName = torrentChildNode.getNodeName();
+                    if ("pubDate".equalsIgnoreCase(torrentChildNodeName)) {
+                        mikanRssItem.setPubDate(
+                            parsePubDate(torrentChildNode.getTextContent()));
+                    }
+                    if ("contentLength".equalsIgnoreCase(torrentChildNodeName)
+                        && mikanRssItem.getContentLength() == null) {
+                        mikanRssItem.setContentLength(
+                            parseLength(torrentChildNode.getTextContent()));
+                    }
+                }
+            }
             if ("enclosure".equalsIgnoreCase(nodeName)) {
-                String url = node.getAttributes().getNamedItem("url").getNodeValue();
+                NamedNodeMap attributes = node.getAttributes();
+                String url = attributes.getNamedItem("url").getNodeValue();
                 mikanRssItem.setTorrentUrl(url);
+                mikanRssItem.setInfoHash(parseInfoHash(url));
+                Node lengthNode = attributes.getNamedItem("length");
+                Long length = lengthNode == null ? null : parseLength(lengthNode.getNodeValue());
+                if (length != null) {
+                    mikanRssItem.setContentLength(length);
+                }
             }
         }
         return mikanRssItem;
     }
 
+    /**
+     * 从条目链接或者 channel 的链接(单个番剧的订阅)中解析蜜柑的番剧 id 和字幕组 id，
+     * 我的番组订阅中没有这两个 id.
+     */
+    private static void fillBangumiIds(MikanRssItem mikanRssItem, String channelLink) {
+        String bangumiId = parseBangumiId(mikanRssItem.getEpisodePageUrl());
+        String subgroupId = parseSubgroupId(mikanRssItem.getEpisodePageUrl());
+        if (bangumiId == null) {
+            bangumiId = parseBangumiId(channelLink);
+            subgroupId = parseSubgroupId(channelLink);
+        }
+        mikanRssItem.setBangumiId(bangumiId);
+        mikanRssItem.setSubgroupId(subgroupId);
+    }
+
+    /**
+     * 解析蜜柑番剧 id.
+     *
+     * @param url 番剧的订阅链接或者番剧页面链接
+     * @return 番剧 id，没有时为 null
+     */
+    public static String parseBangumiId(String url) {
+        return findFirstGroup(BANGUMI_ID_PATTERN, url);
+    }
+
+    /**
+     * 解析蜜柑字幕组 id.
+     *
+     * @param url 番剧的订阅链接
+     * @return 字幕组 id，没有时为 null
+     */
+    public static String parseSubgroupId(String url) {
+        return findFirstGroup(SUBGROUP_ID_PATTERN, url);
+    }
+
+    private static String findFirstGroup(Pattern pattern, String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static Long parseLength(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            long length = Long.parseLong(text.trim());
+            return length > 0 ? length : null;
+        } catch (NumberFormatException e) {
+            LOGGER.warn("invalid mikan rss content length: {}", text);
+            return null;
+        }
+    }
+
+    /**
+     * 解析蜜柑 torrent/pubDate 节点的时间，例如：2023-07-23T20:05:00.273.
+     *
+     * @param text 节点文本
+     * @return 蜜柑所在时区的本地时间，格式不对时为 null
+     */
+    public static LocalDateTime parsePubDate(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(text.trim());
+        } catch (DateTimeParseException e) {
+            LOGGER.warn("invalid mikan rss pub date: {}", text);
+            return null;
+        }
+    }
+
+    /**
+     * 从蜜柑的种子链接中解析 info-hash.
+     *
+     * @param torrentUrl 种子链接
+     * @return 小写的 info-hash，链接不是蜜柑的格式时返回 null
+     */
+    public static String parseInfoHash(String torrentUrl) {
+        if (torrentUrl == null) {
+            return null;
+        }
+        Matcher matcher = TORRENT_URL_INFO_HASH_PATTERN.matcher(torrentUrl);
+        if (!matcher.find()) {
+            return null;
+        }
+        return matcher.group(1).toLowerCase(Locale.ROOT);
+    }
+
     public static String generateJellyfinTvShowNfoXml(String filePath, String plot,
                                                       String title,
                                                       String originaltitle, String bangumiid) {
@@ -216,66 +484,4 @@ public class XmlUtils {
         }
         return filePath;
     }
-
-
-    /**
-     * 从RSS URL下载内容到本地RSS库
-     *
-     * @param url   RSS URL
-     * @param proxy 是否设置代理
-     * @return 缓存文件路径
-     */
-    public static String downloadRssXmlFile(String url, Proxy proxy) {
-        Assert.hasText(url, "'url' must has text.");
-        String cacheFilePath = SystemVarUtils.getOsCacheDirPath(null)
-            + File.separator
-            + UUID.randomUUID().toString().replace("-", "") + ".xml";
-
-        InputStream inputStream = null;
-        BufferedInputStream bufferedInputStream = null;
-        OutputStream outputStream = null;
-        BufferedOutputStream bufferedOutputStream = null;
-        try {
-            URLConnection urlConnection;
-            if (proxy == null) {
-                urlConnection = new URL(url).openConnection();
-            } else {
-                urlConnection = new URL(url).openConnection(proxy);
-            }
-            urlConnection.connect();
-            inputStream = urlConnection.getInputStream();
-            bufferedInputStream = new BufferedInputStream(inputStream);
-
-            File cacheFile = new File(cacheFilePath);
-            if (!cacheFile.getParentFile().exists()) {
-                cacheFile.getParentFile().mkdirs();
-            }
-            if (!cacheFile.exists()) {
-                cacheFile.createNewFile();
-            }
-            outputStream = Files.newOutputStream(cacheFile.toPath());
-            bufferedOutputStream = new BufferedOutputStream(outputStream);
-
-            byte[] buffer = new byte[128];
-            int len;
-            while ((len = bufferedInputStream.read(buffer)) != -1) {
-                bufferedOutputStream.write(buffer, 0, len);
-            }
-            LOGGER.info("download rss xml file to cache path: {}", cacheFilePath);
-        } catch (IOException e) {
-            String msg = "fail write rss url xml file bytes to cache path: " + cacheFilePath;
-            LOGGER.warn(msg, e);
-            throw new RssOperateException(msg, e);
-        } finally {
-            try {
-                bufferedOutputStream.close();
-                outputStream.close();
-                bufferedInputStream.close();
-                inputStream.close();
-            } catch (IOException e) {
-                throw new RssOperateException(e);
-            }
-        }
-        return cacheFilePath;
-    }
 }
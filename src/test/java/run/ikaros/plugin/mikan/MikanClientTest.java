@@ -1,26 +1,40 @@
 package run.ikaros.plugin.mikan;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import run.ikaros.api.infra.utils.AssertUtils;
 import run.ikaros.api.infra.utils.StringUtils;
+import run.ikaros.plugin.mikan.exception.MikanRequestException;
+import run.ikaros.plugin.mikan.http.HttpTransport;
+
+import java.io.IOException;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class MikanClientTest {
+    private final HttpTransport httpTransport = new HttpTransport();
+
+    @AfterEach
+    void closeHttpTransport() throws IOException {
+        httpTransport.close();
+    }
 
     // @Test
     void getAnimePageUrlByEpisodePageUrl() {
-        MikanClient client = new MikanClient(null);
+        MikanClient client = new MikanClient(null, httpTransport);
         String epPageUrl = "https://mikanime.tv/Home/Episode/17ec9127dcd4accbbc4e9d8bf624515f56e32d8a";
-        String animePageUrl = client.getAnimePageUrlByEpisodePageUrl(epPageUrl);
+        String animePageUrl = client.getReactiveMikanClient()
+            .getAnimePageUrlByEpisodePageUrl(epPageUrl).block();
         assertTrue(StringUtils.isNotBlank(animePageUrl), "'animePageUrl' should not be empty");
     }
 
     // @Test
     void getBgmTvSubjectPageUrlByAnimePageUrl() {
         String animePageUrl = "https://mikanime.tv/Home/Bangumi/3423#370";
-        MikanClient client = new MikanClient(null);
-        String bgmTvSubjectPageUrl = client.getBgmTvSubjectPageUrlByAnimePageUrl(animePageUrl);
+        MikanClient client = new MikanClient(null, httpTransport);
+        String bgmTvSubjectPageUrl = client.getReactiveMikanClient()
+            .getBgmTvSubjectPageUrlByAnimePageUrl(animePageUrl).block();
         assertTrue(StringUtils.isNotBlank(bgmTvSubjectPageUrl), "'bgmTvSubject' should not be empty");
 
         int index = bgmTvSubjectPageUrl.lastIndexOf("/");
@@ -28,4 +42,59 @@ class MikanClientTest {
         assertTrue(StringUtils.isNotBlank(bgmTvSubjectId), "'bgmTvSubjectId' should not be empty");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void parseSeasonBangumiIds() {
+        String html = """
+            <div class="sk-bangumi" data-dayofweek="1">
+              <ul class="list-inline an-ul">
+                <li><span data-src="/images/Bangumi/202404/a.jpg" data-bangumiid="3305"
+                  class="js-expand_bangumi b-lazy"></span>
+                  <div class="an-info"><a href="/Home/Bangumi/3305">A</a></div></li>
+                <li><span data-bangumiid=" 3306 " class="js-expand_bangumi"></span></li>
+              </ul>
+            </div>
+            <div class="sk-bangumi" data-dayofweek="2">
+              <ul class="list-inline an-ul">
+                <li><span data-bangumiid="3305" class="js-expand_bangumi"></span></li>
+                <li><span data-bangumiid="" class="js-expand_bangumi"></span></li>
+                <li><span data-bangumiid="abc" class="js-expand_bangumi"></span></li>
+              </ul>
+            </div>
+            """;
+        assertEquals(List.of("3305", "3306"), MikanClient.parseSeasonBangumiIds(html));
+        assertEquals(List.of(), MikanClient.parseSeasonBangumiIds("<html></html>"));
+    }
+
+    @Test
+    void parseSearchAnimePageUrl() {
+        String html = """
+            <div id="sk-container"><div class="central-container">
+              <ul class="list-inline an-ul">
+                <li><a href="/Home/Bangumi/3305" target="_blank"></a></li>
+                <li><a href="/Home/Bangumi/3306" target="_blank"></a></li>
+              </ul>
+            </div></div>
+            """;
+        assertEquals(DefaultConst.MIKAN_URL + "/Home/Bangumi/3305",
+            MikanClient.parseSearchAnimePageUrl(html, "物语系列"));
+        // 没有搜索结果时返回 null，可以缓存
+        String emptyHtml = """
+            <div id="sk-container"><div class="central-container">
+              <ul class="list-inline an-ul"></ul>
+            </div></div>
+            """;
+        assertNull(MikanClient.parseSearchAnimePageUrl(emptyHtml, "物语系列"));
+        // 不是搜索结果页面时抛出异常，不当作没有结果缓存
+        assertThrows(MikanRequestException.class,
+            () -> MikanClient.parseSearchAnimePageUrl("<html>503</html>", "物语系列"));
+    }
+
+    @Test
+    void normalizeSearchKeyword() {
+        assertEquals("re ゼロから始める異世界生活 2nd season",
+            MikanClient.normalizeSearchKeyword("  Re：ゼロから始める異世界生活　２nd Season! "));
+        assertEquals(MikanClient.normalizeSearchKeyword("【物语系列】"),
+            MikanClient.normalizeSearchKeyword("物语系列"));
+    }
+}
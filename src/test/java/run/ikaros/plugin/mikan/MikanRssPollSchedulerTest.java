@@ -0,0 +1,102 @@
+package run.ikaros.plugin.mikan;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import run.ikaros.plugin.mikan.store.BangumiReleaseTimeStore;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MikanRssPollSchedulerTest {
+    static final Duration MIN = Duration.ofMinutes(2);
+    static final Duration MAX = Duration.ofHours(3);
+    static final Duration DEFAULT = Duration.ofMinutes(30);
+
+    static MikanRssItem item(String title, LocalDateTime pubDate) {
+        return new MikanRssItem().setTitle(title).setPubDate(pubDate);
+    }
+
+    @Test
+    void useDefaultIntervalWithoutReleaseTimes() {
+        MikanRssPollScheduler scheduler = new MikanRssPollScheduler();
+        assertEquals(DEFAULT, scheduler.nextDelay(LocalDateTime.of(2024, 9, 21, 12, 0),
+            MIN, MAX, DEFAULT));
+    }
+
+    @Test
+    void pollFastInReleaseWindow() {
+        MikanRssPollScheduler scheduler = new MikanRssPollScheduler();
+        // 2024-09-21 是星期六
+        scheduler.record(item("[LoliHouse] 物语系列 - 13 [1080p]",
+            LocalDateTime.of(2024, 9, 21, 22, 31)));
+        scheduler.record(item("[LoliHouse] 物语系列 - 14 [1080p]",
+            LocalDateTime.of(2024, 9, 28, 22, 35)));
+
+        assertEquals(MIN, scheduler.nextDelay(LocalDateTime.of(2024, 10, 5, 22, 20),
+            MIN, MAX, DEFAULT));
+        assertEquals(MIN, scheduler.nextDelay(LocalDateTime.of(2024, 10, 5, 23, 30),
+            MIN, MAX, DEFAULT));
+    }
+
+    @Test
+    void backOffUntilNextReleaseWindow() {
+        MikanRssPollScheduler scheduler = new MikanRssPollScheduler();
+        scheduler.record(item("[LoliHouse] 物语系列 - 13 [1080p]",
+            LocalDateTime.of(2024, 9, 21, 22, 30)));
+
+        // 窗口在 22:15 开始
+        assertEquals(Duration.ofMinutes(75), scheduler.nextDelay(
+            LocalDateTime.of(2024, 9, 28, 21, 0), MIN, MAX, DEFAULT));
+        assertEquals(MAX, scheduler.nextDelay(
+            LocalDateTime.of(2024, 9, 25, 12, 0), MIN, MAX, DEFAULT));
+    }
+
+    @Test
+    void ignoreExpiredReleaseTimes() {
+        MikanRssPollScheduler scheduler = new MikanRssPollScheduler();
+        scheduler.record(item("[ANi] 其实，我是最强的？ - 04 [1080P]",
+            LocalDateTime.of(2023, 7, 23, 20, 5)));
+        assertEquals(DEFAULT, scheduler.nextDelay(LocalDateTime.of(2024, 9, 21, 12, 0),
+            MIN, MAX, DEFAULT));
+    }
+
+    @Test
+    void sameBangumiKeyForDifferentEpisodes() {
+        assertEquals(
+            MikanRssPollScheduler.getBangumiKey(item("[ANi] X - 04 [1080P]", null)),
+            MikanRssPollScheduler.getBangumiKey(item("[ANi] X - 05 [1080P]", null)));
+    }
+
+    @Test
+    void bangumiKeyWithoutSubgroup() {
+        assertEquals("3305#382", MikanRssPollScheduler.getBangumiKey(
+            item("[ANi] X - 04 [1080P]", null).setBangumiId("3305").setSubgroupId("382")));
+        assertEquals("3305", MikanRssPollScheduler.getBangumiKey(
+            item("[ANi] X - 04 [1080P]", null).setBangumiId("3305")));
+    }
+
+    @Test
+    void restoreReleaseTimesAfterRestart(@TempDir Path dataDir) {
+        LocalDateTime now = LocalDateTime.of(2024, 10, 5, 22, 20);
+        MikanRssPollScheduler scheduler = new MikanRssPollScheduler();
+        scheduler.setReleaseTimeStore(new BangumiReleaseTimeStore(dataDir), now);
+        scheduler.record(item("[LoliHouse] 物语系列 - 14 [1080p]",
+            LocalDateTime.of(2024, 9, 28, 22, 35)));
+        scheduler.record(item("[ANi] 其实，我是最强的？ - 04 [1080P]",
+            LocalDateTime.of(2023, 7, 23, 20, 5)));
+        // 记录时只更新内存，周期结束时一次写入
+        assertTrue(new BangumiReleaseTimeStore(dataDir).getAll().isEmpty());
+        scheduler.flushReleaseTimes();
+
+        // 重启后订阅返回 304 没有条目，依然按之前记录的发布时间调度
+        MikanRssPollScheduler restarted = new MikanRssPollScheduler();
+        BangumiReleaseTimeStore store = new BangumiReleaseTimeStore(dataDir);
+        restarted.setReleaseTimeStore(store, now);
+        assertEquals(MIN, restarted.nextDelay(now, MIN, MAX, DEFAULT));
+        // 过期的番剧在加载时删除
+        assertEquals(1, new BangumiReleaseTimeStore(dataDir).getAll().size());
+    }
+}
@@ -0,0 +1,113 @@
+package run.ikaros.plugin.mikan;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import run.ikaros.plugin.mikan.exception.MikanRequestException;
+import run.ikaros.plugin.mikan.http.HttpTransport;
+import run.ikaros.plugin.mikan.store.BgmTvSubjectIdStore;
+import run.ikaros.plugin.mikan.store.PrefetchedSeasonStore;
+import run.ikaros.plugin.mikan.utils.XmlUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MikanSeasonPrefetcherTest {
+    private final HttpTransport httpTransport = new HttpTransport();
+
+    @TempDir
+    Path dataDir;
+
+    @AfterEach
+    void closeHttpTransport() throws IOException {
+        httpTransport.close();
+    }
+
+    @Test
+    void getSeasonStr() {
+        assertEquals("冬", MikanSeasonPrefetcher.getSeasonStr(LocalDate.of(2024, 1, 1)));
+        assertEquals("冬", MikanSeasonPrefetcher.getSeasonStr(LocalDate.of(2024, 3, 31)));
+        assertEquals("春", MikanSeasonPrefetcher.getSeasonStr(LocalDate.of(2024, 4, 1)));
+        assertEquals("夏", MikanSeasonPrefetcher.getSeasonStr(LocalDate.of(2024, 8, 15)));
+        assertEquals("秋", MikanSeasonPrefetcher.getSeasonStr(LocalDate.of(2024, 12, 31)));
+    }
+
+    @Test
+    void prefetchUntilAllBangumiResolved() {
+        FakeMikanClient mikanClient = new FakeMikanClient(new MikanClient(null, httpTransport));
+        // 3305 有 bgm.tv 链接，3306 没有，3307 第一次请求失败
+        mikanClient.bgmTvSubjectPageUrls.put("3305", "https://bgm.tv/subject/400602");
+        mikanClient.failOnce.put("3307", true);
+        mikanClient.bgmTvSubjectPageUrls.put("3307", "https://bgm.tv/subject/400603");
+
+        BgmTvSubjectIdStore bgmTvSubjectIdStore = new BgmTvSubjectIdStore(dataDir);
+        MikanSeasonPrefetcher prefetcher = newPrefetcher(mikanClient, bgmTvSubjectIdStore);
+        StepVerifier.create(prefetcher.prefetchCurrentSeason()).verifyComplete();
+        assertEquals("400602", bgmTvSubjectIdStore.get("3305"));
+        assertTrue(bgmTvSubjectIdStore.isMissing("3306"));
+        assertNull(bgmTvSubjectIdStore.get("3307"));
+        assertEquals(3, mikanClient.pageRequests.get());
+
+        // 有番剧失败时季度不算完成，下次只请求失败的番剧
+        StepVerifier.create(prefetcher.prefetchCurrentSeason()).verifyComplete();
+        assertEquals("400603", bgmTvSubjectIdStore.get("3307"));
+        assertEquals(4, mikanClient.pageRequests.get());
+        assertEquals(2, mikanClient.seasonRequests.get());
+
+        // 季度完成后重启插件也不再抓取
+        MikanSeasonPrefetcher restarted =
+            newPrefetcher(mikanClient, new BgmTvSubjectIdStore(dataDir));
+        StepVerifier.create(restarted.prefetchCurrentSeason()).verifyComplete();
+        assertEquals(2, mikanClient.seasonRequests.get());
+        assertEquals(4, mikanClient.pageRequests.get());
+    }
+
+    private MikanSeasonPrefetcher newPrefetcher(ReactiveMikanClient mikanClient,
+                                                BgmTvSubjectIdStore bgmTvSubjectIdStore) {
+        return new MikanSeasonPrefetcher(mikanClient,
+            new BgmTvSubjectResolver(mikanClient, bgmTvSubjectIdStore),
+            new PrefetchedSeasonStore(dataDir), Duration.ZERO);
+    }
+
+    /**
+     * 不发起网络请求，按番剧 id 返回预设的番剧页面结果.
+     */
+    static class FakeMikanClient extends ReactiveMikanClient {
+        final Map<String, String> bgmTvSubjectPageUrls = new ConcurrentHashMap<>();
+        final Map<String, Boolean> failOnce = new ConcurrentHashMap<>();
+        final AtomicInteger seasonRequests = new AtomicInteger();
+        final AtomicInteger pageRequests = new AtomicInteger();
+
+        FakeMikanClient(MikanClient mikanClient) {
+            super(mikanClient);
+        }
+
+        @Override
+        public Mono<List<String>> getSeasonBangumiIds(int year, String seasonStr) {
+            seasonRequests.incrementAndGet();
+            return Mono.just(List.of("3305", "3306", "3307"));
+        }
+
+        @Override
+        public Mono<String> getBgmTvSubjectPageUrlByAnimePageUrl(String animePageUrl) {
+            return Mono.defer(() -> {
+                pageRequests.incrementAndGet();
+                String bangumiId = XmlUtils.parseBangumiId(animePageUrl);
+                if (failOnce.remove(bangumiId) != null) {
+                    return Mono.error(new MikanRequestException("request fail: " + animePageUrl));
+                }
+                return Mono.justOrEmpty(bgmTvSubjectPageUrls.get(bangumiId));
+            });
+        }
+    }
+}
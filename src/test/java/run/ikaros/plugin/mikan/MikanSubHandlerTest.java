@@ -1,19 +1,40 @@
 package run.ikaros.plugin.mikan;
 
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
 import reactor.test.StepVerifier;
 import run.ikaros.api.core.setting.ConfigMap;
 import run.ikaros.api.plugin.event.PluginConfigMapUpdateEvent;
 import run.ikaros.plugin.mikan.qbittorrent.QbittorrentClient;
 import run.ikaros.plugin.mikan.qbittorrent.model.QbConfig;
+import run.ikaros.plugin.mikan.http.HttpTransport;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 class MikanSubHandlerTest {
+    private final HttpTransport httpTransport = new HttpTransport();
+
+    @AfterEach
+    void closeHttpTransport() throws IOException {
+        httpTransport.close();
+    }
+
+    @Test
+    void confirmBackoff() {
+        assertEquals(Duration.ofMillis(100), MikanSubHandler.getConfirmBackoff(0));
+        assertEquals(Duration.ofMillis(800), MikanSubHandler.getConfirmBackoff(3));
+        assertEquals(Duration.ofMillis(1600), MikanSubHandler.getConfirmBackoff(4));
+        assertEquals(Duration.ofMillis(1600), MikanSubHandler.getConfirmBackoff(30));
+    }
 
     // @Test
     void parseMikanSubRssAndAddToQbittorrent() {
         final String mikanRss = "https://mikanime.tv/RSS/MyBangumi?token=";
-        MikanClient mc = new MikanClient(null);
+        MikanClient mc = new MikanClient(null, httpTransport);
         ConfigMap map = new ConfigMap();
         map.setName(MikanPlugin.NAME);
         map.setData(Map.of("mikanRss", mikanRss));
@@ -27,7 +48,7 @@ class MikanSubHandlerTest {
 //        config.setQbPassword("adminadmin");
 
 
-        QbittorrentClient qc = new QbittorrentClient(null);
+        QbittorrentClient qc = new QbittorrentClient(null, httpTransport);
         qc.setBaseSavePath("C:\\Users\\chivehao\\Videos\\Tests");
         qc.setConfig(config);
 
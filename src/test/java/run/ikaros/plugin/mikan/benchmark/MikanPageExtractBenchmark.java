@@ -0,0 +1,102 @@
+package run.ikaros.plugin.mikan.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import run.ikaros.plugin.mikan.utils.MikanHtmlUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 蜜柑页面提取：流式提取 vs Jsoup 完整解析.
+ * <br/>
+ * 页面内容是按蜜柑页面结构生成的，目标元素在页面前部，后面是 rows 行种子列表.
+ * 番剧链接找到后立即结束，bgm.tv 链接需要读取到 #sk-container 结束.
+ * 完整解析的耗时包括 byte[] 转 String，和原来的 MikanClient 一致.
+ * 运行：直接执行 main 方法，或者 java -cp <test classpath> org.openjdk.jmh.Main MikanPageExtractBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MikanPageExtractBenchmark {
+
+    @Param({"50", "500"})
+    public int rows;
+
+    private byte[] episodePage;
+    private byte[] animePage;
+
+    @Setup
+    public void setup() {
+        StringBuilder torrentRows = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            torrentRows.append("<tr><td><a class=\"magnet-link-wrap\" href=\"/Home/Episode/")
+                .append(String.format("%040x", i))
+                .append("\" target=\"_blank\">[ANi] 其实，我是最强的？ - ").append(i)
+                .append(" [1080P][Bilibili][WEB-DL][AAC AVC][CHT CHS][MP4]</a></td>")
+                .append("<td>277.3 MB</td><td>2023/07/23 20:05</td>")
+                .append("<td><a href=\"/Download/20230723/").append(String.format("%040x", i))
+                .append(".torrent\"><img src=\"/images/download.png\"></a></td></tr>\n");
+        }
+        String head = "<html><head><title>Mikan Project</title>"
+            + "<link rel=\"stylesheet\" href=\"/css/mikan.min.css\"></head><body>"
+            + "<div class=\"m-nav\">" + "<a href=\"/\">首页</a>".repeat(20) + "</div>";
+        episodePage = (head
+            + "<div id=\"sk-container\" class=\"container\"><div class=\"central-container\">"
+            + "<p class=\"bangumi-title\"><a class=\"w-other-c\" style=\"color:#555\" "
+            + "href=\"/Home/Bangumi/3060#583\">其实，我是最强的？</a></p>"
+            + "<table>" + torrentRows + "</table></div></div></body></html>")
+            .getBytes(StandardCharsets.UTF_8);
+        animePage = (head
+            + "<div id=\"sk-container\" class=\"container\">"
+            + "<p class=\"bangumi-info\">放送开始：7/2/2023</p>"
+            + "<p class=\"bangumi-info\">Bangumi番组计划链接：<a class=\"w-other-c\" "
+            + "href=\"https://bgm.tv/subject/400602\" target=\"_blank\">"
+            + "https://bgm.tv/subject/400602</a></p>"
+            + "<table>" + torrentRows + "</table></div></body></html>")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String episodePageByStream() throws IOException {
+        return MikanHtmlUtils.extractBangumiTitleHref(new ByteArrayInputStream(episodePage));
+    }
+
+    @Benchmark
+    public String episodePageByDom() {
+        return MikanHtmlUtils.parseBangumiTitleHref(new String(episodePage, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String animePageByStream() throws IOException {
+        return MikanHtmlUtils.extractBgmTvSubjectHref(new ByteArrayInputStream(animePage));
+    }
+
+    @Benchmark
+    public String animePageByDom() {
+        return MikanHtmlUtils.parseBgmTvSubjectHref(new String(animePage, StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(MikanPageExtractBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+package run.ikaros.plugin.mikan.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import run.ikaros.plugin.mikan.qbittorrent.QbittorrentClient;
+import run.ikaros.plugin.mikan.qbittorrent.model.QbTorrentInfo;
+import run.ikaros.plugin.mikan.utils.JsonUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * torrents/info 反序列化：ObjectReader 流式读取 vs 原来的 ArrayList + JSON 往返.
+ * <br/>
+ * 原来的方式由 RestTemplate 的 Jackson 转换器先解析为 LinkedHashMap 列表，
+ * 再对每个元素 obj2Json / json2obj 转换为 {@link QbTorrentInfo}，这里用同样配置的 ObjectMapper 模拟.
+ * 响应内容按 qbittorrent 4.5 返回的字段生成.
+ * 运行：直接执行 main 方法，或者 java -cp <test classpath> org.openjdk.jmh.Main QbTorrentListReadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QbTorrentListReadBenchmark {
+
+    @Param({"1000", "10000"})
+    public int torrents;
+
+    private byte[] torrentList;
+    private ObjectMapper converterObjectMapper;
+
+    @Setup
+    public void setup() {
+        converterObjectMapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < torrents; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String hash = String.format("%040x", i);
+            json.append("{\"added_on\":1690113900,\"amount_left\":0,\"auto_tmm\":false,")
+                .append("\"availability\":-1,\"category\":\"mikan\",\"completed\":290768547,")
+                .append("\"completion_on\":1690114200,\"content_path\":\"/downloads/mikan/[ANi] ")
+                .append("其实，我是最强的？ - ").append(i)
+                .append(" [1080P][Bilibili][WEB-DL][AAC AVC][CHT CHS].mp4\",")
+                .append("\"dl_limit\":0,\"dlspeed\":0,\"downloaded\":290768547,")
+                .append("\"downloaded_session\":0,\"eta\":8640000,\"f_l_piece_prio\":false,")
+                .append("\"force_start\":false,\"hash\":\"").append(hash).append("\",")
+                .append("\"infohash_v1\":\"").append(hash).append("\",\"infohash_v2\":\"\",")
+                .append("\"last_activity\":1690200000,\"magnet_uri\":\"magnet:?xt=urn:btih:")
+                .append(hash).append("&dn=test&tr=http%3a%2f%2ft.nyaa.si%2fannounce\",")
+                .append("\"max_ratio\":-1,\"max_seeding_time\":-1,\"name\":\"[ANi] ")
+                .append("其实，我是最强的？ - ").append(i).append("\",\"num_complete\":12,")
+                .append("\"num_incomplete\":1,\"num_leechs\":0,\"num_seeds\":0,")
+                .append("\"priority\":0,\"progress\":1,\"ratio\":0.52,\"ratio_limit\":-2,")
+                .append("\"save_path\":\"/downloads/mikan\",\"seeding_time\":86400,")
+                .append("\"seeding_time_limit\":-2,\"seen_complete\":1690200000,")
+                .append("\"seq_dl\":false,\"size\":290768547,\"state\":\"stalledUP\",")
+                .append("\"super_seeding\":false,\"tags\":\"400602\",\"time_active\":90000,")
+                .append("\"total_size\":290768547,\"tracker\":\"http://t.nyaa.si/announce\",")
+                .append("\"trackers_count\":3,\"up_limit\":0,\"uploaded\":151199644,")
+                .append("\"uploaded_session\":0,\"upspeed\":0}");
+        }
+        torrentList = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<QbTorrentInfo> streamReader() throws IOException {
+        return QbittorrentClient.readTorrentList(new ByteArrayInputStream(torrentList));
+    }
+
+    @Benchmark
+    public List<QbTorrentInfo> mapsWithJsonRoundTrip() throws IOException {
+        ArrayList<?> originalList = converterObjectMapper.readValue(
+            new ByteArrayInputStream(torrentList), ArrayList.class);
+        List<QbTorrentInfo> qbTorrentInfoList = new ArrayList<>(originalList.size());
+        for (Object o : originalList) {
+            qbTorrentInfoList.add(
+                JsonUtils.json2obj(JsonUtils.obj2Json(o), QbTorrentInfo.class));
+        }
+        return qbTorrentInfoList;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(QbTorrentListReadBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
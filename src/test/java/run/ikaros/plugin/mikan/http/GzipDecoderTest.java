@@ -0,0 +1,120 @@
+package run.ikaros.plugin.mikan.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GzipDecoderTest {
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decode(GzipDecoder decoder, byte[] compressed, int chunkSize)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < compressed.length; i += chunkSize) {
+            out.write(decoder.decode(Arrays.copyOfRange(compressed, i,
+                Math.min(i + chunkSize, compressed.length))));
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void decodeInChunks() throws IOException {
+        byte[] content = "<rss><channel><item>其实，我是最强的？</item></channel></rss>"
+            .repeat(500).getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = gzip(content);
+        // 逐字节传入时头部和尾部也会被拆开
+        for (int chunkSize : new int[] {1, 7, 4096, compressed.length}) {
+            GzipDecoder decoder = new GzipDecoder();
+            try {
+                assertArrayEquals(content, decode(decoder, compressed, chunkSize));
+                decoder.finish();
+            } finally {
+                decoder.end();
+            }
+        }
+    }
+
+    @Test
+    void decodeHeaderWithFileName() throws IOException {
+        byte[] content = "mikan".getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = gzip(content);
+        ByteArrayOutputStream withName = new ByteArrayOutputStream();
+        withName.write(compressed, 0, 3);
+        // FNAME
+        withName.write(8);
+        withName.write(compressed, 4, 6);
+        withName.write("rss.xml\0".getBytes(StandardCharsets.ISO_8859_1));
+        withName.write(compressed, 10, compressed.length - 10);
+        GzipDecoder decoder = new GzipDecoder();
+        try {
+            assertArrayEquals(content, decode(decoder, withName.toByteArray(), 3));
+            decoder.finish();
+        } finally {
+            decoder.end();
+        }
+    }
+
+    @Test
+    void finishEmptyBody() throws IOException {
+        // 带着 Content-Encoding: gzip 的空响应体不是被截断的数据
+        GzipDecoder empty = new GzipDecoder();
+        try {
+            assertArrayEquals(new byte[0], empty.decode(new byte[0]));
+            assertDoesNotThrow(empty::finish);
+        } finally {
+            empty.end();
+        }
+
+        // 收到了不完整的头部时仍然是被截断的数据
+        byte[] compressed = gzip("mikan".getBytes(StandardCharsets.UTF_8));
+        GzipDecoder partialHeader = new GzipDecoder();
+        try {
+            partialHeader.decode(Arrays.copyOf(compressed, 4));
+            assertThrows(ZipException.class, partialHeader::finish);
+        } finally {
+            partialHeader.end();
+        }
+    }
+
+    @Test
+    void failOnTruncatedOrCorruptStream() throws IOException {
+        byte[] compressed = gzip("mikan".repeat(100).getBytes(StandardCharsets.UTF_8));
+        GzipDecoder truncated = new GzipDecoder();
+        try {
+            truncated.decode(Arrays.copyOf(compressed, compressed.length - 4));
+            assertThrows(ZipException.class, truncated::finish);
+        } finally {
+            truncated.end();
+        }
+
+        compressed[compressed.length - 8] ^= 1;
+        GzipDecoder corrupt = new GzipDecoder();
+        try {
+            assertThrows(ZipException.class, () -> corrupt.decode(compressed));
+        } finally {
+            corrupt.end();
+        }
+
+        GzipDecoder notGzip = new GzipDecoder();
+        try {
+            assertThrows(ZipException.class,
+                () -> notGzip.decode("<rss></rss>".getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            notGzip.end();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package run.ikaros.plugin.mikan.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostRateLimiterTest {
+    /**
+     * 时间片和等待都使用虚拟时间，测试结果不受机器快慢影响
+     */
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    @AfterEach
+    void disposeScheduler() {
+        scheduler.dispose();
+    }
+
+    private HostRateLimiter newLimiter(int maxInFlight) {
+        return new HostRateLimiter(1000, 1000, maxInFlight,
+            () -> scheduler.now(TimeUnit.NANOSECONDS), scheduler);
+    }
+
+    @Test
+    void reserveSlotsAfterBurst() {
+        HostRateLimiter.TokenBucket bucket = new HostRateLimiter.TokenBucket();
+        // 每秒 10 个，突发 3 个：前 3 个立即可用，之后每 100ms 一个
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.reserve(10, 3, 0));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.reserve(10, 3, 0));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), bucket.reserve(10, 3, 0));
+    }
+
+    @Test
+    void reserveSlotsAfterPause() {
+        HostRateLimiter.TokenBucket bucket = new HostRateLimiter.TokenBucket();
+        bucket.pause(Duration.ofSeconds(5), 0);
+        long slot = bucket.reserve(10, 3, 0);
+        assertEquals(TimeUnit.SECONDS.toNanos(5), slot);
+        assertEquals(TimeUnit.SECONDS.toNanos(2), bucket.getWaitNanos(slot,
+            TimeUnit.SECONDS.toNanos(3)));
+    }
+
+    @Test
+    void limitInFlightRequests() {
+        HostRateLimiter limiter = newLimiter(1);
+        HostRateLimiter.Permit first = limiter.acquireAsync("mikanani.me").block();
+        AtomicReference<HostRateLimiter.Permit> second = new AtomicReference<>();
+        limiter.acquireAsync("mikanime.tv").subscribe(second::set);
+        // 取消等待中的订阅不会占用许可
+        limiter.acquireAsync("mikanime.tv").subscribe().dispose();
+        assertNull(second.get());
+
+        first.release();
+        // 重复释放不会多出许可
+        first.release();
+        assertNotNull(second.get());
+        AtomicReference<HostRateLimiter.Permit> third = new AtomicReference<>();
+        limiter.acquireAsync("mikanime.tv").subscribe(third::set);
+        assertNull(third.get());
+        second.get().release();
+        assertNotNull(third.get());
+    }
+
+    @Test
+    void pausedHostNotHoldInFlightPermit() {
+        HostRateLimiter limiter = newLimiter(1);
+        limiter.onResponse("mikanime.tv", 429, "600");
+        AtomicReference<HostRateLimiter.Permit> paused = new AtomicReference<>();
+        limiter.acquireAsync("mikanime.tv").subscribe(paused::set);
+
+        // 暂停中的 host 还没有占用许可，其他 host 不受影响
+        AtomicReference<HostRateLimiter.Permit> other = new AtomicReference<>();
+        limiter.acquireAsync("mikanani.me").subscribe(other::set);
+        assertNotNull(other.get());
+        other.get().release();
+
+        scheduler.advanceTimeBy(Duration.ofSeconds(599));
+        assertNull(paused.get());
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+        assertNotNull(paused.get());
+    }
+
+    @Test
+    void pauseWhileWaitingInFlightPermit() {
+        HostRateLimiter limiter = newLimiter(1);
+        HostRateLimiter.Permit first = limiter.acquireAsync("mikanani.me").block();
+        AtomicReference<HostRateLimiter.Permit> waiting = new AtomicReference<>();
+        limiter.acquireAsync("mikanime.tv").subscribe(waiting::set);
+
+        // 等待许可期间收到 Retry-After，拿到许可后归还并继续等待暂停结束
+        limiter.onResponse("mikanime.tv", 503, "10");
+        first.release();
+        assertNull(waiting.get());
+        AtomicReference<HostRateLimiter.Permit> other = new AtomicReference<>();
+        limiter.acquireAsync("mikanani.me").subscribe(other::set);
+        assertNotNull(other.get());
+        other.get().release();
+
+        scheduler.advanceTimeBy(Duration.ofSeconds(10));
+        assertNotNull(waiting.get());
+    }
+
+    @Test
+    void parseRetryAfter() {
+        Clock clock = Clock.fixed(Instant.parse("2024-04-01T00:00:00Z"), ZoneOffset.UTC);
+        assertEquals(Duration.ofSeconds(120), HostRateLimiter.parseRetryAfter("120", clock));
+        assertEquals(Duration.ofSeconds(10), HostRateLimiter.parseRetryAfter(null, clock));
+        assertEquals(Duration.ofSeconds(10), HostRateLimiter.parseRetryAfter("soon", clock));
+        assertEquals(Duration.ofMinutes(10), HostRateLimiter.parseRetryAfter("86400", clock));
+        String httpDate = DateTimeFormatter.RFC_1123_DATE_TIME
+            .format(ZonedDateTime.now(clock).plusSeconds(60));
+        assertEquals(Duration.ofSeconds(60), HostRateLimiter.parseRetryAfter(httpDate, clock));
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME
+            .format(ZonedDateTime.now(clock).minusSeconds(60));
+        assertEquals(Duration.ZERO, HostRateLimiter.parseRetryAfter(past, clock));
+    }
+}
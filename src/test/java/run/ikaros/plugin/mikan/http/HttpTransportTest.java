@@ -0,0 +1,58 @@
+package run.ikaros.plugin.mikan.http;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import reactor.test.StepVerifier;
+import run.ikaros.plugin.mikan.qbittorrent.model.QbConfig;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTransportTest {
+
+    @Test
+    void cacheDnsResolveResult() throws Exception {
+        HttpTransport.CachingDnsResolver resolver =
+            new HttpTransport.CachingDnsResolver(Duration.ofMinutes(5));
+        InetAddress[] first = resolver.resolve("localhost");
+        InetAddress[] second = resolver.resolve("localhost");
+        assertArrayEquals(first, second);
+        // 返回副本，调用方修改不影响缓存
+        assertNotSame(first, second);
+        assertThrows(UnknownHostException.class, () -> resolver.resolve("not-exists.invalid"));
+    }
+
+    @Test
+    void updateConfig() throws Exception {
+        try (HttpTransport transport = new HttpTransport()) {
+            QbConfig config = new QbConfig();
+            config.setHttpConnectTimeoutSeconds(3);
+            transport.update(config);
+            assertEquals(Duration.ofSeconds(3), transport.getConnectTimeout());
+            config.setHttpMaxConnectionsPerHost(0);
+            assertThrows(IllegalArgumentException.class, () -> transport.update(config));
+            assertNotNull(transport.getRequestFactory());
+        }
+    }
+
+    @Test
+    void failWhenSocksProxyUnresolvable() throws Exception {
+        try (HttpTransport transport = new HttpTransport()) {
+            Proxy proxy = new Proxy(Proxy.Type.SOCKS,
+                InetSocketAddress.createUnresolved("not-exists.invalid", 1080));
+            ClientHttpConnector connector = transport.getClientHttpConnector(host -> proxy);
+            // 不能绕过 SOCKS 代理直连
+            StepVerifier.create(connector.connect(HttpMethod.GET,
+                    URI.create("https://mikanime.tv/"), request -> request.setComplete()))
+                .expectError(IllegalStateException.class)
+                .verify();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package run.ikaros.plugin.mikan.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MikanMirrorSelectorTest {
+
+    @Test
+    void parseMirrors() {
+        assertEquals(
+            List.of("https://mikanime.tv", "https://mikanani.me", "http://127.0.0.1:8080"),
+            MikanMirrorSelector.parseMirrors(
+                " https://MIKANIME.tv/ \nhttps://mikanani.me/Home,,http://127.0.0.1:8080\nfoo"));
+    }
+
+    @Test
+    void selectFastestAvailableMirror() {
+        MikanMirrorSelector selector = new MikanMirrorSelector(
+            List.of("https://mikanime.tv", "https://mikanani.me"));
+        // 没有延迟数据时按配置顺序
+        assertEquals("https://mikanime.tv", selector.getBaseUrl());
+        selector.recordLatency("https://mikanani.me", Duration.ofMillis(80));
+        assertEquals("https://mikanani.me", selector.getBaseUrl());
+        selector.recordLatency("https://mikanime.tv", Duration.ofMillis(30));
+        assertEquals("https://mikanime.tv", selector.getBaseUrl());
+
+        selector.recordFailure("https://mikanime.tv");
+        assertEquals("https://mikanani.me", selector.getBaseUrl());
+        assertNull(selector.getBaseUrlExcluding(
+            Set.of("https://mikanime.tv", "https://mikanani.me")));
+        // 全部不可用时选冷却最先结束的
+        selector.recordFailure("https://mikanani.me");
+        assertEquals("https://mikanime.tv", selector.getBaseUrl());
+
+        // 更新列表后保留已有镜像的状态
+        selector.setMirrors(List.of("https://mikanani.me", "https://mikanime.tv"));
+        assertEquals("https://mikanime.tv", selector.getBaseUrl());
+    }
+
+    @Test
+    void rewriteMikanUrl() {
+        MikanMirrorSelector selector = new MikanMirrorSelector(List.of("https://mikan.example"));
+        assertEquals("https://mikan.example/RSS/MyBangumi?token=a%2Bb",
+            selector.rewrite("https://mikanani.me/RSS/MyBangumi?token=a%2Bb"));
+        assertEquals("https://mikan.example/Home/Bangumi/3060#583",
+            selector.rewrite("https://mikanime.tv/Home/Bangumi/3060#583"));
+        assertEquals("https://bgm.tv/subject/1", selector.rewrite("https://bgm.tv/subject/1"));
+        assertEquals("https://mikan.example",
+            selector.getMirrorOf(URI.create("https://mikan.example/Home")));
+        assertNull(selector.getMirrorOf(URI.create("https://mikanime.tv/Home")));
+    }
+}
@@ -0,0 +1,72 @@
+package run.ikaros.plugin.mikan.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProxyRulesTest {
+
+    @Test
+    void selectFirstMatchedRule() {
+        ProxyRules proxyRules = new ProxyRules();
+        int count = proxyRules.update("""
+            # 局域网直连
+            192.168.*=direct
+            *.mikanime.tv=socks://127.0.0.1:1080
+            invalid rule
+            mikanani.me=ftp://127.0.0.1:21
+            *=http://127.0.0.1:7890
+            """);
+        assertEquals(3, count);
+
+        assertEquals(Proxy.NO_PROXY, proxyRules.select("192.168.2.229"));
+        Proxy socks = proxyRules.select("API.Mikanime.tv");
+        assertEquals(Proxy.Type.SOCKS, socks.type());
+        assertEquals(1080, ((InetSocketAddress) socks.address()).getPort());
+        // *.mikanime.tv 同时匹配 mikanime.tv 本身，但不匹配其他以 mikanime.tv 结尾的域名
+        assertEquals(Proxy.Type.SOCKS, proxyRules.select("mikanime.tv").type());
+        assertEquals(Proxy.Type.HTTP, proxyRules.select("notmikanime.tv").type());
+        assertEquals(Proxy.Type.HTTP, proxyRules.select("mikanani.me").type());
+        assertEquals(List.of(Proxy.NO_PROXY),
+            proxyRules.select(URI.create("http://192.168.2.229:60101/api/v2/app/version")));
+        assertEquals("mikanime.tv via socks 127.0.0.1:1080",
+            proxyRules.describeRoute("mikanime.tv"));
+        assertEquals("mikanani.me via http 127.0.0.1:7890",
+            proxyRules.describeRoute("mikanani.me"));
+    }
+
+    @Test
+    void directWithoutRules() {
+        ProxyRules proxyRules = new ProxyRules();
+        assertEquals(0, proxyRules.update(null));
+        assertEquals(Proxy.NO_PROXY, proxyRules.select("mikanime.tv"));
+        assertEquals("mikanime.tv direct", proxyRules.describeRoute("mikanime.tv"));
+        assertThrows(IllegalArgumentException.class, () -> proxyRules.select((URI) null));
+    }
+
+    @Test
+    void recordRouteMetrics() {
+        ProxyRules proxyRules = new ProxyRules();
+        proxyRules.update("*.mikanime.tv=socks5://127.0.0.1:1080");
+        RouteMetrics routeMetrics = new RouteMetrics(proxyRules);
+        routeMetrics.record("a.mikanime.tv", Duration.ofMillis(100), true);
+        routeMetrics.record("a.mikanime.tv", Duration.ofMillis(200), true);
+        routeMetrics.record("a.mikanime.tv", Duration.ofMillis(300), false);
+        routeMetrics.record("192.168.2.229", Duration.ofMillis(5), true);
+
+        Map<String, RouteMetrics.Snapshot> snapshot = routeMetrics.snapshot();
+        RouteMetrics.Snapshot mikan = snapshot.get("a.mikanime.tv via socks 127.0.0.1:1080");
+        assertEquals(3, mikan.requests());
+        assertEquals(1, mikan.failures());
+        assertEquals(120, mikan.avgLatencyMillis(), 0.001);
+        assertEquals(200, mikan.maxLatencyMillis());
+        assertEquals(1, snapshot.get("192.168.2.229 direct").requests());
+    }
+}
@@ -0,0 +1,44 @@
+package run.ikaros.plugin.mikan.http;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+
+class RateLimitExchangeFilterTest {
+
+    @Test
+    void probeNotConsumePermit() {
+        HostRateLimiter limiter = new HostRateLimiter(100, 10, 1);
+        HostRateLimiter.Permit held = limiter.acquireAsync("mikanime.tv").block();
+        RateLimitExchangeFilter filter = new RateLimitExchangeFilter(limiter);
+        ExchangeFunction next = request -> Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        try {
+            ClientRequest probe = ClientRequest.create(HttpMethod.GET,
+                    URI.create("https://mikanime.tv/"))
+                .attribute(MikanMirrorExchangeFilter.PROBE_ATTRIBUTE, true)
+                .build();
+            StepVerifier.create(filter.filter(probe, next))
+                .expectNextCount(1)
+                .verifyComplete();
+
+            // 普通请求需要等待进行中的请求结束
+            ClientRequest request = ClientRequest.create(HttpMethod.GET,
+                URI.create("https://mikanime.tv/Home")).build();
+            StepVerifier.create(filter.filter(request, next))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(200))
+                .thenCancel()
+                .verify();
+        } finally {
+            held.release();
+        }
+    }
+}
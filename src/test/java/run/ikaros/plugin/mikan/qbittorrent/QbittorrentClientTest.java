@@ -1,14 +1,27 @@
 package run.ikaros.plugin.mikan.qbittorrent;
 
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
 import run.ikaros.plugin.mikan.DefaultConst;
+import run.ikaros.plugin.mikan.http.HttpTransport;
 import run.ikaros.plugin.mikan.qbittorrent.model.QbConfig;
 import run.ikaros.plugin.mikan.qbittorrent.model.QbTorrentInfo;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 class QbittorrentClientTest {
+    private final HttpTransport httpTransport = new HttpTransport();
+
+    @AfterEach
+    void closeHttpTransport() throws IOException {
+        httpTransport.close();
+    }
 
     // @Test
     void testGetCookieByPostLogin() {
@@ -18,7 +31,7 @@ class QbittorrentClientTest {
         config.setQbUsername("admin");
         config.setQbPassword("adminadmin");
 
-        QbittorrentClient qbittorrentClient = new QbittorrentClient(null);
+        QbittorrentClient qbittorrentClient = new QbittorrentClient(null, httpTransport);
         qbittorrentClient.setConfig(config);
         qbittorrentClient.getCookieByPostLogin(config.getQbUsername(), config.getQbPassword());
     }
@@ -33,7 +46,7 @@ class QbittorrentClientTest {
         QbConfig config = new QbConfig();
         config.setQbUrlPrefix("http://localhost:50100/");
 
-        QbittorrentClient qbittorrentClient = new QbittorrentClient(null);
+        QbittorrentClient qbittorrentClient = new QbittorrentClient(null, httpTransport);
         qbittorrentClient.setBaseSavePath("C:\\Users\\li-guohao\\Videos\\tests");
         qbittorrentClient.setConfig(config);
 
@@ -48,7 +61,7 @@ class QbittorrentClientTest {
         QbConfig config = new QbConfig();
         config.setQbUrlPrefix("http://localhost:50100/");
 
-        QbittorrentClient qbittorrentClient = new QbittorrentClient(null);
+        QbittorrentClient qbittorrentClient = new QbittorrentClient(null, httpTransport);
         qbittorrentClient.setBaseSavePath("C:\\Users\\li-guohao\\Videos\\tests");
         qbittorrentClient.setConfig(config);
         System.out.println(qbittorrentClient.getApiVersion());
@@ -62,7 +75,7 @@ class QbittorrentClientTest {
 //        config.setQbUsername("admin");
 //        config.setQbPassword("adminadmin");
 
-        QbittorrentClient qbittorrentClient = new QbittorrentClient(null);
+        QbittorrentClient qbittorrentClient = new QbittorrentClient(null, httpTransport);
         qbittorrentClient.setBaseSavePath("C:\\Users\\chivehao\\Videos\\Tests");
         qbittorrentClient.setConfig(config);
 
@@ -73,6 +86,53 @@ class QbittorrentClientTest {
         Assertions.assertThat(torrentList).isNotEmpty();
     }
 
+    @Test
+    void readTorrentList() throws Exception {
+        String json = """
+            [{"hash": "aaa", "name": "a", "progress": 1, "added_on": 1690113900,
+              "up_limit": 1024, "unknown_field": {"nested": [1, 2]}},
+             {"hash": "bbb", "name": "b", "tags": "400602", "progress": 0.25}]
+            """;
+        List<QbTorrentInfo> torrentList = QbittorrentClient.readTorrentList(
+            new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertThat(torrentList).hasSize(2);
+        Assertions.assertThat(torrentList.get(0).getHash()).isEqualTo("aaa");
+        Assertions.assertThat(torrentList.get(0).getAddedOn()).isEqualTo(1690113900L);
+        Assertions.assertThat(torrentList.get(0).getUploadLimit()).isEqualTo(1024L);
+        Assertions.assertThat(torrentList.get(1).getTags()).isEqualTo("400602");
+        Assertions.assertThat(torrentList.get(1).getProgress()).isEqualTo(0.25f);
+        Assertions.assertThat(QbittorrentClient.readTorrentList(
+            new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)))).isEmpty();
+    }
+
+    @Test
+    void retryEachAddBatch() {
+        QbConfig config = new QbConfig();
+        config.setQbUrlPrefix("http://localhost:8181");
+        config.setQbAddBatchSize(2);
+        List<String> requests = new ArrayList<>();
+        QbittorrentClient client = new QbittorrentClient(null, httpTransport) {
+            @Override
+            public void addTorrentFromURLs(String src, String savepath, String category,
+                                           String newName, boolean skipChecking,
+                                           boolean statusIsPaused,
+                                           boolean enableSequentialDownload,
+                                           boolean prioritizeDownloadFirstLastPiece) {
+                requests.add(src);
+                // 第二批第一次请求失败
+                if (requests.size() == 2) {
+                    throw new ResourceAccessException("connect qbittorrent fail");
+                }
+            }
+        };
+        client.setConfig(config);
+        client.addTorrentsFromURLs(List.of("a", "b", "c"), "", "ikaros",
+            false, false, false, false);
+        // 只重试失败的批次，已经成功的批次不会重新发送
+        Assertions.assertThat(requests).containsExactly("a\nb", "c", "c");
+    }
+
      //@Test
     void addSingleTags() {
         QbConfig config = new QbConfig();
@@ -80,7 +140,7 @@ class QbittorrentClientTest {
         config.setQbUsername("admin");
         config.setQbPassword("adminadmin");
 
-        QbittorrentClient qbittorrentClient = new QbittorrentClient(null);
+        QbittorrentClient qbittorrentClient = new QbittorrentClient(null, httpTransport);
         qbittorrentClient.setConfig(config);
         qbittorrentClient.getCookieByPostLogin(config.getQbUsername(), config.getQbPassword());
         qbittorrentClient.setBaseSavePath("C:\\Users\\chivehao\\Videos\\Tests");
@@ -0,0 +1,86 @@
+package run.ikaros.plugin.mikan.qbittorrent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import run.ikaros.plugin.mikan.http.HttpTransport;
+import run.ikaros.plugin.mikan.qbittorrent.model.QbTorrentInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QbittorrentSyncClientTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpTransport httpTransport = new HttpTransport();
+
+    @AfterEach
+    void closeHttpTransport() throws IOException {
+        httpTransport.close();
+    }
+
+    @Test
+    void applyMainDataDelta() throws Exception {
+        QbittorrentSyncClient syncClient =
+            new QbittorrentSyncClient(new QbittorrentClient(null, httpTransport));
+        List<QbittorrentSyncClient.TorrentEvent> events = new ArrayList<>();
+        syncClient.events().subscribe(events::add);
+
+        syncClient.apply(objectMapper.readTree("""
+            {"rid": 1, "full_update": true, "torrents": {
+              "aaa": {"name": "a", "category": "mikan", "progress": 0.5, "state": "downloading"},
+              "bbb": {"name": "b", "category": "other", "progress": 1, "state": "uploading"}
+            }}
+            """));
+        assertEquals(1, syncClient.getRid());
+        assertEquals(2, syncClient.getTorrents(null).size());
+        assertEquals("aaa", syncClient.getTorrents("mikan").get(0).getHash());
+        // 第一次同步不发出事件
+        assertTrue(events.isEmpty());
+
+        QbTorrentInfo before = syncClient.getTorrent("aaa");
+        syncClient.apply(objectMapper.readTree("""
+            {"rid": 2, "torrents": {
+              "aaa": {"progress": 1, "state": "uploading"},
+              "bbb": {"state": "missingFiles"},
+              "ccc": {"name": "c", "category": "mikan", "progress": 0},
+              "ddd": {"name": "d", "category": "mikan", "progress": 1}
+            }, "torrents_removed": []}
+            """));
+        QbTorrentInfo after = syncClient.getTorrent("AAA");
+        // 只有变化的字段，其他字段保留
+        assertEquals("a", after.getName());
+        assertEquals(1.0f, after.getProgress());
+        // 已经返回的对象不会被修改
+        assertEquals(0.5f, before.getProgress());
+        assertEquals(List.of(QbittorrentSyncClient.TorrentEvent.Type.COMPLETED,
+                QbittorrentSyncClient.TorrentEvent.Type.ERRORED,
+                QbittorrentSyncClient.TorrentEvent.Type.ADDED,
+                // 添加时已经完成
+                QbittorrentSyncClient.TorrentEvent.Type.ADDED,
+                QbittorrentSyncClient.TorrentEvent.Type.COMPLETED),
+            events.stream().map(QbittorrentSyncClient.TorrentEvent::type).toList());
+
+        events.clear();
+        syncClient.apply(objectMapper.readTree("""
+            {"rid": 3, "torrents_removed": ["ccc", "ddd"]}
+            """));
+        assertNull(syncClient.getTorrent("ccc"));
+        assertEquals(List.of(QbittorrentSyncClient.TorrentEvent.Type.REMOVED,
+                QbittorrentSyncClient.TorrentEvent.Type.REMOVED),
+            events.stream().map(QbittorrentSyncClient.TorrentEvent::type).toList());
+
+        // qbittorrent 重启后 rid 失效，返回全量数据
+        events.clear();
+        syncClient.apply(objectMapper.readTree("""
+            {"rid": 1, "full_update": true, "torrents": {
+              "aaa": {"name": "a", "category": "mikan", "progress": 1, "state": "uploading"}
+            }}
+            """));
+        assertEquals(1, syncClient.getTorrents(null).size());
+        assertEquals(List.of(QbittorrentSyncClient.TorrentEvent.Type.REMOVED),
+            events.stream().map(QbittorrentSyncClient.TorrentEvent::type).toList());
+    }
+}
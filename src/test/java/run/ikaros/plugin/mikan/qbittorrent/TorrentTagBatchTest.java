@@ -0,0 +1,74 @@
+package run.ikaros.plugin.mikan.qbittorrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import run.ikaros.plugin.mikan.http.HttpTransport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TorrentTagBatchTest {
+    private final HttpTransport httpTransport = new HttpTransport();
+
+    @AfterEach
+    void closeHttpTransport() throws IOException {
+        httpTransport.close();
+    }
+
+    @Test
+    void flushOneRequestPerTag() {
+        TorrentTagBatch torrentTagBatch = new TorrentTagBatch();
+        torrentTagBatch.add("aaa", "400602");
+        torrentTagBatch.add("bbb", "400602");
+        torrentTagBatch.add("aaa", "400602");
+        torrentTagBatch.add("ccc", "373247");
+        assertEquals(Map.of("400602", Set.of("aaa", "bbb"), "373247", Set.of("ccc")),
+            torrentTagBatch.getHashesByTag());
+
+        List<String> requests = new ArrayList<>();
+        torrentTagBatch.flush(new QbittorrentClient(null, httpTransport) {
+            @Override
+            public void addTags(Collection<String> hashes, String tags) {
+                requests.add(tags + "=" + String.join("|", hashes));
+            }
+        });
+        assertEquals(List.of("400602=aaa|bbb", "373247=ccc"), requests);
+        assertTrue(torrentTagBatch.isEmpty());
+    }
+
+    @Test
+    void keepTagsWhenFlushFail() {
+        TorrentTagBatch torrentTagBatch = new TorrentTagBatch();
+        torrentTagBatch.add("aaa", "400602");
+        torrentTagBatch.add("ccc", "373247");
+
+        assertThrows(QbittorrentRequestException.class,
+            () -> torrentTagBatch.flush(new QbittorrentClient(null, httpTransport) {
+                @Override
+                public void addTags(Collection<String> hashes, String tags) {
+                    if ("373247".equals(tags)) {
+                        throw new QbittorrentRequestException("add tags fail");
+                    }
+                }
+            }));
+        assertEquals(Map.of("373247", Set.of("ccc")), torrentTagBatch.getHashesByTag());
+
+        // 下一个周期和新的标签一起发送
+        torrentTagBatch.add("ddd", "373247");
+        List<String> requests = new ArrayList<>();
+        torrentTagBatch.flush(new QbittorrentClient(null, httpTransport) {
+            @Override
+            public void addTags(Collection<String> hashes, String tags) {
+                requests.add(tags + "=" + String.join("|", hashes.stream().sorted().toList()));
+            }
+        });
+        assertEquals(List.of("373247=ccc|ddd"), requests);
+        assertTrue(torrentTagBatch.isEmpty());
+    }
+}
@@ -0,0 +1,52 @@
+package run.ikaros.plugin.mikan.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BgmTvSubjectIdStoreTest {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void reloadSubjectIdsFromDisk() {
+        BgmTvSubjectIdStore store = new BgmTvSubjectIdStore(dataDir);
+        assertNull(store.get("3060"));
+        store.put("3060", "400602");
+
+        BgmTvSubjectIdStore reloaded = new BgmTvSubjectIdStore(dataDir);
+        assertEquals("400602", reloaded.get("3060"));
+        assertEquals(1, reloaded.size());
+        assertNull(reloaded.get(null));
+    }
+
+    @Test
+    void expireMissingSubject() {
+        Instant now = Instant.ofEpochMilli(1_700_000_000_000L);
+        BgmTvSubjectIdStore store = new BgmTvSubjectIdStore(dataDir,
+            Clock.fixed(now, ZoneOffset.UTC));
+        assertFalse(store.isMissing("3306"));
+        store.putMissing("3306");
+        assertTrue(store.isMissing("3306"));
+
+        // 有效期内重启依然记得，过期后重新请求
+        assertTrue(new BgmTvSubjectIdStore(dataDir,
+            Clock.fixed(now.plus(BgmTvSubjectIdStore.MISSING_TTL).minusMillis(1), ZoneOffset.UTC))
+            .isMissing("3306"));
+        assertFalse(new BgmTvSubjectIdStore(dataDir,
+            Clock.fixed(now.plus(BgmTvSubjectIdStore.MISSING_TTL), ZoneOffset.UTC))
+            .isMissing("3306"));
+
+        // 蜜柑补上链接后不再是没有链接
+        store.put("3306", "400603");
+        assertFalse(new BgmTvSubjectIdStore(dataDir, Clock.fixed(now, ZoneOffset.UTC))
+            .isMissing("3306"));
+    }
+}
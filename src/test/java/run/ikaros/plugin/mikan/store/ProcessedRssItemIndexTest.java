@@ -0,0 +1,102 @@
+package run.ikaros.plugin.mikan.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessedRssItemIndexTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @TempDir
+    Path dataDir;
+
+    ProcessedRssItemIndex newIndex(long epochMillis) {
+        return new ProcessedRssItemIndex(dataDir,
+            Clock.fixed(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
+    }
+
+    Path indexFile() {
+        return dataDir.resolve("processed-rss-items.txt");
+    }
+
+    @Test
+    void reloadAppendedItems() throws Exception {
+        ProcessedRssItemIndex index = newIndex(NOW);
+        assertFalse(index.contains("aaa"));
+        index.add("aaa");
+        index.add("bbb");
+        index.add("aaa");
+        index.add(null);
+        assertTrue(index.contains("aaa"));
+        assertFalse(index.contains(null));
+
+        ProcessedRssItemIndex reloaded = newIndex(NOW);
+        assertTrue(reloaded.contains("aaa"));
+        assertTrue(reloaded.contains("bbb"));
+        assertEquals(2, reloaded.size());
+        assertEquals(List.of(NOW + "\taaa", NOW + "\tbbb"),
+            Files.readAllLines(indexFile(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void addAllAppendsNewItems() throws Exception {
+        ProcessedRssItemIndex index = newIndex(NOW);
+        index.add("aaa");
+        index.addAll(Arrays.asList("aaa", "bbb", null, "ccc", "bbb"));
+        index.addAll(List.of());
+        assertEquals(3, index.size());
+
+        // 已经在索引中的以及重复的条目不会再次写入
+        assertEquals(List.of(NOW + "\taaa", NOW + "\tbbb", NOW + "\tccc"),
+            Files.readAllLines(indexFile(), StandardCharsets.UTF_8));
+        assertEquals(3, newIndex(NOW).size());
+    }
+
+    @Test
+    void dropIncompleteLastLine() throws Exception {
+        Files.writeString(indexFile(), NOW + "\taaa\n" + NOW + "\tbb",
+            StandardCharsets.UTF_8);
+        ProcessedRssItemIndex index = newIndex(NOW);
+        assertTrue(index.contains("aaa"));
+        assertFalse(index.contains("bb"));
+        assertEquals(1, index.size());
+
+        // 压缩之后追加的行不会和不完整的行连在一起
+        index.add("bbb");
+        assertEquals(List.of(NOW + "\taaa", NOW + "\tbbb"),
+            Files.readAllLines(indexFile(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void compactExpiredAndInvalidLines() throws Exception {
+        long expired = NOW - ProcessedRssItemIndex.MAX_AGE.toMillis() - 1;
+        Files.writeString(indexFile(), String.join("\n",
+            expired + "\told",
+            "legacy",
+            "abc\tinvalid",
+            NOW + "\taaa",
+            NOW + "\taaa",
+            ""), StandardCharsets.UTF_8);
+        ProcessedRssItemIndex index = newIndex(NOW);
+        assertFalse(index.contains("old"));
+        assertFalse(index.contains("invalid"));
+        assertTrue(index.contains("legacy"));
+        assertTrue(index.contains("aaa"));
+        assertEquals(2, index.size());
+
+        // 旧格式的行从加载时开始计算保留时间
+        List<String> lines = Files.readAllLines(indexFile(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.containsAll(List.of(NOW + "\tlegacy", NOW + "\taaa")));
+    }
+}
@@ -0,0 +1,44 @@
+package run.ikaros.plugin.mikan.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RssFeedValidatorStoreTest {
+    private static final String URL = "https://mikanani.me/RSS/MyBangumi?token=abc";
+
+    @TempDir
+    Path dataDir;
+
+    private static RssFeedValidator validator(String etag, String lastModified) {
+        RssFeedValidator validator = new RssFeedValidator();
+        validator.setEtag(etag);
+        validator.setLastModified(lastModified);
+        return validator;
+    }
+
+    @Test
+    void reloadValidatorsFromDisk() {
+        RssFeedValidatorStore store = new RssFeedValidatorStore(dataDir);
+        assertNull(store.get(URL));
+        store.put(URL, validator("\"5f3a\"", "Sat, 21 Sep 2024 14:31:00 GMT"));
+
+        RssFeedValidator reloaded = new RssFeedValidatorStore(dataDir).get(URL);
+        assertNotNull(reloaded);
+        assertEquals("\"5f3a\"", reloaded.getEtag());
+        assertEquals("Sat, 21 Sep 2024 14:31:00 GMT", reloaded.getLastModified());
+    }
+
+    @Test
+    void removeEmptyValidator() {
+        RssFeedValidatorStore store = new RssFeedValidatorStore(dataDir);
+        store.put(URL, validator("\"5f3a\"", null));
+        // 响应不再带校验信息时删除，下次不发送条件请求
+        store.put(URL, validator(null, null));
+        assertNull(store.get(URL));
+        assertNull(new RssFeedValidatorStore(dataDir).get(URL));
+    }
+}
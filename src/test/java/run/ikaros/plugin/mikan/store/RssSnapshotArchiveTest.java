@@ -0,0 +1,83 @@
+package run.ikaros.plugin.mikan.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RssSnapshotArchiveTest {
+    static final String URL = "https://mikanani.me/RSS/MyBangumi?token=test";
+
+    @TempDir
+    Path dataDir;
+
+    /**
+     * 每次归档使用不同的时间，归档文件名精确到毫秒
+     */
+    RssSnapshotArchive archiveAt(long epochMillis) {
+        return new RssSnapshotArchive(dataDir,
+            Clock.fixed(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
+    }
+
+    static void archive(RssSnapshotArchive archive, String content, long maxBytes)
+        throws Exception {
+        try (SnapshotOutputStream outputStream = archive.openSnapshot(URL, maxBytes)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+            outputStream.commit();
+        }
+    }
+
+    @Test
+    void replayArchivedSnapshot() throws Exception {
+        archive(archiveAt(1000), "<rss>first</rss>", Long.MAX_VALUE);
+        RssSnapshotArchive archive = archiveAt(2000);
+        archive(archive, "<rss>second</rss>", Long.MAX_VALUE);
+
+        List<Path> snapshots = archive.listSnapshots();
+        assertEquals(2, snapshots.size());
+        try (InputStream inputStream = archive.openReplay(snapshots.get(1))) {
+            assertEquals("<rss>second</rss>",
+                new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void deleteOldestSnapshotsOverLimit() throws Exception {
+        RssSnapshotArchive archive = archiveAt(1000);
+        archive(archive, "<rss>first</rss>", Long.MAX_VALUE);
+        Path first = archive.listSnapshots().get(0);
+        archive(archiveAt(2000), "<rss>second</rss>", Files.size(first));
+
+        List<Path> snapshots = archive.listSnapshots();
+        assertEquals(1, snapshots.size());
+        assertFalse(Files.exists(first));
+    }
+
+    @Test
+    void discardUncommittedSnapshot() throws Exception {
+        RssSnapshotArchive archive = archiveAt(1000);
+        archive(archive, "<rss>first</rss>", Long.MAX_VALUE);
+        try (SnapshotOutputStream outputStream = archiveAt(2000).openSnapshot(URL, 1)) {
+            outputStream.write("<rss>sec".getBytes(StandardCharsets.UTF_8));
+        }
+        // 没有提交的归档不保留，也不会触发清理
+        assertEquals(1, archive.listSnapshots().size());
+        try (var paths = Files.list(archive.getArchiveDir())) {
+            assertEquals(1, paths.count());
+        }
+    }
+
+    @Test
+    void listSnapshotsWithoutArchiveDir() throws Exception {
+        assertTrue(new RssSnapshotArchive(dataDir).listSnapshots().isEmpty());
+    }
+}
@@ -0,0 +1,37 @@
+package run.ikaros.plugin.mikan.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RssSnapshotStoreTest {
+    static final String URL = "https://mikanani.me/RSS/MyBangumi?token=test";
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void replaceSnapshotOnlyWhenCommitted() throws Exception {
+        RssSnapshotStore store = new RssSnapshotStore(dataDir);
+        Path snapshotPath = store.getLastSnapshotPath(URL);
+        try (SnapshotOutputStream outputStream = store.openLastSnapshot(URL)) {
+            outputStream.write("<rss>first</rss>".getBytes(StandardCharsets.UTF_8));
+            outputStream.commit();
+        }
+        assertEquals("<rss>first</rss>", Files.readString(snapshotPath));
+
+        // 没有提交的快照不覆盖已有的快照，也不留下临时文件
+        try (SnapshotOutputStream outputStream = store.openLastSnapshot(URL)) {
+            outputStream.write("<rss>sec".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("<rss>first</rss>", Files.readString(snapshotPath));
+        try (var paths = Files.list(snapshotPath.getParent())) {
+            assertEquals(1, paths.count());
+        }
+    }
+}
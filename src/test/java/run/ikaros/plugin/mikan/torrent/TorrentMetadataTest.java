@@ -0,0 +1,72 @@
+package run.ikaros.plugin.mikan.torrent;
+
+import org.junit.jupiter.api.Test;
+import run.ikaros.plugin.mikan.exception.TorrentParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TorrentMetadataTest {
+
+    static final String SINGLE_FILE_INFO =
+        "d6:lengthi290767264e4:name8:ep04.mp412:piece lengthi262144e6:pieces0:e";
+    static final String MULTI_FILE_INFO =
+        "d5:filesld6:lengthi100e4:pathl4:ep018:name.mkveed6:lengthi200e4:pathl6:extras5:a.asseee"
+            + "4:name9:[Group] X12:piece lengthi262144e6:pieces0:e";
+
+    static byte[] torrent(String info) {
+        return ("d8:announce23:http://tracker/announce4:info" + info + "e")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String sha1Hex(String text) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1")
+            .digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void parseSingleFileTorrent() throws Exception {
+        TorrentMetadata metadata = TorrentMetadata.parse(torrent(SINGLE_FILE_INFO));
+        assertEquals(sha1Hex(SINGLE_FILE_INFO), metadata.getInfoHash());
+        assertEquals("ep04.mp4", metadata.getName());
+        assertEquals(List.of(new TorrentMetadata.TorrentFileEntry("ep04.mp4", 290767264L)),
+            metadata.getFiles());
+    }
+
+    @Test
+    void parseMultiFileTorrent() throws Exception {
+        TorrentMetadata metadata = TorrentMetadata.parse(torrent(MULTI_FILE_INFO));
+        assertEquals(sha1Hex(MULTI_FILE_INFO), metadata.getInfoHash());
+        assertEquals("[Group] X", metadata.getName());
+        assertEquals(2, metadata.getFiles().size());
+        assertEquals("ep01/name.mkv", metadata.getFiles().get(0).path());
+        assertEquals("extras/a.ass", metadata.getFiles().get(1).path());
+        assertEquals(300L, metadata.getTotalLength());
+    }
+
+    @Test
+    void decodeValues() {
+        Object value = new BencodeDecoder("d1:ai-3e1:bl1:xi7eee".getBytes(StandardCharsets.UTF_8))
+            .decode();
+        Map<?, ?> map = assertInstanceOf(Map.class, value);
+        assertEquals(-3L, map.get("a"));
+        List<?> list = assertInstanceOf(List.class, map.get("b"));
+        assertArrayEquals("x".getBytes(StandardCharsets.UTF_8), (byte[]) list.get(0));
+        assertEquals(7L, list.get(1));
+    }
+
+    @Test
+    void rejectInvalidTorrent() {
+        assertThrows(TorrentParseException.class,
+            () -> TorrentMetadata.parse("<html></html>".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(TorrentParseException.class,
+            () -> TorrentMetadata.parse("d4:infod".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(TorrentParseException.class,
+            () -> TorrentMetadata.parse("d3:fooi1ee".getBytes(StandardCharsets.UTF_8)));
+    }
+}
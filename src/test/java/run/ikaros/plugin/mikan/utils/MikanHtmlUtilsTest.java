@@ -0,0 +1,128 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MikanHtmlUtilsTest {
+
+    static final String EPISODE_PAGE_HTML = """
+        <html><head><title>Mikan Project</title></head><body>
+        <div id="sk-container" class="container">
+          <div class="central-container">
+            <p class="bangumi-title">
+              <a class="w-other-c" style="color:#555" href="/Home/Bangumi/3060#583">其实，我是最强的？</a>
+            </p>
+          </div>
+        </div>
+        </body></html>
+        """;
+
+    static final String ANIME_PAGE_HTML = """
+        <html><body>
+        <div id="sk-container" class="container">
+          <p class="bangumi-info">放送开始：7/2/2023</p>
+          <p class="bangumi-info">官方网站：<a class="w-other-c" href="https://example.com/">https://example.com/</a></p>
+          <p class="bangumi-info">Bangumi番组计划链接：<a class="w-other-c" href="https://bgm.tv/subject/400602?a=1&amp;b=2" target="_blank">https://bgm.tv/subject/400602</a></p>
+        </div>
+        </body></html>
+        """;
+
+    static InputStream stream(String html) {
+        return new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void extractBangumiTitleHref() throws Exception {
+        assertEquals("/Home/Bangumi/3060#583",
+            MikanHtmlUtils.extractBangumiTitleHref(stream(EPISODE_PAGE_HTML)));
+        assertEquals(MikanHtmlUtils.parseBangumiTitleHref(EPISODE_PAGE_HTML),
+            MikanHtmlUtils.extractBangumiTitleHref(stream(EPISODE_PAGE_HTML)));
+    }
+
+    @Test
+    void extractBgmTvSubjectHref() throws Exception {
+        assertEquals("https://bgm.tv/subject/400602?a=1&b=2",
+            MikanHtmlUtils.extractBgmTvSubjectHref(stream(ANIME_PAGE_HTML)));
+        assertEquals(MikanHtmlUtils.parseBgmTvSubjectHref(ANIME_PAGE_HTML),
+            MikanHtmlUtils.extractBgmTvSubjectHref(stream(ANIME_PAGE_HTML)));
+    }
+
+    @Test
+    void extractAcrossChunks() throws Exception {
+        String html = "<!--" + "x".repeat(20_000) + "-->" + EPISODE_PAGE_HTML;
+        assertEquals("/Home/Bangumi/3060#583", MikanHtmlUtils.extractBangumiTitleHref(stream(html)));
+    }
+
+    @Test
+    void returnNullWhenNotFound() throws Exception {
+        assertNull(MikanHtmlUtils.extractBangumiTitleHref(stream(ANIME_PAGE_HTML)));
+        assertNull(MikanHtmlUtils.extractBgmTvSubjectHref(stream(EPISODE_PAGE_HTML)));
+    }
+
+    /**
+     * 页面主体之前的导航栏里有同样 class 的元素，页面主体之后还有一段 bangumi-info
+     */
+    static final String SCOPED_ANIME_PAGE_HTML = """
+        <html><body>
+        <div class="m-nav"><p class="bangumi-title"><a href="/Home/Bangumi/1">nav</a></p>
+          <p class="bangumi-info">Bangumi：<a href="https://bgm.tv/subject/1">nav</a></p></div>
+        <div id="sk-container" class="container">
+          <div class="central-container">
+            <p class="bangumi-title">番剧名 <a href="/Home/Bangumi/3060#583">其实，我是最强的？</a></p>
+          </div>
+          <div class="pull-left leftbar-container">
+            <p class="bangumi-info">Bangumi番组计划链接：<a href="https://bgm.tv/subject/400601">旧</a></p>
+            <div><p class="bangumi-info">Bangumi番组计划链接：<a href="https://bgm.tv/subject/400602">新</a></p></div>
+          </div>
+        </div>
+        <div class="footer"><p class="bangumi-info">Bangumi：<a href="https://bgm.tv/subject/2">footer</a></p></div>
+        </body></html>
+        """;
+
+    @Test
+    void matchDomInScope() throws Exception {
+        // 只查找 #sk-container 之内，番剧链接取第一个，bgm.tv 链接取最后一个
+        assertEquals("/Home/Bangumi/3060#583",
+            MikanHtmlUtils.parseBangumiTitleHref(SCOPED_ANIME_PAGE_HTML));
+        assertEquals("https://bgm.tv/subject/400602",
+            MikanHtmlUtils.parseBgmTvSubjectHref(SCOPED_ANIME_PAGE_HTML));
+        for (String html : new String[] {EPISODE_PAGE_HTML, ANIME_PAGE_HTML,
+            SCOPED_ANIME_PAGE_HTML}) {
+            assertEquals(MikanHtmlUtils.parseBangumiTitleHref(html),
+                MikanHtmlUtils.extractBangumiTitleHref(stream(html)));
+            assertEquals(MikanHtmlUtils.parseBgmTvSubjectHref(html),
+                MikanHtmlUtils.extractBgmTvSubjectHref(stream(html)));
+        }
+    }
+
+    @Test
+    void matchDomByCharacters() {
+        // 每次只追加一个字符，标签和链接都会被拆开
+        MikanHtmlUtils.HrefExtractor extractor = MikanHtmlUtils.newBgmTvSubjectHrefExtractor();
+        String href = null;
+        for (int i = 0; i < SCOPED_ANIME_PAGE_HTML.length() && href == null; i++) {
+            href = extractor.append(SCOPED_ANIME_PAGE_HTML.substring(i, i + 1));
+        }
+        // #sk-container 结束时就确定了结果
+        assertEquals("https://bgm.tv/subject/400602", href);
+    }
+
+    @Test
+    void extractHrefByLines() {
+        MikanHtmlUtils.HrefExtractor extractor = MikanHtmlUtils.newBgmTvSubjectHrefExtractor();
+        String href = null;
+        for (String line : ANIME_PAGE_HTML.split("\n")) {
+            href = extractor.append(line + "\n");
+            if (href != null) {
+                break;
+            }
+        }
+        assertEquals("https://bgm.tv/subject/400602?a=1&b=2", href);
+        assertNull(MikanHtmlUtils.newBangumiTitleHrefExtractor().append(ANIME_PAGE_HTML));
+    }
+}
@@ -0,0 +1,63 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void shareInFlightRequest() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger requestCount = new AtomicInteger();
+        Sinks.One<String> response = Sinks.one();
+
+        Mono<String> first = singleFlight.execute("url", () -> {
+            requestCount.incrementAndGet();
+            return response.asMono();
+        });
+        Mono<String> second = singleFlight.execute("url", () -> {
+            requestCount.incrementAndGet();
+            return Mono.just("other");
+        });
+
+        StepVerifier.create(Mono.zip(first, second))
+            .then(() -> response.tryEmitValue("page"))
+            .assertNext(tuple -> {
+                assertEquals("page", tuple.getT1());
+                assertEquals("page", tuple.getT2());
+            })
+            .verifyComplete();
+        assertEquals(1, requestCount.get());
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    void requestAgainAfterCompleted() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger requestCount = new AtomicInteger();
+
+        for (int i = 1; i <= 2; i++) {
+            StepVerifier.create(singleFlight.execute("url",
+                    () -> Mono.fromCallable(requestCount::incrementAndGet)))
+                .expectNext(i)
+                .verifyComplete();
+        }
+    }
+
+    @Test
+    void requestAgainAfterError() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        StepVerifier.create(singleFlight.execute("url",
+                () -> Mono.error(new IllegalStateException("fail"))))
+            .verifyError(IllegalStateException.class);
+        StepVerifier.create(singleFlight.execute("url", () -> Mono.just("page")))
+            .expectNext("page")
+            .verifyComplete();
+    }
+}
@@ -0,0 +1,84 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TtlCacheTest {
+
+    @Test
+    void cacheValueAndNegativeResult() {
+        TtlCache<String, String> cache =
+            new TtlCache<>(Duration.ofHours(1), Duration.ofHours(1), 16);
+        AtomicInteger loadCount = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("url", cache.get("hit", key -> {
+                loadCount.incrementAndGet();
+                return "url";
+            }));
+            assertNull(cache.get("miss", key -> {
+                loadCount.incrementAndGet();
+                return null;
+            }));
+        }
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    void reloadExpiredValue() {
+        TtlCache<String, String> cache = new TtlCache<>(Duration.ZERO, Duration.ZERO, 16);
+        AtomicInteger loadCount = new AtomicInteger();
+        cache.get("key", key -> "v" + loadCount.incrementAndGet());
+        assertEquals("v2", cache.get("key", key -> "v" + loadCount.incrementAndGet()));
+    }
+
+    @Test
+    void notCacheLoaderException() {
+        TtlCache<String, String> cache =
+            new TtlCache<>(Duration.ofHours(1), Duration.ofHours(1), 16);
+        assertThrows(IllegalStateException.class, () -> cache.get("key", key -> {
+            throw new IllegalStateException("network fail");
+        }));
+        assertEquals("url", cache.get("key", key -> "url"));
+    }
+
+    @Test
+    void evictOverMaxSize() {
+        TtlCache<Integer, Integer> cache =
+            new TtlCache<>(Duration.ofHours(1), Duration.ofHours(1), 2);
+        for (int i = 0; i < 5; i++) {
+            final int value = i;
+            cache.get(i, key -> value);
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void getAsyncCacheEmptyResult() {
+        TtlCache<String, String> cache =
+            new TtlCache<>(Duration.ofHours(1), Duration.ofHours(1), 16);
+        AtomicInteger loadCount = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(cache.getAsync("hit", key -> Mono.fromCallable(() -> {
+                    loadCount.incrementAndGet();
+                    return "url";
+                })))
+                .expectNext("url")
+                .verifyComplete();
+            StepVerifier.create(cache.getAsync("miss", key -> Mono.<String>empty()
+                    .doOnSubscribe(s -> loadCount.incrementAndGet())))
+                .verifyComplete();
+        }
+        assertEquals(2, loadCount.get());
+        // 加载失败不缓存
+        StepVerifier.create(cache.getAsync("error",
+                key -> Mono.error(new IllegalStateException())))
+            .verifyError(IllegalStateException.class);
+        assertEquals(2, cache.size());
+    }
+}
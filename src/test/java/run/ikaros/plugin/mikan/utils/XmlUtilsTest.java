@@ -0,0 +1,147 @@
+package run.ikaros.plugin.mikan.utils;
+
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import run.ikaros.plugin.mikan.MikanRssItem;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlUtilsTest {
+
+    static final String MIKAN_RSS_XML = """
+        <?xml version="1.0" encoding="utf-8"?>
+        <rss version="2.0">
+          <channel>
+            <title>Mikan Project - 我的番组</title>
+            <link>http://mikanani.me/RSS/MyBangumi?token=test</link>
+            <description>Mikan Project - 我的番组</description>
+            <item>
+              <guid isPermaLink="false">[ANi] 其实，我是最强的？ - 04 [1080P][Bilibili][WEB-DL][AAC AVC][CHT CHS][MP4]</guid>
+              <link>https://mikanani.me/Home/Episode/b100ec4fb7b879c3dfa4e28a5e9889ba0ea0bb00</link>
+              <title>[ANi] 其实，我是最强的？ - 04 [1080P][Bilibili][WEB-DL][AAC AVC][CHT CHS][MP4]</title>
+              <description>[ANi] 其实，我是最强的？ - 04 [1080P][Bilibili][WEB-DL][AAC AVC][CHT CHS][MP4][277.3 MB]</description>
+              <torrent xmlns="https://mikanani.me/0.1/">
+                <link>https://mikanani.me/Home/Episode/b100ec4fb7b879c3dfa4e28a5e9889ba0ea0bb00</link>
+                <contentLength>290767264</contentLength>
+                <pubDate>2023-07-23T20:05:00.273</pubDate>
+              </torrent>
+              <enclosure type="application/x-bittorrent" length="290767264" url="https://mikanani.me/Download/20230723/b100ec4fb7b879c3dfa4e28a5e9889ba0ea0bb00.torrent" />
+            </item>
+            <item>
+              <guid isPermaLink="false">[LoliHouse] 物语系列 - 13 [WebRip 1080p HEVC-10bit AAC][简繁内封字幕]</guid>
+              <link>https://mikanani.me/Home/Episode/17ec9127dcd4accbbc4e9d8bf624515f56e32d8a</link>
+              <title>[LoliHouse] 物语系列 - 13 [WebRip 1080p HEVC-10bit AAC][简繁内封字幕]</title>
+              <torrent xmlns="https://mikanani.me/0.1/">
+                <link>https://mikanani.me/Home/Episode/17ec9127dcd4accbbc4e9d8bf624515f56e32d8a</link>
+                <contentLength>1073741824</contentLength>
+                <pubDate>2024-09-21T22:31:12</pubDate>
+              </torrent>
+              <enclosure type="application/x-bittorrent" length="1073741824" url="https://mikanani.me/Download/20240921/17ec9127dcd4accbbc4e9d8bf624515f56e32d8a.torrent" />
+            </item>
+          </channel>
+        </rss>
+        """.strip();
+
+    static InputStream rssInputStream() {
+        return new ByteArrayInputStream(MIKAN_RSS_XML.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void parseMikanRssXmlStream() {
+        StepVerifier.create(XmlUtils.parseMikanRssXmlStream(rssInputStream()))
+            .assertNext(item -> {
+                assertEquals("[ANi] 其实，我是最强的？ - 04 [1080P][Bilibili][WEB-DL][AAC AVC][CHT CHS][MP4]",
+                    item.getTitle());
+                assertEquals("https://mikanani.me/Home/Episode/b100ec4fb7b879c3dfa4e28a5e9889ba0ea0bb00",
+                    item.getEpisodePageUrl());
+                assertEquals("https://mikanani.me/Download/20230723/b100ec4fb7b879c3dfa4e28a5e9889ba0ea0bb00.torrent",
+                    item.getTorrentUrl());
+                assertEquals("b100ec4fb7b879c3dfa4e28a5e9889ba0ea0bb00", item.getInfoHash());
+                assertEquals(LocalDateTime.of(2023, 7, 23, 20, 5, 0, 273_000_000),
+                    item.getPubDate());
+                assertEquals(290767264L, item.getContentLength());
+                assertEquals(item.getTitle(), item.getGuid());
+                assertNull(item.getBangumiId());
+            })
+            .assertNext(item -> assertEquals(
+                "https://mikanani.me/Download/20240921/17ec9127dcd4accbbc4e9d8bf624515f56e32d8a.torrent",
+                item.getTorrentUrl()))
+            .verifyComplete();
+    }
+
+    @Test
+    void parseMikanRssXmlStreamOnlyRequestedItems() {
+        StepVerifier.create(XmlUtils.parseMikanRssXmlStream(rssInputStream()), 1)
+            .expectNextCount(1)
+            .thenCancel()
+            .verify();
+    }
+
+    @Test
+    void parseMikanRssXmlMatchesStreamParser() {
+        List<MikanRssItem> domItems = XmlUtils.parseMikanRssXml(rssInputStream());
+        List<MikanRssItem> staxItems =
+            XmlUtils.parseMikanRssXmlStream(rssInputStream()).collectList().block();
+        assertNotNull(staxItems);
+        assertEquals(domItems.size(), staxItems.size());
+        for (int i = 0; i < domItems.size(); i++) {
+            assertEquals(domItems.get(i).getTitle(), staxItems.get(i).getTitle());
+            assertEquals(domItems.get(i).getTorrentUrl(), staxItems.get(i).getTorrentUrl());
+            assertEquals(domItems.get(i).getPubDate(), staxItems.get(i).getPubDate());
+            assertEquals(domItems.get(i).getContentLength(),
+                staxItems.get(i).getContentLength());
+            assertEquals(domItems.get(i).getGuid(), staxItems.get(i).getGuid());
+        }
+    }
+
+    @Test
+    void parseBangumiFeedIds() {
+        String xml = MIKAN_RSS_XML.replace("http://mikanani.me/RSS/MyBangumi?token=test",
+            "http://mikanani.me/RSS/Bangumi?bangumiId=3060&amp;subgroupid=583");
+        InputStream inputStream = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+        StepVerifier.create(XmlUtils.parseMikanRssXmlStream(inputStream))
+            .assertNext(item -> {
+                assertEquals("3060", item.getBangumiId());
+                assertEquals("583", item.getSubgroupId());
+            })
+            .expectNextCount(1)
+            .verifyComplete();
+
+        List<MikanRssItem> domItems = XmlUtils.parseMikanRssXml(
+            new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("3060", domItems.get(1).getBangumiId());
+        assertEquals("583", domItems.get(1).getSubgroupId());
+    }
+
+    @Test
+    void parseBangumiId() {
+        assertEquals("3060", XmlUtils.parseBangumiId("https://mikanime.tv/Home/Bangumi/3060"));
+        assertEquals("3060",
+            XmlUtils.parseBangumiId("https://mikanime.tv/RSS/Bangumi?bangumiId=3060"));
+        assertNull(XmlUtils.parseSubgroupId("https://mikanime.tv/RSS/Bangumi?bangumiId=3060"));
+        assertNull(XmlUtils.parseBangumiId(
+            "https://mikanani.me/Home/Episode/b100ec4fb7b879c3dfa4e28a5e9889ba0ea0bb00"));
+    }
+
+    @Test
+    void parsePubDate() {
+        assertEquals(LocalDateTime.of(2024, 9, 21, 22, 31, 12),
+            XmlUtils.parsePubDate(" 2024-09-21T22:31:12 "));
+        assertNull(XmlUtils.parsePubDate("Sat, 21 Sep 2024 22:31:12 GMT"));
+        assertNull(XmlUtils.parsePubDate(null));
+    }
+
+    @Test
+    void parseInfoHash() {
+        assertEquals("b100ec4fb7b879c3dfa4e28a5e9889ba0ea0bb00", XmlUtils.parseInfoHash(
+            "https://mikanime.tv/Download/20230723/B100EC4FB7B879C3DFA4E28A5E9889BA0EA0BB00.torrent"));
+        assertNull(XmlUtils.parseInfoHash("https://example.com/some.torrent"));
+        assertNull(XmlUtils.parseInfoHash(null));
+    }
+}